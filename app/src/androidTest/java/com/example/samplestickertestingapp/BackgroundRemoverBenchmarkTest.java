@@ -0,0 +1,71 @@
+package com.example.samplestickertestingapp;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.samplestickertestingapp.utils.BackgroundRemover;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Times automatic background removal on a sticker-sized and an editor-sized image, checking
+ * that the whole background is removed. Results are logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BackgroundRemoverBenchmarkTest {
+    private static final String TAG = "BackgroundRemoverBenchmark";
+    private static final int WARMUP_RUNS = 3;
+    private static final int TIMED_RUNS = 10;
+
+    @Test
+    public void removeBackgroundAroundDisc() {
+        run(512);
+        run(1024);
+    }
+
+    private static void run(int size) {
+        // A noisy light background around a dark disc
+        int[] source = new int[size * size];
+        int radius = size / 3;
+        int inside = 0;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int dx = x - size / 2;
+                int dy = y - size / 2;
+                int noise = (x * 31 + y * 17) % 8;
+                if (dx * dx + dy * dy < radius * radius) {
+                    source[y * size + x] = 0xFF203080 + noise;
+                    inside++;
+                } else {
+                    source[y * size + x] = 0xFFF0F0F0 - noise * 0x010101;
+                }
+            }
+        }
+
+        int removed = 0;
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            removed = BackgroundRemover.removeBackground(source.clone(), size, size,
+                    BackgroundRemover.DEFAULT_TOLERANCE);
+        }
+
+        long elapsed = 0;
+        for (int i = 0; i < TIMED_RUNS; i++) {
+            int[] pixels = source.clone();
+            long start = SystemClock.elapsedRealtimeNanos();
+            BackgroundRemover.removeBackground(pixels, size, size, BackgroundRemover.DEFAULT_TOLERANCE);
+            elapsed += SystemClock.elapsedRealtimeNanos() - start;
+        }
+        double nanosPerPixel = elapsed / (double) TIMED_RUNS / source.length;
+
+        assertEquals(source.length - inside, removed);
+        Log.i(TAG, String.format(Locale.US, "Background removal %dx%d: %.1f ns per pixel",
+                size, size, nanosPerPixel));
+    }
+}
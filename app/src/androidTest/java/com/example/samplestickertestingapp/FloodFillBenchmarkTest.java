@@ -0,0 +1,73 @@
+package com.example.samplestickertestingapp;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.samplestickertestingapp.utils.FloodFill;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Times the flood fill on a sticker-sized and a photo-sized image, checking that it fills
+ * exactly the background. Results are logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FloodFillBenchmarkTest {
+    private static final String TAG = "FloodFillBenchmark";
+    private static final int WARMUP_RUNS = 5;
+    private static final int TIMED_RUNS = 20;
+
+    @Test
+    public void fillBackgroundAroundDisc() {
+        run(512);
+        run(2048);
+    }
+
+    private static void run(int size) {
+        // A noisy light background around a dark disc
+        int[] pixels = new int[size * size];
+        int radius = size / 3;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int dx = x - size / 2;
+                int dy = y - size / 2;
+                int noise = (x * 31 + y * 17) % 8;
+                pixels[y * size + x] = dx * dx + dy * dy < radius * radius
+                        ? 0xFF203080 + noise
+                        : 0xFFF0F0F0 - noise * 0x010101;
+            }
+        }
+
+        FloodFill floodFill = new FloodFill();
+        byte[] mask = new byte[pixels.length];
+        int filled = 0;
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            Arrays.fill(mask, (byte) 0);
+            filled = floodFill.fillSimilar(pixels, size, size, 0, 0, mask);
+        }
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < TIMED_RUNS; i++) {
+            Arrays.fill(mask, (byte) 0);
+            floodFill.fillSimilar(pixels, size, size, 0, 0, mask);
+        }
+        double nanosPerPixel = (SystemClock.elapsedRealtimeNanos() - start) / (double) TIMED_RUNS / pixels.length;
+
+        int inside = 0;
+        for (int pixel : pixels) {
+            if ((pixel & 0xFF0000) == 0x200000) {
+                inside++;
+            }
+        }
+        assertEquals(pixels.length - inside, filled);
+        Log.i(TAG, String.format(Locale.US, "Flood fill %dx%d: %.1f ns per pixel", size, size, nanosPerPixel));
+    }
+}
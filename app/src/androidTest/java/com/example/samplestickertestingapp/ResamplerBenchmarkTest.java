@@ -0,0 +1,87 @@
+package com.example.samplestickertestingapp;
+
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.samplestickertestingapp.utils.Resampler;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the throughput of {@link Resampler} with the bilinear matrix scaling it replaces,
+ * for a camera photo to sticker size and a sticker to tray icon size. Results are logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ResamplerBenchmarkTest {
+    private static final String TAG = "ResamplerBenchmark";
+    private static final int WARMUP_RUNS = 2;
+    private static final int TIMED_RUNS = 5;
+
+    @Test
+    public void photoToSticker() {
+        compare(4000, 3000, 512, 384);
+    }
+
+    @Test
+    public void stickerToTrayIcon() {
+        compare(512, 512, 96, 96);
+    }
+
+    private void compare(int width, int height, int newWidth, int newHeight) {
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | (i * 7919) & 0xFFFFFF;
+        }
+        Bitmap source = Bitmap.createBitmap(pixels, width, height, Bitmap.Config.ARGB_8888);
+
+        double matrixMs = time(() -> {
+            Matrix matrix = new Matrix();
+            matrix.postScale((float) newWidth / width, (float) newHeight / height);
+            Bitmap scaled = Bitmap.createBitmap(source, 0, 0, width, height, matrix, true);
+            assertEquals(newWidth, scaled.getWidth());
+            scaled.recycle();
+        });
+        double boxMs = time(() -> {
+            int[] buffer = new int[width * height];
+            source.getPixels(buffer, 0, width, 0, 0, width, height);
+            Resampler.resample(buffer, width, height, newWidth, newHeight, Resampler.FILTER_BOX);
+        });
+        double lanczosMs = time(() -> {
+            int[] buffer = new int[width * height];
+            source.getPixels(buffer, 0, width, 0, 0, width, height);
+            Resampler.resample(buffer, width, height, newWidth, newHeight, Resampler.FILTER_LANCZOS3);
+        });
+        source.recycle();
+
+        double megapixels = width * (double) height / 1_000_000;
+        Log.i(TAG, width + "x" + height + " to " + newWidth + "x" + newHeight + ": " +
+                "matrix " + format(matrixMs, megapixels) + ", " +
+                "box " + format(boxMs, megapixels) + ", " +
+                "lanczos3 " + format(lanczosMs, megapixels) + ", " +
+                Runtime.getRuntime().availableProcessors() + " cores");
+    }
+
+    private static double time(Runnable run) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            run.run();
+        }
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < TIMED_RUNS; i++) {
+            run.run();
+        }
+        return (SystemClock.elapsedRealtimeNanos() - start) / 1_000_000.0 / TIMED_RUNS;
+    }
+
+    private static String format(double ms, double megapixels) {
+        return String.format(Locale.US, "%.1f ms (%.1f MP/s)", ms, megapixels / (ms / 1000));
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.samplestickertestingapp;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.database.Cursor;
+import android.net.Uri;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.samplestickertestingapp.models.StickerPack;
+import com.example.samplestickertestingapp.providers.StickerContentProvider;
+import com.example.samplestickertestingapp.utils.FileUtils;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Hammers the sticker content provider from many threads while new packs are being created.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StickerContentProviderStressTest {
+    private static final int READER_THREADS = 8;
+    private static final int PACKS_TO_ADD = 5;
+
+    private final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    private final List<String> createdPackIds = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (String packId : createdPackIds) {
+            deleteRecursively(new File(context.getFilesDir(), packId));
+        }
+    }
+
+    @Test
+    public void concurrentQueriesWhilePacksAreAdded() throws Exception {
+        final ContentResolver resolver = context.getContentResolver();
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(READER_THREADS);
+
+        for (int i = 0; i < READER_THREADS; i++) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                    // Keep reading until the writer is finished, then do one more full pass
+                    boolean lastPass = false;
+                    while (!lastPass) {
+                        lastPass = !writing.get();
+                        readAllPacks(resolver);
+                    }
+                } catch (Throwable t) {
+                    failures.add(t);
+                } finally {
+                    done.countDown();
+                }
+            }, "provider-reader-" + i).start();
+        }
+
+        start.countDown();
+        try {
+            for (int i = 0; i < PACKS_TO_ADD; i++) {
+                StickerPack pack = FileUtils.createCustomStickerPack(context, "Stress " + i, "Test");
+                assertNotNull(pack);
+                createdPackIds.add(pack.identifier);
+            }
+        } finally {
+            writing.set(false);
+        }
+
+        assertTrue("Readers did not finish", done.await(60, TimeUnit.SECONDS));
+        if (!failures.isEmpty()) {
+            throw new AssertionError("Reader failed", failures.peek());
+        }
+
+        // Every pack added during the run must be served afterwards
+        Set<String> served = new HashSet<>();
+        try (Cursor cursor = resolver.query(StickerContentProvider.AUTHORITY_URI, null, null, null, null)) {
+            assertNotNull(cursor);
+            int idColumn = cursor.getColumnIndexOrThrow(StickerContentProvider.STICKER_PACK_IDENTIFIER_IN_QUERY);
+            while (cursor.moveToNext()) {
+                served.add(cursor.getString(idColumn));
+            }
+        }
+        assertTrue(served.containsAll(createdPackIds));
+    }
+
+    /**
+     * Query every pack, its stickers and open every tray icon and sticker file.
+     */
+    private void readAllPacks(ContentResolver resolver) throws Exception {
+        List<String[]> packs = new ArrayList<>();
+        try (Cursor cursor = resolver.query(StickerContentProvider.AUTHORITY_URI, null, null, null, null)) {
+            assertNotNull(cursor);
+            int idColumn = cursor.getColumnIndexOrThrow(StickerContentProvider.STICKER_PACK_IDENTIFIER_IN_QUERY);
+            int trayColumn = cursor.getColumnIndexOrThrow(StickerContentProvider.STICKER_PACK_ICON_IN_QUERY);
+            while (cursor.moveToNext()) {
+                packs.add(new String[]{cursor.getString(idColumn), cursor.getString(trayColumn)});
+            }
+        }
+
+        for (String[] pack : packs) {
+            String packId = pack[0];
+            openAsset(resolver, packId, pack[1]);
+
+            Uri stickersUri = new Uri.Builder()
+                    .scheme(ContentResolver.SCHEME_CONTENT)
+                    .authority(BuildConfig.CONTENT_PROVIDER_AUTHORITY)
+                    .appendPath(StickerContentProvider.STICKERS)
+                    .appendPath(packId)
+                    .build();
+            try (Cursor cursor = resolver.query(stickersUri, null, null, null, null)) {
+                assertNotNull(cursor);
+                int fileColumn = cursor.getColumnIndexOrThrow(StickerContentProvider.STICKER_FILE_NAME_IN_QUERY);
+                while (cursor.moveToNext()) {
+                    openAsset(resolver, packId, cursor.getString(fileColumn));
+                }
+            }
+        }
+    }
+
+    private void openAsset(ContentResolver resolver, String packId, String fileName) throws Exception {
+        Uri assetUri = new Uri.Builder()
+                .scheme(ContentResolver.SCHEME_CONTENT)
+                .authority(BuildConfig.CONTENT_PROVIDER_AUTHORITY)
+                .appendPath(StickerContentProvider.STICKERS_ASSET)
+                .appendPath(packId)
+                .appendPath(fileName)
+                .build();
+        try (AssetFileDescriptor fd = resolver.openAssetFileDescriptor(assetUri, "r")) {
+            assertNotNull(fd);
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -27,27 +27,18 @@ import androidx.appcompat.app.AppCompatActivity;
 import com.example.samplestickertestingapp.BuildConfig;
 import com.example.samplestickertestingapp.R;
 import com.example.samplestickertestingapp.models.CustomSticker;
-import com.example.samplestickertestingapp.models.Sticker;
 import com.example.samplestickertestingapp.models.StickerPack;
 import com.example.samplestickertestingapp.providers.StickerContentProvider;
+import com.example.samplestickertestingapp.utils.BackgroundRemover;
 import com.example.samplestickertestingapp.utils.FileUtils;
 import com.example.samplestickertestingapp.utils.ImageUtils;
+import com.example.samplestickertestingapp.utils.PackRepository;
 import com.example.samplestickertestingapp.utils.StickerPackLoader;
 import com.example.samplestickertestingapp.utils.StickerPackManager;
 import com.example.samplestickertestingapp.utils.WhitelistCheck;
 import com.example.samplestickertestingapp.views.BrushImageView;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -63,8 +54,10 @@ public class BackgroundRemovalActivity extends AppCompatActivity implements View
     private BrushImageView brushImageView;
     private ImageButton eraserButton;
     private ImageButton brushButton;
+    private ImageButton magicWandButton;
     private ImageButton undoButton;
     private ImageButton redoButton;
+    private ImageButton autoRemoveButton;
     private Button saveButton;
     private SeekBar opacitySeekBar;
     private SeekBar brushSizeSeekBar;
@@ -90,8 +83,10 @@ public class BackgroundRemovalActivity extends AppCompatActivity implements View
         brushImageView = findViewById(R.id.brush_image_view);
         eraserButton = findViewById(R.id.btn_eraser);
         brushButton = findViewById(R.id.btn_brush);
+        magicWandButton = findViewById(R.id.btn_magic_wand);
         undoButton = findViewById(R.id.btn_undo);
         redoButton = findViewById(R.id.btn_redo);
+        autoRemoveButton = findViewById(R.id.btn_auto_remove);
         saveButton = findViewById(R.id.btn_save);
         opacitySeekBar = findViewById(R.id.seekbar_opacity);
         brushSizeSeekBar = findViewById(R.id.seekbar_brush_size);
@@ -101,8 +96,10 @@ public class BackgroundRemovalActivity extends AppCompatActivity implements View
         // Set click listeners
         eraserButton.setOnClickListener(this);
         brushButton.setOnClickListener(this);
+        magicWandButton.setOnClickListener(this);
         undoButton.setOnClickListener(this);
         redoButton.setOnClickListener(this);
+        autoRemoveButton.setOnClickListener(this);
         saveButton.setOnClickListener(this);
 
         // Set up seekbars
@@ -174,17 +171,18 @@ public class BackgroundRemovalActivity extends AppCompatActivity implements View
      * Load the image into the BrushImageView.
      */
     private void loadImage() {
-        try {
-            // Decode bitmap from uri
-            Bitmap bitmap = ImageUtils.decodeBitmapFromUri(this, imageUri);
-            if (bitmap != null) {
-                // Set bitmap to the brush image view
-                brushImageView.setSourceBitmap(bitmap);
-            } else {
-                Toast.makeText(this, R.string.error_loading_image, Toast.LENGTH_SHORT).show();
-                finish();
-            }
-        } catch (Exception e) {
+        // Decoding a large photo takes too long for the main thread
+        new LoadImageTask(this).execute(imageUri);
+    }
+
+    /**
+     * Show the decoded image, or leave if it could not be loaded.
+     */
+    private void onImageLoaded(Bitmap bitmap) {
+        if (bitmap != null) {
+            // Set bitmap to the brush image view
+            brushImageView.setSourceBitmap(bitmap);
+        } else {
             Toast.makeText(this, R.string.error_loading_image, Toast.LENGTH_SHORT).show();
             finish();
         }
@@ -197,13 +195,28 @@ public class BackgroundRemovalActivity extends AppCompatActivity implements View
      */
     private void updateToolSelection(boolean erasing) {
         brushImageView.setErasing(erasing);
+        highlightTool(erasing ? eraserButton : brushButton);
+    }
 
-        eraserButton.setSelected(erasing);
-        brushButton.setSelected(!erasing);
+    /**
+     * Select the magic wand, which erases the area of similar colour around a tap.
+     */
+    private void selectMagicWand() {
+        brushImageView.setMagicWand(true);
+        highlightTool(magicWandButton);
+    }
+
+    /**
+     * Show one tool button as selected and the others as not.
+     */
+    private void highlightTool(ImageButton selectedButton) {
+        for (ImageButton button : new ImageButton[]{eraserButton, brushButton, magicWandButton}) {
+            boolean selected = button == selectedButton;
+            button.setSelected(selected);
 
-        // Visual feedback for selection
-        eraserButton.setAlpha(erasing ? 1.0f : 0.5f);
-        brushButton.setAlpha(erasing ? 0.5f : 1.0f);
+            // Visual feedback for selection
+            button.setAlpha(selected ? 1.0f : 0.5f);
+        }
     }
 
     @Override
@@ -214,6 +227,8 @@ public class BackgroundRemovalActivity extends AppCompatActivity implements View
             updateToolSelection(true);
         } else if (id == R.id.btn_brush) {
             updateToolSelection(false);
+        } else if (id == R.id.btn_magic_wand) {
+            selectMagicWand();
         } else if (id == R.id.btn_undo) {
             if (!brushImageView.undo()) {
                 // No more undo steps
@@ -224,11 +239,46 @@ public class BackgroundRemovalActivity extends AppCompatActivity implements View
                 // No more redo steps
                 Toast.makeText(this, "Nothing to redo", Toast.LENGTH_SHORT).show();
             }
+        } else if (id == R.id.btn_auto_remove) {
+            removeBackgroundAutomatically();
         } else if (id == R.id.btn_save) {
             saveSticker();
         }
     }
 
+    /**
+     * Remove the background automatically, leaving the result to be refined with the brush.
+     * The background is found on the unedited source and combined with the edits when it is
+     * ready, so editing can go on meanwhile.
+     */
+    private void removeBackgroundAutomatically() {
+        Bitmap sourceBitmap = brushImageView.getSourceBitmap();
+        if (sourceBitmap == null) {
+            return;
+        }
+
+        autoRemoveButton.setEnabled(false);
+        Toast.makeText(this, R.string.removing_background, Toast.LENGTH_SHORT).show();
+
+        // The source is a new bitmap, the task recycles it when done
+        new AutoRemoveTask(this).execute(sourceBitmap);
+    }
+
+    /**
+     * Show the image with its background removed.
+     *
+     * @param keepMask Mask of the pixels to keep, or null if removal failed
+     */
+    private void onBackgroundRemoved(Bitmap keepMask) {
+        autoRemoveButton.setEnabled(true);
+        if (keepMask == null) {
+            Toast.makeText(this, R.string.background_removal_failed, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        brushImageView.applyKeepMask(keepMask);
+        keepMask.recycle();
+    }
+
     /**
      * Save the processed image as a sticker.
      */
@@ -290,7 +340,8 @@ public class BackgroundRemovalActivity extends AppCompatActivity implements View
     private void showPackSelectionDialog(final CustomSticker customSticker) {
         try {
             // Get existing sticker packs
-            final List<StickerPack> packs = StickerPackLoader.getStickerPacks(this);
+            // Only pack details are shown, so skip loading the stickers where possible
+            final List<StickerPack> packs = StickerPackLoader.getStickerPackHeaders(this);
 
             // Refresh whitelist status for all packs
             for (StickerPack pack : packs) {
@@ -366,293 +417,71 @@ public class BackgroundRemovalActivity extends AppCompatActivity implements View
         progressDialog.setCancelable(false);
         progressDialog.show();
 
-        new AsyncTask<Void, Void, Boolean>() {
-            private String errorMessage = "";
-
-            @Override
-            protected Boolean doInBackground(Void... voids) {
-                try {
-                    Log.d(TAG, "Background task started for adding sticker to: " + packId);
-
-                    // 1. Get source sticker file
-                    File sourceFile = new File(FileUtils.getCustomStickersDirectory(BackgroundRemovalActivity.this),
-                            customSticker.getImageFileName());
-
-                    if (!sourceFile.exists()) {
-                        errorMessage = "Source sticker file not found";
-                        Log.e(TAG, errorMessage + ": " + sourceFile.getAbsolutePath());
-                        return false;
-                    }
-
-                    Log.d(TAG, "Source file exists: " + sourceFile.getAbsolutePath() + " Size: " + sourceFile.length() + " bytes");
-
-                    // 2. Create a new sticker filename
-                    String newStickerFileName = "sticker_" + System.currentTimeMillis() + ".webp";
-                    Log.d(TAG, "New sticker filename: " + newStickerFileName);
-
-                    // 3. Get target pack directory
-                    File packDirectory = new File(getFilesDir(), packId);
-                    if (!packDirectory.exists()) {
-                        boolean created = packDirectory.mkdirs();
-                        if (!created) {
-                            errorMessage = "Failed to create pack directory";
-                            Log.e(TAG, errorMessage + ": " + packDirectory.getAbsolutePath());
-                            return false;
-                        }
-                    }
-
-                    Log.d(TAG, "Pack directory exists: " + packDirectory.getAbsolutePath());
-
-                    // 4. Copy sticker file to pack directory
-                    File targetFile = new File(packDirectory, newStickerFileName);
-                    try {
-                        FileInputStream in = new FileInputStream(sourceFile);
-                        FileOutputStream out = new FileOutputStream(targetFile);
-                        byte[] buffer = new byte[8192];
-                        int read;
-                        while ((read = in.read(buffer)) != -1) {
-                            out.write(buffer, 0, read);
-                        }
-                        in.close();
-                        out.close();
-
-                        if (!targetFile.exists() || targetFile.length() == 0) {
-                            errorMessage = "Failed to copy sticker file";
-                            Log.e(TAG, errorMessage);
-                            return false;
-                        }
-
-                        Log.d(TAG, "Sticker file copied to: " + targetFile.getAbsolutePath() +
-                                " Size: " + targetFile.length() + " bytes");
-                    } catch (IOException e) {
-                        errorMessage = "Error copying file: " + e.getMessage();
-                        Log.e(TAG, errorMessage, e);
-                        return false;
-                    }
-
-                    // 5. Find and load pack_info.json
-                    File packInfoFile = new File(packDirectory, "pack_info.json");
-                    if (!packInfoFile.exists()) {
-                        errorMessage = "Pack info file not found";
-                        Log.e(TAG, errorMessage + ": " + packInfoFile.getAbsolutePath());
-                        return false;
-                    }
-
-                    Log.d(TAG, "Found pack info file: " + packInfoFile.getAbsolutePath());
+        // Go through the pack's write-behind batch, which writes pack_info and notifies once
+        StickerPackManager.addStickerToPack(this, customSticker, packId, true,
+                new StickerPackManager.AddStickerCallback() {
+                    @Override
+                    public void onStickerAdded(boolean success) {
+                        Log.d(TAG, "Adding sticker to " + packId + " completed with result: " + success);
 
-                    // Load and parse the JSON
-                    String jsonContent = "";
-                    try {
-                        StringBuilder jsonString = new StringBuilder();
-                        BufferedReader reader = new BufferedReader(new FileReader(packInfoFile));
-                        String line;
-                        while ((line = reader.readLine()) != null) {
-                            jsonString.append(line);
+                        // Safely dismiss progress dialog
+                        try {
+                            if (progressDialog.isShowing() && !isFinishing()) {
+                                progressDialog.dismiss();
+                            }
+                        } catch (Exception e) {
+                            Log.w(TAG, "Error dismissing progress dialog: " + e.getMessage());
                         }
-                        reader.close();
-                        jsonContent = jsonString.toString();
-                        Log.d(TAG, "Read pack info JSON: " + (jsonContent.length() > 100 ?
-                                jsonContent.substring(0, 100) + "..." : jsonContent));
-                    } catch (IOException e) {
-                        errorMessage = "Error reading pack info: " + e.getMessage();
-                        Log.e(TAG, errorMessage, e);
-                        return false;
-                    }
-
-                    JSONObject packJson;
-                    try {
-                        packJson = new JSONObject(jsonContent);
-                    } catch (JSONException e) {
-                        errorMessage = "Error parsing pack JSON: " + e.getMessage();
-                        Log.e(TAG, errorMessage, e);
-                        return false;
-                    }
 
-                    // 6. Add the new sticker to the stickers array
-                    try {
-                        // Create sticker entry
-                        JSONObject stickerJson = new JSONObject();
-                        stickerJson.put("image_file", newStickerFileName);
-
-                        // Add emojis
-                        JSONArray emojisArray = new JSONArray();
-                        for (String emoji : customSticker.getEmojis()) {
-                            emojisArray.put(emoji);
+                        if (isFinishing()) {
+                            Log.d(TAG, "Activity is finishing, skipping result handling");
+                            return;
                         }
-                        stickerJson.put("emojis", emojisArray);
 
-                        // Add accessibility text
-                        if (customSticker.getAccessibilityText() != null && !customSticker.getAccessibilityText().isEmpty()) {
-                            stickerJson.put("accessibility_text", customSticker.getAccessibilityText());
-                        }
+                        if (success) {
+                            Toast.makeText(BackgroundRemovalActivity.this,
+                                    "Sticker added to pack successfully!",
+                                    Toast.LENGTH_LONG).show();
 
-                        // Get existing stickers or create a new array
-                        JSONArray stickersArray;
-                        if (packJson.has("stickers")) {
-                            stickersArray = packJson.getJSONArray("stickers");
+                            // Show a dialog with options to open WhatsApp or just finish
+                            new AlertDialog.Builder(BackgroundRemovalActivity.this)
+                                    .setTitle("Sticker Added")
+                                    .setMessage("Your sticker has been added to the pack. You may need to restart WhatsApp to see it.")
+                                    .setPositiveButton("Open WhatsApp", (dialog, which) -> {
+                                        try {
+                                            Intent intent = getPackageManager().getLaunchIntentForPackage("com.whatsapp");
+                                            if (intent == null) {
+                                                intent = getPackageManager().getLaunchIntentForPackage("com.whatsapp.w4b");
+                                            }
+
+                                            if (intent != null) {
+                                                Log.d(TAG, "Launching WhatsApp");
+                                                startActivity(intent);
+                                            } else {
+                                                Log.w(TAG, "No WhatsApp app found to launch");
+                                            }
+                                        } catch (Exception e) {
+                                            Log.e(TAG, "Error launching WhatsApp: " + e.getMessage(), e);
+                                        }
+                                        finish();
+                                    })
+                                    .setNegativeButton("Done", (dialog, which) -> finish())
+                                    .setCancelable(false)
+                                    .show();
                         } else {
-                            stickersArray = new JSONArray();
-                        }
-
-                        Log.d(TAG, "Original stickers array length: " + stickersArray.length());
-
-                        // Create a new array with our sticker at the beginning
-                        JSONArray newStickersArray = new JSONArray();
+                            String message = "Failed to add sticker to pack";
 
-                        // Put the new sticker at the beginning
-                        newStickersArray.put(stickerJson);
+                            Toast.makeText(BackgroundRemovalActivity.this, message, Toast.LENGTH_LONG).show();
 
-                        // Add all existing stickers
-                        for (int i = 0; i < stickersArray.length(); i++) {
-                            newStickersArray.put(stickersArray.getJSONObject(i));
-                        }
-
-                        // Replace the stickers array in the pack JSON
-                        packJson.put("stickers", newStickersArray);
-
-                        Log.d(TAG, "New stickers array length: " + newStickersArray.length());
-                        Log.d(TAG, "Updated pack JSON: " +
-                                (packJson.toString().length() > 100 ?
-                                        packJson.toString().substring(0, 100) + "..." :
-                                        packJson.toString()));
-
-                        // 7. Update the version to ensure WhatsApp sees the change
-                        if (packJson.has("image_data_version")) {
-                            String version = packJson.getString("image_data_version");
-                            try {
-                                int versionNum = Integer.parseInt(version);
-                                packJson.put("image_data_version", String.valueOf(versionNum + 1));
-                                Log.d(TAG, "Updated image_data_version from " + version + " to " + (versionNum + 1));
-                            } catch (NumberFormatException e) {
-                                Log.w(TAG, "Couldn't parse version number, using incremented string");
-                                packJson.put("image_data_version", version + ".1");
-                            }
-                        }
-
-                        // 8. Write the updated JSON back to the file
-                        try {
-                            FileWriter writer = new FileWriter(packInfoFile);
-                            writer.write(packJson.toString(2)); // Pretty print with 2-space indentation
-                            writer.close();
-                            Log.d(TAG, "Successfully wrote updated pack info to file");
-                        } catch (IOException e) {
-                            errorMessage = "Error writing pack info: " + e.getMessage();
-                            Log.e(TAG, errorMessage, e);
-                            return false;
+                            new AlertDialog.Builder(BackgroundRemovalActivity.this)
+                                    .setTitle("Error Adding Sticker")
+                                    .setMessage(message)
+                                    .setPositiveButton("OK", (dialog, which) -> finish())
+                                    .setCancelable(false)
+                                    .show();
                         }
-
-                    } catch (JSONException e) {
-                        errorMessage = "Error updating JSON: " + e.getMessage();
-                        Log.e(TAG, errorMessage, e);
-                        return false;
-                    }
-
-                    // 9. Notify the ContentProvider about the changes
-                    try {
-                        String authority = BuildConfig.CONTENT_PROVIDER_AUTHORITY;
-                        ContentResolver resolver = getContentResolver();
-
-                        Uri metadataUri = Uri.parse("content://" + authority + "/" + StickerContentProvider.METADATA);
-                        Uri packUri = Uri.parse("content://" + authority + "/" +
-                                StickerContentProvider.METADATA + "/" + packId);
-                        Uri stickersUri = Uri.parse("content://" + authority + "/" +
-                                StickerContentProvider.STICKERS + "/" + packId);
-
-                        Log.d(TAG, "Notifying ContentResolver of changes on URIs:");
-                        Log.d(TAG, "  - " + metadataUri);
-                        Log.d(TAG, "  - " + packUri);
-                        Log.d(TAG, "  - " + stickersUri);
-
-                        resolver.notifyChange(metadataUri, null);
-                        resolver.notifyChange(packUri, null);
-                        resolver.notifyChange(stickersUri, null);
-
-                        // Also notify any asset URIs related to this pack
-                        Uri assetsUri = Uri.parse("content://" + authority + "/" +
-                                StickerContentProvider.STICKERS_ASSET + "/" + packId);
-                        Log.d(TAG, "  - " + assetsUri);
-                        resolver.notifyChange(assetsUri, null);
-
-                        Log.d(TAG, "Successfully notified ContentProvider of changes");
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error notifying ContentProvider: " + e.getMessage(), e);
-                        // Continue anyway, this is not critical
                     }
-
-                    Log.d(TAG, "Sticker successfully added to pack: " + packId);
-                    return true;
-
-                } catch (Exception e) {
-                    errorMessage = "Unexpected error: " + e.getMessage();
-                    Log.e(TAG, errorMessage, e);
-                    return false;
-                }
-            }
-
-            @Override
-            protected void onPostExecute(Boolean success) {
-                Log.d(TAG, "Task completed with result: " + success);
-
-                // Safely dismiss progress dialog
-                try {
-                    if (progressDialog != null && progressDialog.isShowing() && !isFinishing()) {
-                        progressDialog.dismiss();
-                    }
-                } catch (Exception e) {
-                    Log.w(TAG, "Error dismissing progress dialog: " + e.getMessage());
-                }
-
-                if (isFinishing()) {
-                    Log.d(TAG, "Activity is finishing, skipping result handling");
-                    return;
-                }
-
-                if (success) {
-                    Toast.makeText(BackgroundRemovalActivity.this,
-                            "Sticker added to pack successfully!",
-                            Toast.LENGTH_LONG).show();
-
-                    // Show a dialog with options to open WhatsApp or just finish
-                    new AlertDialog.Builder(BackgroundRemovalActivity.this)
-                            .setTitle("Sticker Added")
-                            .setMessage("Your sticker has been added to the pack. You may need to restart WhatsApp to see it.")
-                            .setPositiveButton("Open WhatsApp", (dialog, which) -> {
-                                try {
-                                    Intent intent = getPackageManager().getLaunchIntentForPackage("com.whatsapp");
-                                    if (intent == null) {
-                                        intent = getPackageManager().getLaunchIntentForPackage("com.whatsapp.w4b");
-                                    }
-
-                                    if (intent != null) {
-                                        Log.d(TAG, "Launching WhatsApp");
-                                        startActivity(intent);
-                                    } else {
-                                        Log.w(TAG, "No WhatsApp app found to launch");
-                                    }
-                                } catch (Exception e) {
-                                    Log.e(TAG, "Error launching WhatsApp: " + e.getMessage(), e);
-                                }
-                                finish();
-                            })
-                            .setNegativeButton("Done", (dialog, which) -> finish())
-                            .setCancelable(false)
-                            .show();
-                } else {
-                    String message = errorMessage.isEmpty() ?
-                            "Failed to add sticker to pack" :
-                            "Error: " + errorMessage;
-
-                    Toast.makeText(BackgroundRemovalActivity.this, message, Toast.LENGTH_LONG).show();
-
-                    new AlertDialog.Builder(BackgroundRemovalActivity.this)
-                            .setTitle("Error Adding Sticker")
-                            .setMessage(message)
-                            .setPositiveButton("OK", (dialog, which) -> finish())
-                            .setCancelable(false)
-                            .show();
-                }
-            }
-        }.execute();
+                });
     }
 
     /**
@@ -867,78 +696,17 @@ public class BackgroundRemovalActivity extends AppCompatActivity implements View
             // Get the actual pack info to make sure we have all details
             StickerPack packToAdd = null;
             try {
-                // First try regular loader
-                List<StickerPack> packs = StickerPackLoader.getStickerPacks(this);
-                for (StickerPack pack : packs) {
-                    if (pack.identifier.equals(packId)) {
-                        packToAdd = pack;
-                        break;
-                    }
-                }
+                // First try the pack's own directory
+                packToAdd = PackRepository.readPack(new File(getFilesDir(), packId));
 
-                // If not found, try loading directly from file
+                // Then the regular loader
                 if (packToAdd == null) {
-                    Log.d(TAG, "Pack not found in loader, trying direct file loading");
-                    File packDirectory = new File(getFilesDir(), packId);
-                    File packInfoFile = new File(packDirectory, "pack_info.json");
-
-                    if (packInfoFile.exists()) {
-                        // Load JSON from file
-                        StringBuilder jsonString = new StringBuilder();
-                        try (BufferedReader reader = new BufferedReader(new FileReader(packInfoFile))) {
-                            String line;
-                            while ((line = reader.readLine()) != null) {
-                                jsonString.append(line);
-                            }
-                        }
-
-                        JSONObject packJson = new JSONObject(jsonString.toString());
-
-                        // Create StickerPack from JSON
-                        packToAdd = new StickerPack(
-                                packJson.getString("identifier"),
-                                packJson.getString("name"),
-                                packJson.getString("publisher"),
-                                packJson.getString("tray_image_file"),
-                                packJson.optString("publisher_email", ""),
-                                packJson.optString("publisher_website", ""),
-                                packJson.optString("privacy_policy_website", ""),
-                                packJson.optString("license_agreement_website", ""),
-                                packJson.optString("image_data_version", "1"),
-                                packJson.optBoolean("avoid_cache", false),
-                                packJson.optBoolean("animated_sticker_pack", false)
-                        );
-
-                        // Load stickers
-                        List<Sticker> stickers = new ArrayList<>();
-                        if (packJson.has("stickers")) {
-                            JSONArray stickersJson = packJson.getJSONArray("stickers");
-
-                            for (int i = 0; i < stickersJson.length(); i++) {
-                                JSONObject stickerJson = stickersJson.getJSONObject(i);
-
-                                String imageFile = stickerJson.getString("image_file");
-
-                                List<String> emojis = new ArrayList<>();
-                                if (stickerJson.has("emojis")) {
-                                    JSONArray emojisJson = stickerJson.getJSONArray("emojis");
-                                    for (int j = 0; j < emojisJson.length(); j++) {
-                                        emojis.add(emojisJson.getString(j));
-                                    }
-                                }
-
-                                String accessibilityText = stickerJson.optString("accessibility_text", "");
-
-                                Sticker sticker = new Sticker(imageFile, emojis, accessibilityText);
-                                File stickerFile = new File(packDirectory, imageFile);
-                                if (stickerFile.exists()) {
-                                    sticker.setSize(stickerFile.length());
-                                    stickers.add(sticker);
-                                }
-                            }
+                    List<StickerPack> packs = StickerPackLoader.getStickerPacks(this);
+                    for (StickerPack pack : packs) {
+                        if (pack.identifier.equals(packId)) {
+                            packToAdd = pack;
+                            break;
                         }
-
-                        packToAdd.setStickers(stickers);
                     }
                 }
             } catch (Exception e) {
@@ -1083,6 +851,74 @@ public class BackgroundRemovalActivity extends AppCompatActivity implements View
         }
     }
 
+    /**
+     * AsyncTask to decode the source image in background.
+     */
+    private static class LoadImageTask extends AsyncTask<Uri, Void, Bitmap> {
+        private final WeakReference<BackgroundRemovalActivity> activityRef;
+        private final Context appContext;
+
+        LoadImageTask(BackgroundRemovalActivity activity) {
+            this.activityRef = new WeakReference<>(activity);
+            this.appContext = activity.getApplicationContext();
+        }
+
+        @Override
+        protected Bitmap doInBackground(Uri... uris) {
+            if (uris.length == 0 || uris[0] == null) {
+                return null;
+            }
+            return ImageUtils.decodeBitmapFromUri(appContext, uris[0]);
+        }
+
+        @Override
+        protected void onPostExecute(Bitmap bitmap) {
+            BackgroundRemovalActivity activity = activityRef.get();
+            if (activity == null || activity.isFinishing()) {
+                if (bitmap != null) {
+                    bitmap.recycle();
+                }
+                return;
+            }
+            activity.onImageLoaded(bitmap);
+        }
+    }
+
+    /**
+     * AsyncTask to remove the background of the image in background.
+     */
+    private static class AutoRemoveTask extends AsyncTask<Bitmap, Void, Bitmap> {
+        private final WeakReference<BackgroundRemovalActivity> activityRef;
+
+        AutoRemoveTask(BackgroundRemovalActivity activity) {
+            this.activityRef = new WeakReference<>(activity);
+        }
+
+        @Override
+        protected Bitmap doInBackground(Bitmap... bitmaps) {
+            try {
+                return BackgroundRemover.createKeepMask(bitmaps[0], BackgroundRemover.DEFAULT_TOLERANCE);
+            } catch (OutOfMemoryError e) {
+                Log.e(TAG, "Not enough memory to remove background", e);
+                return null;
+            } finally {
+                bitmaps[0].recycle();
+            }
+        }
+
+        @Override
+        protected void onPostExecute(Bitmap bitmap) {
+            BackgroundRemovalActivity activity = activityRef.get();
+            if (activity == null || activity.isFinishing()) {
+                if (bitmap != null) {
+                    bitmap.recycle();
+                }
+                return;
+            }
+            activity.onBackgroundRemoved(bitmap);
+        }
+    }
+
     /**
      * AsyncTask to save sticker in background.
      */
@@ -1106,8 +942,9 @@ public class BackgroundRemovalActivity extends AppCompatActivity implements View
                 // Generate file name
                 String fileName = FileUtils.generateStickerFileName("image");
 
-                // Save bitmap as WebP
-                File outputFile = ImageUtils.saveAsStickerFile(activity, bitmaps[0], fileName);
+                // Save bitmap as WebP, outlined so it stays readable on dark backgrounds
+                File outputFile = ImageUtils.saveAsStickerFile(activity, bitmaps[0], fileName,
+                        ImageUtils.STICKER_MARGIN, true);
                 if (outputFile == null) {
                     return null;
                 }
@@ -1123,14 +960,17 @@ public class BackgroundRemovalActivity extends AppCompatActivity implements View
                 sticker.setSize(outputFile.length());
 
                 // Add to custom stickers list
-                List<CustomSticker> stickers = FileUtils.loadCustomStickers(activity);
-                stickers.add(sticker);
-                FileUtils.saveCustomStickersInfo(activity, stickers);
+                if (!FileUtils.addCustomSticker(activity, sticker)) {
+                    return null;
+                }
 
                 return sticker;
             } catch (Exception e) {
                 Log.e(TAG, "Error saving sticker", e);
                 return null;
+            } finally {
+                // The masked result was made for this save only
+                bitmaps[0].recycle();
             }
         }
 
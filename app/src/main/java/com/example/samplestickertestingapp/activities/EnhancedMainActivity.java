@@ -3,8 +3,10 @@ package com.example.samplestickertestingapp.activities;
 
 
 import android.Manifest;
+import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
+import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.view.View;
@@ -17,6 +19,7 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import com.example.samplestickertestingapp.R;
+import com.example.samplestickertestingapp.utils.StickerBlobStore;
 
 /**
  * Enhanced Main Activity with options for:
@@ -54,6 +57,12 @@ public class EnhancedMainActivity extends AppCompatActivity implements View.OnCl
 
         // Request necessary permissions
         checkAndRequestPermissions();
+
+        // Reclaim sticker images no pack or custom sticker references any more, once per launch
+        if (savedInstanceState == null) {
+            final Context appContext = getApplicationContext();
+            AsyncTask.THREAD_POOL_EXECUTOR.execute(() -> StickerBlobStore.collectGarbage(appContext));
+        }
     }
 
     /**
@@ -1,8 +1,11 @@
 package com.example.samplestickertestingapp.activities;
 
+import android.content.ClipData;
+import android.content.Context;
 import android.content.Intent;
 import android.graphics.Bitmap;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.provider.MediaStore;
 import android.view.View;
@@ -15,8 +18,14 @@ import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.samplestickertestingapp.R;
+import com.example.samplestickertestingapp.models.CustomSticker;
+import com.example.samplestickertestingapp.utils.BatchStickerImporter;
 import com.example.samplestickertestingapp.utils.ImageUtils;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Activity for selecting and cropping an image for sticker creation.
  */
@@ -36,6 +45,8 @@ public class ImageStickerActivity extends AppCompatActivity {
     // Image data
     private Uri selectedImageUri;
     private Bitmap selectedImageBitmap;
+    private DecodeImageTask decodeTask;
+    private BatchStickerImporter batchImporter;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -74,6 +85,7 @@ public class ImageStickerActivity extends AppCompatActivity {
     private void openImagePicker() {
         Intent intent = new Intent(Intent.ACTION_PICK, MediaStore.Images.Media.EXTERNAL_CONTENT_URI);
         intent.setType("image/*");
+        intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
         startActivityForResult(Intent.createChooser(intent, getString(R.string.select_image)), REQUEST_IMAGE_PICK);
     }
 
@@ -111,39 +123,123 @@ public class ImageStickerActivity extends AppCompatActivity {
      * Handle result from image picker.
      */
     private void handleImagePickResult(Intent data) {
-        try {
-            // Get selected image URI
-            selectedImageUri = data.getData();
-            if (selectedImageUri == null) {
-                Toast.makeText(this, R.string.error_loading_image, Toast.LENGTH_SHORT).show();
-                return;
+        // Several images are converted straight to stickers
+        ClipData clipData = data.getClipData();
+        if (clipData != null && clipData.getItemCount() > 1) {
+            List<Uri> uris = new ArrayList<>();
+            for (int i = 0; i < clipData.getItemCount(); i++) {
+                Uri uri = clipData.getItemAt(i).getUri();
+                if (uri != null) {
+                    uris.add(uri);
+                }
             }
+            startBatchImport(uris);
+            return;
+        }
 
-            // Show loading
-            progressBar.setVisibility(View.VISIBLE);
+        // Get selected image URI
+        selectedImageUri = data.getData();
+        if (selectedImageUri == null && clipData != null && clipData.getItemCount() == 1) {
+            selectedImageUri = clipData.getItemAt(0).getUri();
+        }
+        if (selectedImageUri == null) {
+            Toast.makeText(this, R.string.error_loading_image, Toast.LENGTH_SHORT).show();
+            return;
+        }
 
-            // Load the image into bitmap
-            selectedImageBitmap = ImageUtils.decodeBitmapFromUri(this, selectedImageUri);
+        // Show loading
+        progressBar.setVisibility(View.VISIBLE);
+        nextButton.setEnabled(false);
 
-            if (selectedImageBitmap != null) {
-                // Display preview
-                previewImageView.setImageBitmap(selectedImageBitmap);
-                previewImageView.setVisibility(View.VISIBLE);
+        // Load the image into bitmap off the main thread
+        if (decodeTask != null) {
+            decodeTask.cancel(false);
+        }
+        decodeTask = new DecodeImageTask(this);
+        decodeTask.execute(selectedImageUri);
+    }
 
-                // Enable next button
-                nextButton.setEnabled(true);
-            } else {
-                Toast.makeText(this, R.string.error_loading_image, Toast.LENGTH_SHORT).show();
+    /**
+     * Show the decoded image.
+     */
+    private void onImageDecoded(Bitmap bitmap) {
+        // Hide loading
+        progressBar.setVisibility(View.GONE);
+
+        if (bitmap != null) {
+            if (selectedImageBitmap != null && !selectedImageBitmap.isRecycled()) {
+                previewImageView.setImageBitmap(null);
+                selectedImageBitmap.recycle();
             }
+            selectedImageBitmap = bitmap;
+
+            // Display preview
+            previewImageView.setImageBitmap(selectedImageBitmap);
+            previewImageView.setVisibility(View.VISIBLE);
 
-            // Hide loading
-            progressBar.setVisibility(View.GONE);
-        } catch (Exception e) {
-            progressBar.setVisibility(View.GONE);
+            // Enable next button
+            nextButton.setEnabled(true);
+        } else {
             Toast.makeText(this, R.string.error_loading_image, Toast.LENGTH_SHORT).show();
         }
     }
 
+    /**
+     * Convert several images to stickers in the background.
+     */
+    private void startBatchImport(List<Uri> uris) {
+        if (batchImporter != null) {
+            return;
+        }
+
+        // Show loading
+        progressBar.setVisibility(View.VISIBLE);
+        selectImageButton.setEnabled(false);
+        nextButton.setEnabled(false);
+        Toast.makeText(this, getString(R.string.importing_images, uris.size()), Toast.LENGTH_SHORT).show();
+
+        batchImporter = new BatchStickerImporter(this, uris, new BatchStickerImporter.Listener() {
+            @Override
+            public void onProgress(int done, int total) {
+                if (getSupportActionBar() != null) {
+                    getSupportActionBar().setSubtitle(getString(R.string.import_progress, done, total));
+                }
+            }
+
+            @Override
+            public void onFinished(List<CustomSticker> stickers, int failed) {
+                onBatchImportFinished(stickers, failed);
+            }
+        });
+        batchImporter.start();
+    }
+
+    /**
+     * Show the imported stickers.
+     */
+    private void onBatchImportFinished(List<CustomSticker> stickers, int failed) {
+        batchImporter = null;
+        progressBar.setVisibility(View.GONE);
+        selectImageButton.setEnabled(true);
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setSubtitle(null);
+        }
+
+        if (stickers.isEmpty()) {
+            Toast.makeText(this, R.string.error_loading_image, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        if (failed > 0) {
+            Toast.makeText(this, getString(R.string.import_partial, stickers.size(), failed), Toast.LENGTH_LONG).show();
+        } else {
+            Toast.makeText(this, getString(R.string.import_complete, stickers.size()), Toast.LENGTH_SHORT).show();
+        }
+
+        startActivity(new Intent(this, SavedStickersActivity.class));
+        finish();
+    }
+
     /**
      * Handle result from image cropper.
      */
@@ -156,10 +252,56 @@ public class ImageStickerActivity extends AppCompatActivity {
     protected void onDestroy() {
         super.onDestroy();
 
+        if (decodeTask != null) {
+            decodeTask.cancel(false);
+            decodeTask = null;
+        }
+
+        if (batchImporter != null) {
+            batchImporter.cancel();
+            batchImporter = null;
+        }
+
         // Clean up bitmap to prevent memory leaks
         if (selectedImageBitmap != null && !selectedImageBitmap.isRecycled()) {
             selectedImageBitmap.recycle();
             selectedImageBitmap = null;
         }
     }
+
+    /**
+     * AsyncTask to decode the selected image in background.
+     */
+    private static class DecodeImageTask extends AsyncTask<Uri, Void, Bitmap> {
+        private final WeakReference<ImageStickerActivity> activityRef;
+        private final Context appContext;
+
+        DecodeImageTask(ImageStickerActivity activity) {
+            this.activityRef = new WeakReference<>(activity);
+            this.appContext = activity.getApplicationContext();
+        }
+
+        @Override
+        protected Bitmap doInBackground(Uri... uris) {
+            return ImageUtils.decodeBitmapFromUri(appContext, uris[0]);
+        }
+
+        @Override
+        protected void onPostExecute(Bitmap bitmap) {
+            ImageStickerActivity activity = activityRef.get();
+            if (activity == null || activity.isFinishing()) {
+                onCancelled(bitmap);
+                return;
+            }
+            activity.decodeTask = null;
+            activity.onImageDecoded(bitmap);
+        }
+
+        @Override
+        protected void onCancelled(Bitmap bitmap) {
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -22,6 +22,7 @@ import com.example.samplestickertestingapp.models.CustomSticker;
 import com.example.samplestickertestingapp.models.Sticker;
 import com.example.samplestickertestingapp.models.StickerPack;
 import com.example.samplestickertestingapp.utils.FileUtils;
+import com.example.samplestickertestingapp.utils.StickerDirectoryWatcher;
 import com.example.samplestickertestingapp.utils.StickerPackLoader;
 import com.example.samplestickertestingapp.utils.StickerPackManager;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
@@ -47,6 +48,17 @@ public class SavedStickersActivity extends AppCompatActivity implements SavedSti
     private SavedStickerAdapter adapter;
     private List<CustomSticker> customStickers = new ArrayList<>();
 
+    // Reloads the stickers when the custom stickers directory changes
+    private final StickerDirectoryWatcher.Listener stickerChangeListener = (packIds, customStickersChanged) -> {
+        if (customStickersChanged) {
+            runOnUiThread(() -> {
+                if (!isFinishing()) {
+                    loadSavedStickers();
+                }
+            });
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -77,21 +89,21 @@ public class SavedStickersActivity extends AppCompatActivity implements SavedSti
             }
         });
 
-        // Load saved stickers
+        // Load saved stickers, then reload only when they change on disk
         loadSavedStickers();
+        StickerDirectoryWatcher.getInstance(this).addListener(stickerChangeListener, true);
     }
 
     @Override
-    public boolean onSupportNavigateUp() {
-        onBackPressed();
-        return true;
+    protected void onDestroy() {
+        super.onDestroy();
+        StickerDirectoryWatcher.getInstance(this).removeListener(stickerChangeListener);
     }
 
     @Override
-    protected void onResume() {
-        super.onResume();
-        // Reload stickers when coming back to this activity
-        loadSavedStickers();
+    public boolean onSupportNavigateUp() {
+        onBackPressed();
+        return true;
     }
 
     /**
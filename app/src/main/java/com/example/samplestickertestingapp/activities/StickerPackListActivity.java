@@ -20,6 +20,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.samplestickertestingapp.R;
 import com.example.samplestickertestingapp.adapters.StickerPackAdapter;
 import com.example.samplestickertestingapp.models.StickerPack;
+import com.example.samplestickertestingapp.utils.StickerDirectoryWatcher;
 import com.example.samplestickertestingapp.utils.StickerPackLoader;
 import com.example.samplestickertestingapp.utils.WhitelistCheck;
 
@@ -41,6 +42,17 @@ public class StickerPackListActivity extends AppCompatActivity implements Sticke
     private List<StickerPack> stickerPacks = new ArrayList<>();
     private LoadStickersTask loadTask;
 
+    // Reloads the list when a pack directory changes on disk
+    private final StickerDirectoryWatcher.Listener packChangeListener = (packIds, customStickersChanged) -> {
+        if (!packIds.isEmpty()) {
+            runOnUiThread(() -> {
+                if (!isFinishing()) {
+                    loadStickerPacks();
+                }
+            });
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -65,8 +77,9 @@ public class StickerPackListActivity extends AppCompatActivity implements Sticke
         adapter = new StickerPackAdapter(this, stickerPacks, this);
         recyclerView.setAdapter(adapter);
 
-        // Load sticker packs
+        // Load sticker packs, then reload only when they change on disk
         loadStickerPacks();
+        StickerDirectoryWatcher.getInstance(this).addListener(packChangeListener, true);
     }
 
     @Override
@@ -81,6 +94,7 @@ public class StickerPackListActivity extends AppCompatActivity implements Sticke
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        StickerDirectoryWatcher.getInstance(this).removeListener(packChangeListener);
         if (loadTask != null) {
             loadTask.cancel(true);
             loadTask = null;
@@ -98,6 +112,9 @@ public class StickerPackListActivity extends AppCompatActivity implements Sticke
      */
     private void loadStickerPacks() {
         showLoading(true);
+        if (loadTask != null) {
+            loadTask.cancel(true);
+        }
         loadTask = new LoadStickersTask(this);
         loadTask.execute();
     }
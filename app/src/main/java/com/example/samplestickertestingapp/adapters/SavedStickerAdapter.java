@@ -1,7 +1,7 @@
 package com.example.samplestickertestingapp.adapters;
 
 import android.content.Context;
-import android.graphics.BitmapFactory;
+import android.graphics.Bitmap;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -14,6 +14,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.samplestickertestingapp.R;
 import com.example.samplestickertestingapp.models.CustomSticker;
+import com.example.samplestickertestingapp.utils.BitmapPool;
 import com.example.samplestickertestingapp.utils.FileUtils;
 
 import java.io.File;
@@ -61,11 +62,13 @@ public class SavedStickerAdapter extends RecyclerView.Adapter<SavedStickerAdapte
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
         CustomSticker sticker = customStickers.get(position);
 
-        // Load sticker image
+        // Load sticker image, reusing the bitmap of the sticker shown before
+        releaseStickerBitmap(holder);
         try {
             File stickerFile = new File(FileUtils.getCustomStickersDirectory(context), sticker.getImageFileName());
             if (stickerFile.exists()) {
-                holder.stickerImage.setImageBitmap(BitmapFactory.decodeFile(stickerFile.getAbsolutePath()));
+                holder.stickerBitmap = BitmapPool.decodeFile(stickerFile.getAbsolutePath());
+                holder.stickerImage.setImageBitmap(holder.stickerBitmap);
             } else {
                 holder.stickerImage.setImageResource(R.drawable.ic_add);
             }
@@ -105,6 +108,23 @@ public class SavedStickerAdapter extends RecyclerView.Adapter<SavedStickerAdapte
         });
     }
 
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        super.onViewRecycled(holder);
+        releaseStickerBitmap(holder);
+    }
+
+    /**
+     * Return the bitmap a holder displays to the pool.
+     */
+    private static void releaseStickerBitmap(ViewHolder holder) {
+        if (holder.stickerBitmap != null) {
+            holder.stickerImage.setImageDrawable(null);
+            BitmapPool.release(holder.stickerBitmap);
+            holder.stickerBitmap = null;
+        }
+    }
+
     @Override
     public int getItemCount() {
         return customStickers.size();
@@ -118,6 +138,8 @@ public class SavedStickerAdapter extends RecyclerView.Adapter<SavedStickerAdapte
         final TextView emojisText;
         final ImageButton addToWhatsAppButton;
         final ImageButton deleteButton;
+        // Pooled bitmap shown in stickerImage, if any
+        Bitmap stickerBitmap;
 
         ViewHolder(View itemView) {
             super(itemView);
@@ -3,6 +3,7 @@ package com.example.samplestickertestingapp.adapters;
 
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.text.format.Formatter;
 import android.util.Log;
@@ -19,9 +20,11 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.samplestickertestingapp.R;
 import com.example.samplestickertestingapp.models.Sticker;
 import com.example.samplestickertestingapp.models.StickerPack;
+import com.example.samplestickertestingapp.utils.BitmapPool;
 
 import java.io.File;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -84,11 +87,14 @@ public class StickerPackAdapter extends RecyclerView.Adapter<StickerPackAdapter.
         holder.stickerCountText.setText(context.getResources().getQuantityString(
                 R.plurals.sticker_count, stickerCount, stickerCount));
 
+        // Return the bitmaps of the pack shown before, they are decoded into again below
+        releaseBitmaps(holder);
+
         // Set tray image (simplified using standard drawables)
         try {
             File trayFile = new File(new File(context.getFilesDir(), pack.identifier), pack.trayImageFile);
             if (trayFile.exists()) {
-                holder.trayImageView.setImageBitmap(BitmapFactory.decodeFile(trayFile.getAbsolutePath()));
+                holder.trayImageView.setImageBitmap(pooledDecode(holder, trayFile));
             } else {
                 // Try loading from assets
                 try {
@@ -137,7 +143,7 @@ public class StickerPackAdapter extends RecyclerView.Adapter<StickerPackAdapter.
                 File stickerFile = new File(new File(context.getFilesDir(), pack.identifier),
                         stickers.get(i).imageFileName);
                 if (stickerFile.exists()) {
-                    imageView.setImageBitmap(BitmapFactory.decodeFile(stickerFile.getAbsolutePath()));
+                    imageView.setImageBitmap(pooledDecode(holder, stickerFile));
                 } else {
                     // Try loading from assets
                     try {
@@ -174,6 +180,38 @@ public class StickerPackAdapter extends RecyclerView.Adapter<StickerPackAdapter.
         });
     }
 
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        super.onViewRecycled(holder);
+        releaseBitmaps(holder);
+    }
+
+    /**
+     * Decode an image file into a pooled bitmap the holder keeps track of.
+     */
+    private static Bitmap pooledDecode(ViewHolder holder, File file) {
+        Bitmap bitmap = BitmapPool.decodeFile(file.getAbsolutePath());
+        if (bitmap != null) {
+            holder.pooledBitmaps.add(bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Return the bitmaps a holder displays to the pool.
+     */
+    private static void releaseBitmaps(ViewHolder holder) {
+        if (holder.pooledBitmaps.isEmpty()) {
+            return;
+        }
+        holder.trayImageView.setImageDrawable(null);
+        holder.stickerPreviewLayout.removeAllViews();
+        for (Bitmap bitmap : holder.pooledBitmaps) {
+            BitmapPool.release(bitmap);
+        }
+        holder.pooledBitmaps.clear();
+    }
+
     /**
      * Update the add button appearance based on whether the pack is already added to WhatsApp.
      *
@@ -211,6 +249,8 @@ public class StickerPackAdapter extends RecyclerView.Adapter<StickerPackAdapter.
         final LinearLayout stickerPreviewLayout;
         final ImageView addButton;
         final TextView addedText;
+        // Pooled bitmaps shown in the tray and preview images
+        final List<Bitmap> pooledBitmaps = new ArrayList<>();
 
         ViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -3,6 +3,7 @@ package com.example.samplestickertestingapp.adapters;
 
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -17,6 +18,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.samplestickertestingapp.R;
 import com.example.samplestickertestingapp.models.Sticker;
 import com.example.samplestickertestingapp.models.StickerPack;
+import com.example.samplestickertestingapp.utils.BitmapPool;
 
 import java.io.File;
 import java.io.InputStream;
@@ -60,12 +62,14 @@ public class StickerPreviewAdapter extends RecyclerView.Adapter<StickerPreviewAd
 
         Log.d(TAG, "Binding sticker: " + sticker.imageFileName + " at position " + position);
 
-        // Set sticker image (using standard ImageView)
+        // Set sticker image (using standard ImageView), reusing the bitmap of the sticker shown before
+        releaseStickerBitmap(holder);
         try {
             File stickerFile = new File(new File(context.getFilesDir(), stickerPack.identifier),
                     sticker.imageFileName);
             if (stickerFile.exists()) {
-                holder.stickerImageView.setImageBitmap(BitmapFactory.decodeFile(stickerFile.getAbsolutePath()));
+                holder.stickerBitmap = BitmapPool.decodeFile(stickerFile.getAbsolutePath());
+                holder.stickerImageView.setImageBitmap(holder.stickerBitmap);
                 Log.d(TAG, "Loaded sticker from file: " + stickerFile.getAbsolutePath());
             } else {
                 // Try loading from assets
@@ -97,6 +101,23 @@ public class StickerPreviewAdapter extends RecyclerView.Adapter<StickerPreviewAd
         }
     }
 
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        super.onViewRecycled(holder);
+        releaseStickerBitmap(holder);
+    }
+
+    /**
+     * Return the bitmap a holder displays to the pool.
+     */
+    private static void releaseStickerBitmap(ViewHolder holder) {
+        if (holder.stickerBitmap != null) {
+            holder.stickerImageView.setImageDrawable(null);
+            BitmapPool.release(holder.stickerBitmap);
+            holder.stickerBitmap = null;
+        }
+    }
+
     @Override
     public int getItemCount() {
         return stickers.size();
@@ -108,6 +129,8 @@ public class StickerPreviewAdapter extends RecyclerView.Adapter<StickerPreviewAd
     static class ViewHolder extends RecyclerView.ViewHolder {
         final ImageView stickerImageView;
         final TextView emojiTextView;
+        // Pooled bitmap shown in stickerImageView, if any
+        Bitmap stickerBitmap;
 
         ViewHolder(@NonNull View itemView) {
             super(itemView);
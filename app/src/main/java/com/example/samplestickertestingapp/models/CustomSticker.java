@@ -49,6 +49,24 @@ public class CustomSticker implements Parcelable {
         this.sourceType = sourceType;
     }
 
+    /**
+     * Constructor for restoring a saved custom sticker
+     *
+     * @param imageFileName Name of the WebP image file
+     * @param emojis List of emojis associated with this sticker
+     * @param accessibilityText Text description for accessibility
+     * @param sourceType Type of source (image or video)
+     * @param creationTimestamp Creation timestamp in milliseconds
+     */
+    public CustomSticker(String imageFileName, List<String> emojis, String accessibilityText, int sourceType,
+                         long creationTimestamp) {
+        this.imageFileName = imageFileName;
+        this.emojis = emojis;
+        this.accessibilityText = accessibilityText;
+        this.creationTimestamp = creationTimestamp;
+        this.sourceType = sourceType;
+    }
+
     /**
      * Set the size of the sticker file in bytes
      *
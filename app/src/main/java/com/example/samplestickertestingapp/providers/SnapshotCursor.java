@@ -0,0 +1,102 @@
+package com.example.samplestickertestingapp.providers;
+
+import android.database.AbstractCursor;
+
+/**
+ * Read-only cursor over precomputed column arrays.
+ * The arrays are shared with {@link StickerCursorTables} and never copied; the cursor only
+ * exposes a range of rows and the columns that were asked for.
+ */
+final class SnapshotCursor extends AbstractCursor {
+    private final String[] columnNames;
+
+    // One array of values per column, indexed by row
+    private final Object[][] columns;
+
+    // First row of the shared arrays exposed by this cursor
+    private final int offset;
+    private final int count;
+
+    /**
+     * @param columnNames Names of the exposed columns
+     * @param columns Values for each exposed column, in the same order as the names
+     * @param offset First row to expose
+     * @param count Number of rows to expose
+     */
+    SnapshotCursor(String[] columnNames, Object[][] columns, int offset, int count) {
+        this.columnNames = columnNames;
+        this.columns = columns;
+        this.offset = offset;
+        this.count = count;
+    }
+
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return columnNames;
+    }
+
+    private Object get(int column) {
+        if (column < 0 || column >= columns.length) {
+            throw new IndexOutOfBoundsException("Requested column: " + column + ", # of columns: " + columns.length);
+        }
+        if (mPos < 0 || mPos >= count) {
+            throw new IndexOutOfBoundsException("Position: " + mPos + ", count: " + count);
+        }
+        return columns[column][offset + mPos];
+    }
+
+    @Override
+    public String getString(int column) {
+        Object value = get(column);
+        return value == null ? null : value.toString();
+    }
+
+    @Override
+    public short getShort(int column) {
+        return (short) getLong(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        Object value = get(column);
+        if (value == null) return 0;
+        if (value instanceof Number) return ((Number) value).longValue();
+        return Long.parseLong(value.toString());
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return (float) getDouble(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        Object value = get(column);
+        if (value == null) return 0;
+        if (value instanceof Number) return ((Number) value).doubleValue();
+        return Double.parseDouble(value.toString());
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return get(column) == null;
+    }
+
+    @Override
+    public int getType(int column) {
+        Object value = get(column);
+        if (value == null) return FIELD_TYPE_NULL;
+        if (value instanceof Number) return FIELD_TYPE_INTEGER;
+        return FIELD_TYPE_STRING;
+    }
+}
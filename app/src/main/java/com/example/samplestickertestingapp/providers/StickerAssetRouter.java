@@ -0,0 +1,67 @@
+package com.example.samplestickertestingapp.providers;
+
+import com.example.samplestickertestingapp.utils.StickerPackSnapshot;
+
+import java.util.List;
+
+/**
+ * Resolves sticker asset URIs of the form stickers_asset/&lt;pack&gt;/&lt;file&gt;.
+ * The path is parsed directly into a pack identifier and file name and checked against
+ * a pack snapshot with hash lookups, so nothing is registered per sticker.
+ */
+final class StickerAssetRouter {
+
+    /**
+     * A parsed sticker asset path.
+     */
+    static final class Route {
+        final String packId;
+        final String fileName;
+
+        Route(String packId, String fileName) {
+            this.packId = packId;
+            this.fileName = fileName;
+        }
+    }
+
+    private StickerAssetRouter() {
+    }
+
+    /**
+     * Parse the path segments of a sticker asset URI.
+     *
+     * @param pathSegments URI path segments
+     * @return Parsed route, or null if the path is not a valid sticker asset path
+     */
+    static Route parse(List<String> pathSegments) {
+        if (pathSegments.size() != 3 || !StickerContentProvider.STICKERS_ASSET.equals(pathSegments.get(0))) {
+            return null;
+        }
+
+        String packId = pathSegments.get(1);
+        String fileName = pathSegments.get(2);
+        if (!isPlainName(packId) || !isPlainName(fileName)) {
+            return null;
+        }
+        return new Route(packId, fileName);
+    }
+
+    /**
+     * Check whether a route points at a tray icon or sticker of a pack in the snapshot.
+     *
+     * @param snapshot Pack snapshot to check against
+     * @param route Parsed route
+     * @return true if the file belongs to a known pack
+     */
+    static boolean contains(StickerPackSnapshot snapshot, Route route) {
+        return snapshot.containsFile(route.packId, route.fileName);
+    }
+
+    /**
+     * Reject empty names and anything that could escape the pack directory.
+     */
+    private static boolean isPlainName(String name) {
+        return !name.isEmpty() && !name.equals(".") && !name.equals("..") &&
+                name.indexOf('/') < 0 && name.indexOf('\\') < 0;
+    }
+}
@@ -3,46 +3,33 @@ package com.example.samplestickertestingapp.providers;
 import android.content.ContentProvider;
 import android.content.ContentResolver;
 import android.content.ContentValues;
-import android.content.Context;
 import android.content.UriMatcher;
 import android.content.res.AssetFileDescriptor;
-import android.content.res.AssetManager;
 import android.database.Cursor;
-import android.database.MatrixCursor;
 import android.net.Uri;
 import android.os.ParcelFileDescriptor;
-import android.text.TextUtils;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.example.samplestickertestingapp.BuildConfig;
-import com.example.samplestickertestingapp.models.Sticker;
-import com.example.samplestickertestingapp.models.StickerPack;
-import com.example.samplestickertestingapp.utils.StickerPackLoader;
+import com.example.samplestickertestingapp.utils.StickerDirectoryWatcher;
+import com.example.samplestickertestingapp.utils.StickerPackIndex;
+import com.example.samplestickertestingapp.utils.StickerPackSnapshot;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 
 /**
  * Content Provider for sticker packs. This is the interface WhatsApp uses to access stickers.
  * Do not change the method signatures or identifiers as it would break compatibility.
+ *
+ * WhatsApp queries from several binder threads at once. Each call reads one immutable
+ * {@link StickerPackSnapshot} and never takes a lock; refreshing the index publishes a new one.
+ * Cursors are served from column arrays computed once per snapshot version.
  */
 public class StickerContentProvider extends ContentProvider {
     private static final String TAG = "StickerContentProvider";
@@ -83,21 +70,15 @@ public class StickerContentProvider extends ContentProvider {
     private static final int METADATA_CODE = 1;
     private static final int METADATA_CODE_FOR_SINGLE_PACK = 2;
     private static final int STICKERS_CODE = 3;
-    private static final int STICKERS_ASSET_CODE = 4;
-    private static final int STICKER_PACK_TRAY_ICON_CODE = 5;
-
-    // Cache for URI patterns - we'll map pack/sticker ids to codes
-    private Map<String, Integer> uriCodeMap = new HashMap<>();
-    private int nextUriCode = 10; // Start after our initial codes
 
-    // URI matcher
+    // URI matcher for metadata and sticker list queries
     private UriMatcher MATCHER;
 
-    // List of available sticker packs
-    private List<StickerPack> stickerPackList;
+    // Index of available sticker packs, only re-parses packs that changed on disk
+    private StickerPackIndex packIndex;
 
-    // Flag to track if an update is needed
-    private boolean needUpdate = true;
+    // Cursor contents for the latest snapshot, rebuilt only when the snapshot version changes
+    private volatile StickerCursorTables cursorTables = StickerCursorTables.EMPTY;
 
     @Override
     public boolean onCreate() {
@@ -115,240 +96,32 @@ public class StickerContentProvider extends ContentProvider {
         MATCHER.addURI(authority, METADATA + "/*", METADATA_CODE_FOR_SINGLE_PACK);
         MATCHER.addURI(authority, STICKERS + "/*", STICKERS_CODE);
 
-        // Initial load of sticker packs
+        // Initial load of sticker packs; afterwards only directories reported by the watcher are checked
+        packIndex = new StickerPackIndex(getContext());
+        packIndex.watch(StickerDirectoryWatcher.getInstance(getContext()));
         loadStickerPacks();
 
         return true;
     }
 
     /**
-     * Register URIs for a specific pack and its stickers.
-     */
-    private void registerPackUris(String authority, StickerPack pack) {
-        String packId = pack.identifier;
-        Log.d(TAG, "Registering URIs for pack: " + packId);
-
-        // Register URI for tray icon - first check if we already have a code
-        String trayKey = packId + "/" + pack.trayImageFile;
-        if (!uriCodeMap.containsKey(trayKey)) {
-            int code = nextUriCode++;
-            uriCodeMap.put(trayKey, code);
-            MATCHER.addURI(authority,
-                    STICKERS_ASSET + "/" + trayKey,
-                    code);
-            Log.d(TAG, "Registered tray icon URI: " + STICKERS_ASSET + "/" + trayKey + " with code " + code);
-        }
-
-        // Register URI for each sticker
-        for (Sticker sticker : pack.getStickers()) {
-            String stickerKey = packId + "/" + sticker.imageFileName;
-            if (!uriCodeMap.containsKey(stickerKey)) {
-                int code = nextUriCode++;
-                uriCodeMap.put(stickerKey, code);
-                MATCHER.addURI(authority,
-                        STICKERS_ASSET + "/" + stickerKey,
-                        code);
-                Log.d(TAG, "Registered sticker URI: " + STICKERS_ASSET + "/" + stickerKey + " with code " + code);
-            }
-        }
-    }
-
-    /**
-     * Force reload of sticker packs. Called when content changes.
+     * Bring the pack index up to date and return the resulting snapshot.
+     * Only directories the watcher reported are checked, and only packs whose files
+     * changed since the last refresh are parsed again. If another thread is already
+     * refreshing, the current snapshot is returned instead of waiting, except before
+     * the first load has finished.
      */
-    private synchronized void loadStickerPacks() {
+    @NonNull
+    private StickerPackSnapshot loadStickerPacks() {
         try {
-            // Clear existing packs
-            if (stickerPackList != null) {
-                stickerPackList.clear();
-            } else {
-                stickerPackList = new ArrayList<>();
-            }
-
-            // Load from StickerPackLoader first
-            try {
-                List<StickerPack> loaderPacks = StickerPackLoader.getStickerPacks(getContext());
-                stickerPackList.addAll(loaderPacks);
-                Log.d(TAG, "Loaded " + loaderPacks.size() + " packs from StickerPackLoader");
-            } catch (Exception e) {
-                Log.e(TAG, "Error loading from StickerPackLoader: " + e.getMessage());
-            }
-
-            // Then scan directories directly to catch any new packs or updates
-            scanDirectoriesForStickerPacks();
-
-            // Register URIs for all packs
-            if (getContext() != null) {
-                String authority = BuildConfig.CONTENT_PROVIDER_AUTHORITY;
-                for (StickerPack pack : stickerPackList) {
-                    registerPackUris(authority, pack);
-                }
+            boolean changed = packIndex.isLoaded() ? packIndex.tryRefresh() : packIndex.refresh();
+            if (changed) {
+                Log.d(TAG, "Total loaded packs: " + packIndex.getStickerPacks().size());
             }
-
-            // Reset the update flag
-            needUpdate = false;
-
-            Log.d(TAG, "Total loaded packs: " + stickerPackList.size());
         } catch (Exception e) {
             Log.e(TAG, "Error loading sticker packs", e);
-            if (stickerPackList == null) {
-                stickerPackList = new ArrayList<>();
-            }
-        }
-    }
-
-    /**
-     * Scan directories for sticker packs that might not be loaded by the StickerPackLoader.
-     */
-    private void scanDirectoriesForStickerPacks() {
-        Context context = getContext();
-        if (context == null) return;
-
-        File[] directories = context.getFilesDir().listFiles(File::isDirectory);
-        if (directories == null) return;
-
-        for (File directory : directories) {
-            String dirName = directory.getName();
-
-            // Skip if not a custom sticker pack directory
-            if (!dirName.startsWith("custom_") && !dirName.startsWith("colorstickers_")) continue;
-
-            // Check for pack_info.json
-            File packInfoFile = new File(directory, "pack_info.json");
-            if (!packInfoFile.exists()) continue;
-
-            boolean alreadyLoaded = false;
-            int existingPackIndex = -1;
-
-            // Check if we already have this pack
-            for (int i = 0; i < stickerPackList.size(); i++) {
-                StickerPack pack = stickerPackList.get(i);
-                if (pack.identifier.equals(dirName)) {
-                    alreadyLoaded = true;
-                    existingPackIndex = i;
-                    break;
-                }
-            }
-
-            try {
-                // Read the info file
-                StringBuilder jsonString = new StringBuilder();
-                try (BufferedReader reader = new BufferedReader(new FileReader(packInfoFile))) {
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        jsonString.append(line);
-                    }
-                }
-
-                JSONObject packJson = new JSONObject(jsonString.toString());
-
-                // Create the pack
-                StickerPack pack = new StickerPack(
-                        packJson.getString("identifier"),
-                        packJson.getString("name"),
-                        packJson.getString("publisher"),
-                        packJson.getString("tray_image_file"),
-                        packJson.optString("publisher_email", ""),
-                        packJson.optString("publisher_website", ""),
-                        packJson.optString("privacy_policy_website", ""),
-                        packJson.optString("license_agreement_website", ""),
-                        packJson.optString("image_data_version", "1"),
-                        packJson.optBoolean("avoid_cache", false),
-                        packJson.optBoolean("animated_sticker_pack", false)
-                );
-
-                // Load stickers
-                List<Sticker> stickers = new ArrayList<>();
-                if (packJson.has("stickers")) {
-                    JSONArray stickersJson = packJson.getJSONArray("stickers");
-
-                    for (int i = 0; i < stickersJson.length(); i++) {
-                        JSONObject stickerJson = stickersJson.getJSONObject(i);
-
-                        String imageFile = stickerJson.getString("image_file");
-
-                        // Parse emojis
-                        List<String> emojis = new ArrayList<>();
-                        if (stickerJson.has("emojis")) {
-                            JSONArray emojisJson = stickerJson.getJSONArray("emojis");
-                            for (int j = 0; j < emojisJson.length(); j++) {
-                                emojis.add(emojisJson.getString(j));
-                            }
-                        } else {
-                            // Default emoji
-                            emojis.add("🎨");
-                        }
-
-                        String accessibilityText = stickerJson.optString("accessibility_text", "");
-
-                        Sticker sticker = new Sticker(imageFile, emojis, accessibilityText);
-                        File stickerFile = new File(directory, imageFile);
-                        if (stickerFile.exists()) {
-                            sticker.setSize(stickerFile.length());
-                            stickers.add(sticker);
-                        }
-                    }
-                }
-
-                // Also check for sticker files directly (may not be listed in JSON yet)
-                File[] stickerFiles = directory.listFiles(file ->
-                        file.isFile() && file.getName().endsWith(".webp") &&
-                                !file.getName().equals(pack.trayImageFile));
-
-                if (stickerFiles != null) {
-                    for (File file : stickerFiles) {
-                        // Check if sticker already added
-                        boolean alreadyAdded = false;
-                        for (Sticker sticker : stickers) {
-                            if (sticker.imageFileName.equals(file.getName())) {
-                                alreadyAdded = true;
-                                break;
-                            }
-                        }
-
-                        if (!alreadyAdded) {
-                            // Create a default sticker entry
-                            List<String> defaultEmojis = new ArrayList<>();
-                            defaultEmojis.add("🎨");
-                            Sticker sticker = new Sticker(
-                                    file.getName(),
-                                    defaultEmojis,
-                                    "Custom sticker"
-                            );
-                            sticker.setSize(file.length());
-                            stickers.add(sticker);
-                        }
-                    }
-                }
-
-                // Only add if we have at least 1 sticker (WhatsApp requires 3 but we're more lenient)
-                if (stickers.size() >= 1) {
-                    pack.setStickers(stickers);
-
-                    if (alreadyLoaded && existingPackIndex >= 0) {
-                        // Update existing pack with new data
-                        stickerPackList.set(existingPackIndex, pack);
-                        Log.d(TAG, "Updated existing pack: " + pack.identifier +
-                                " with " + stickers.size() + " stickers");
-                    } else {
-                        // Add as new pack
-                        stickerPackList.add(pack);
-                        Log.d(TAG, "Added pack from directory scan: " + pack.identifier +
-                                " with " + stickers.size() + " stickers");
-                    }
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error loading pack from directory: " + directory.getName(), e);
-            }
-        }
-    }
-
-    private List<StickerPack> getStickerPackList() {
-        // Check if we need to refresh the sticker pack data
-        if (needUpdate || stickerPackList == null) {
-            loadStickerPacks();
         }
-        return stickerPackList;
+        return packIndex.getSnapshot();
     }
 
     @Nullable
@@ -358,21 +131,21 @@ public class StickerContentProvider extends ContentProvider {
         final int code = MATCHER.match(uri);
         Log.d(TAG, "Query URI: " + uri + ", code: " + code);
 
-        // Always reload on metadata queries to ensure fresh data
+        // Apply reported changes on metadata queries; unchanged packs are served from the index
+        final StickerPackSnapshot snapshot;
         if (code == METADATA_CODE || code == METADATA_CODE_FOR_SINGLE_PACK) {
-            needUpdate = true;
+            snapshot = loadStickerPacks();
+        } else {
+            snapshot = packIndex.getSnapshot();
         }
 
-        // Get the updated sticker pack list
-        List<StickerPack> packs = getStickerPackList();
-
         switch (code) {
             case METADATA_CODE:
-                return getPackForAllStickerPacks(uri);
+                return getPackForAllStickerPacks(uri, projection, snapshot);
             case METADATA_CODE_FOR_SINGLE_PACK:
-                return getCursorForSingleStickerPack(uri);
+                return getCursorForSingleStickerPack(uri, projection, snapshot);
             case STICKERS_CODE:
-                return getStickersForAStickerPack(uri);
+                return getStickersForAStickerPack(uri, projection, snapshot);
             default:
                 throw new IllegalArgumentException("Unknown URI: " + uri);
         }
@@ -381,17 +154,18 @@ public class StickerContentProvider extends ContentProvider {
     @Nullable
     @Override
     public AssetFileDescriptor openAssetFile(@NonNull Uri uri, @NonNull String mode) throws FileNotFoundException {
-        final int matchCode = MATCHER.match(uri);
-        Log.d(TAG, "Open asset file URI: " + uri + ", code: " + matchCode);
+        Log.d(TAG, "Open asset file URI: " + uri);
 
-        // Special handling for sticker assets
-        List<String> pathSegments = uri.getPathSegments();
-        if (pathSegments.size() != 3) {
+        final StickerAssetRouter.Route route = StickerAssetRouter.parse(uri.getPathSegments());
+        if (route == null) {
             throw new IllegalArgumentException("Invalid URI path segments: " + uri);
         }
+        if (!containsAsset(route)) {
+            throw new FileNotFoundException("Unknown sticker asset: " + uri);
+        }
 
-        final String fileName = pathSegments.get(pathSegments.size() - 1);
-        final String identifier = pathSegments.get(pathSegments.size() - 2);
+        final String fileName = route.fileName;
+        final String identifier = route.packId;
 
         Log.d(TAG, "Fetching asset: " + identifier + "/" + fileName);
 
@@ -429,99 +203,68 @@ public class StickerContentProvider extends ContentProvider {
             case STICKERS_CODE:
                 return "vnd.android.cursor.dir/vnd." + BuildConfig.CONTENT_PROVIDER_AUTHORITY + "." + STICKERS;
             default:
-                if (matchCode != UriMatcher.NO_MATCH) {
-                    // This is likely a sticker asset URI
-                    List<String> pathSegments = uri.getPathSegments();
-                    if (pathSegments.size() == 3 &&
-                            pathSegments.get(0).equals(STICKERS_ASSET) &&
-                            pathSegments.get(2).endsWith(".webp")) {
-                        return "image/webp";
-                    }
+                StickerAssetRouter.Route route = StickerAssetRouter.parse(uri.getPathSegments());
+                if (route != null && containsAsset(route) && route.fileName.endsWith(".webp")) {
+                    return "image/webp";
                 }
                 throw new IllegalArgumentException("Unknown URI: " + uri);
         }
     }
 
-    private Cursor getPackForAllStickerPacks(@NonNull Uri uri) {
-        return getStickerPackInfo(uri, getStickerPackList());
+    /**
+     * Check a sticker asset route against the current snapshot. If the file is not part
+     * of it yet, refresh the index once in case the pack changed since the last metadata query.
+     *
+     * @param route Parsed sticker asset route
+     * @return true if the route points at a file of a known pack
+     */
+    private boolean containsAsset(@NonNull StickerAssetRouter.Route route) {
+        return StickerAssetRouter.contains(packIndex.getSnapshot(), route) ||
+                StickerAssetRouter.contains(loadStickerPacks(), route);
     }
 
-    private Cursor getCursorForSingleStickerPack(@NonNull Uri uri) {
-        final String identifier = uri.getLastPathSegment();
-        Log.d(TAG, "Searching for pack: " + identifier);
-
-        for (StickerPack stickerPack : getStickerPackList()) {
-            if (identifier.equals(stickerPack.identifier)) {
-                Log.d(TAG, "Found pack: " + stickerPack.identifier + " with " +
-                        stickerPack.getStickers().size() + " stickers");
-                return getStickerPackInfo(uri, Collections.singletonList(stickerPack));
+    /**
+     * Get the cursor tables for a snapshot, building them if the snapshot is newer than
+     * the cached tables.
+     */
+    @NonNull
+    private StickerCursorTables getCursorTables(@NonNull StickerPackSnapshot snapshot) {
+        StickerCursorTables tables = cursorTables;
+        if (tables.getVersion() != snapshot.getVersion()) {
+            tables = StickerCursorTables.build(snapshot, tables);
+            // Never replace newer tables built by a concurrent query
+            if (tables.getVersion() > cursorTables.getVersion()) {
+                cursorTables = tables;
             }
         }
+        return tables;
+    }
 
-        Log.e(TAG, "Pack not found: " + identifier);
-        return getStickerPackInfo(uri, new ArrayList<>());
+    private Cursor getPackForAllStickerPacks(@NonNull Uri uri, @Nullable String[] projection,
+                                             @NonNull StickerPackSnapshot snapshot) {
+        Cursor cursor = getCursorTables(snapshot).packsCursor(projection);
+        cursor.setNotificationUri(Objects.requireNonNull(getContext()).getContentResolver(), uri);
+        return cursor;
     }
 
-    @NonNull
-    private Cursor getStickerPackInfo(@NonNull Uri uri, @NonNull List<StickerPack> stickerPackList) {
-        MatrixCursor cursor = new MatrixCursor(
-                new String[]{
-                        STICKER_PACK_IDENTIFIER_IN_QUERY,
-                        STICKER_PACK_NAME_IN_QUERY,
-                        STICKER_PACK_PUBLISHER_IN_QUERY,
-                        STICKER_PACK_ICON_IN_QUERY,
-                        ANDROID_APP_DOWNLOAD_LINK_IN_QUERY,
-                        IOS_APP_DOWNLOAD_LINK_IN_QUERY,
-                        PUBLISHER_EMAIL,
-                        PUBLISHER_WEBSITE,
-                        PRIVACY_POLICY_WEBSITE,
-                        LICENSE_AGREEMENT_WEBSITE,
-                        IMAGE_DATA_VERSION,
-                        AVOID_CACHE,
-                        ANIMATED_STICKER_PACK,
-                });
-
-        for (StickerPack stickerPack : stickerPackList) {
-            MatrixCursor.RowBuilder builder = cursor.newRow();
-            builder.add(stickerPack.identifier);
-            builder.add(stickerPack.name);
-            builder.add(stickerPack.publisher);
-            builder.add(stickerPack.trayImageFile);
-            builder.add(stickerPack.androidPlayStoreLink);
-            builder.add(stickerPack.iosAppStoreLink);
-            builder.add(stickerPack.publisherEmail);
-            builder.add(stickerPack.publisherWebsite);
-            builder.add(stickerPack.privacyPolicyWebsite);
-            builder.add(stickerPack.licenseAgreementWebsite);
-            builder.add(stickerPack.imageDataVersion);
-            builder.add(stickerPack.avoidCache ? 1 : 0);
-            builder.add(stickerPack.animatedStickerPack ? 1 : 0);
+    private Cursor getCursorForSingleStickerPack(@NonNull Uri uri, @Nullable String[] projection,
+                                                 @NonNull StickerPackSnapshot snapshot) {
+        final String identifier = uri.getLastPathSegment();
+        if (snapshot.getStickerPack(identifier) == null) {
+            Log.e(TAG, "Pack not found: " + identifier);
         }
 
+        Cursor cursor = getCursorTables(snapshot).packCursor(identifier, projection);
         cursor.setNotificationUri(Objects.requireNonNull(getContext()).getContentResolver(), uri);
         return cursor;
     }
 
     @NonNull
-    private Cursor getStickersForAStickerPack(@NonNull Uri uri) {
+    private Cursor getStickersForAStickerPack(@NonNull Uri uri, @Nullable String[] projection,
+                                              @NonNull StickerPackSnapshot snapshot) {
         final String identifier = uri.getLastPathSegment();
-        Log.d(TAG, "Getting stickers for pack: " + identifier);
-
-        MatrixCursor cursor = new MatrixCursor(new String[]{STICKER_FILE_NAME_IN_QUERY, STICKER_FILE_EMOJI_IN_QUERY, STICKER_FILE_ACCESSIBILITY_TEXT_IN_QUERY});
-        for (StickerPack stickerPack : getStickerPackList()) {
-            if (identifier.equals(stickerPack.identifier)) {
-                Log.d(TAG, "Found pack, adding " + stickerPack.getStickers().size() + " stickers to cursor");
-                for (Sticker sticker : stickerPack.getStickers()) {
-                    cursor.addRow(new Object[]{
-                            sticker.imageFileName,
-                            TextUtils.join(",", sticker.emojis),
-                            sticker.accessibilityText
-                    });
-                }
-                break;
-            }
-        }
 
+        Cursor cursor = getCursorTables(snapshot).stickersCursor(identifier, projection);
         cursor.setNotificationUri(Objects.requireNonNull(getContext()).getContentResolver(), uri);
         return cursor;
     }
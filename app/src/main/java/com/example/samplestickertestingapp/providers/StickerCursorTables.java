@@ -0,0 +1,243 @@
+package com.example.samplestickertestingapp.providers;
+
+import android.database.Cursor;
+import android.text.TextUtils;
+
+import com.example.samplestickertestingapp.models.Sticker;
+import com.example.samplestickertestingapp.models.StickerPack;
+import com.example.samplestickertestingapp.utils.StickerPackSnapshot;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.example.samplestickertestingapp.providers.StickerContentProvider.ANDROID_APP_DOWNLOAD_LINK_IN_QUERY;
+import static com.example.samplestickertestingapp.providers.StickerContentProvider.ANIMATED_STICKER_PACK;
+import static com.example.samplestickertestingapp.providers.StickerContentProvider.AVOID_CACHE;
+import static com.example.samplestickertestingapp.providers.StickerContentProvider.IMAGE_DATA_VERSION;
+import static com.example.samplestickertestingapp.providers.StickerContentProvider.IOS_APP_DOWNLOAD_LINK_IN_QUERY;
+import static com.example.samplestickertestingapp.providers.StickerContentProvider.LICENSE_AGREEMENT_WEBSITE;
+import static com.example.samplestickertestingapp.providers.StickerContentProvider.PRIVACY_POLICY_WEBSITE;
+import static com.example.samplestickertestingapp.providers.StickerContentProvider.PUBLISHER_EMAIL;
+import static com.example.samplestickertestingapp.providers.StickerContentProvider.PUBLISHER_WEBSITE;
+import static com.example.samplestickertestingapp.providers.StickerContentProvider.STICKER_FILE_ACCESSIBILITY_TEXT_IN_QUERY;
+import static com.example.samplestickertestingapp.providers.StickerContentProvider.STICKER_FILE_EMOJI_IN_QUERY;
+import static com.example.samplestickertestingapp.providers.StickerContentProvider.STICKER_FILE_NAME_IN_QUERY;
+import static com.example.samplestickertestingapp.providers.StickerContentProvider.STICKER_PACK_ICON_IN_QUERY;
+import static com.example.samplestickertestingapp.providers.StickerContentProvider.STICKER_PACK_IDENTIFIER_IN_QUERY;
+import static com.example.samplestickertestingapp.providers.StickerContentProvider.STICKER_PACK_NAME_IN_QUERY;
+import static com.example.samplestickertestingapp.providers.StickerContentProvider.STICKER_PACK_PUBLISHER_IN_QUERY;
+
+/**
+ * Column arrays for the provider's cursors, kept per snapshot version.
+ * Queries are answered by wrapping these arrays in a {@link SnapshotCursor}, so serving
+ * metadata or a sticker list does not copy rows or join emojis again. Each column is built
+ * the first time a projection asks for it, so columns no client reads are never built.
+ */
+final class StickerCursorTables {
+
+    static final String[] PACK_COLUMNS = {
+            STICKER_PACK_IDENTIFIER_IN_QUERY,
+            STICKER_PACK_NAME_IN_QUERY,
+            STICKER_PACK_PUBLISHER_IN_QUERY,
+            STICKER_PACK_ICON_IN_QUERY,
+            ANDROID_APP_DOWNLOAD_LINK_IN_QUERY,
+            IOS_APP_DOWNLOAD_LINK_IN_QUERY,
+            PUBLISHER_EMAIL,
+            PUBLISHER_WEBSITE,
+            PRIVACY_POLICY_WEBSITE,
+            LICENSE_AGREEMENT_WEBSITE,
+            IMAGE_DATA_VERSION,
+            AVOID_CACHE,
+            ANIMATED_STICKER_PACK,
+    };
+
+    static final String[] STICKER_COLUMNS = {
+            STICKER_FILE_NAME_IN_QUERY,
+            STICKER_FILE_EMOJI_IN_QUERY,
+            STICKER_FILE_ACCESSIBILITY_TEXT_IN_QUERY,
+    };
+
+    private static final Integer TRUE = 1;
+    private static final Integer FALSE = 0;
+
+    private static final Object[] NO_VALUES = new Object[0];
+
+    static final StickerCursorTables EMPTY = build(StickerPackSnapshot.EMPTY, null);
+
+    /**
+     * Sticker columns of one pack, reused across versions while the pack object is unchanged.
+     */
+    private static final class PackStickers {
+        final StickerPack pack;
+
+        // Values, [column][sticker row], null until first asked for
+        private final Object[][] columns = new Object[STICKER_COLUMNS.length][];
+
+        PackStickers(StickerPack pack) {
+            this.pack = pack;
+        }
+
+        synchronized Object[] getColumn(int column) {
+            if (columns[column] == null) {
+                columns[column] = buildStickerColumn(pack.getStickers(), column);
+            }
+            return columns[column];
+        }
+    }
+
+    private final long version;
+
+    private final List<StickerPack> packs;
+
+    // Metadata values, [column][pack row], null until first asked for
+    private final Object[][] packColumns = new Object[PACK_COLUMNS.length][];
+
+    // Row of each pack in packColumns
+    private final Map<String, Integer> packRows;
+
+    // Sticker values of each pack, [column][sticker row]
+    private final Map<String, PackStickers> packStickers;
+
+    private StickerCursorTables(long version, List<StickerPack> packs,
+                                Map<String, Integer> packRows, Map<String, PackStickers> packStickers) {
+        this.version = version;
+        this.packs = packs;
+        this.packRows = packRows;
+        this.packStickers = packStickers;
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Build the tables for a snapshot. Only the pack index is built here; sticker columns of
+     * packs that are the same object as in the previous tables are reused.
+     *
+     * @param snapshot Snapshot to build from
+     * @param previous Tables of an earlier version, or null
+     * @return Tables for the snapshot's version
+     */
+    static StickerCursorTables build(StickerPackSnapshot snapshot, StickerCursorTables previous) {
+        List<StickerPack> packs = snapshot.getStickerPacks();
+        Map<String, Integer> packRows = new HashMap<>();
+        Map<String, PackStickers> packStickers = new HashMap<>();
+
+        for (int row = 0; row < packs.size(); row++) {
+            StickerPack pack = packs.get(row);
+            packRows.put(pack.identifier, row);
+
+            PackStickers stickers = previous != null ? previous.packStickers.get(pack.identifier) : null;
+            if (stickers == null || stickers.pack != pack) {
+                stickers = new PackStickers(pack);
+            }
+            packStickers.put(pack.identifier, stickers);
+        }
+
+        return new StickerCursorTables(snapshot.getVersion(), packs,
+                Collections.unmodifiableMap(packRows), Collections.unmodifiableMap(packStickers));
+    }
+
+    /**
+     * Get one metadata column, building it on first use.
+     */
+    private synchronized Object[] getPackColumn(int column) {
+        if (packColumns[column] == null) {
+            packColumns[column] = buildPackColumn(packs, column);
+        }
+        return packColumns[column];
+    }
+
+    private static Object[] buildPackColumn(List<StickerPack> packs, int column) {
+        Object[] values = new Object[packs.size()];
+        for (int row = 0; row < values.length; row++) {
+            StickerPack pack = packs.get(row);
+            switch (column) {
+                case 0: values[row] = pack.identifier; break;
+                case 1: values[row] = pack.name; break;
+                case 2: values[row] = pack.publisher; break;
+                case 3: values[row] = pack.trayImageFile; break;
+                case 4: values[row] = pack.androidPlayStoreLink; break;
+                case 5: values[row] = pack.iosAppStoreLink; break;
+                case 6: values[row] = pack.publisherEmail; break;
+                case 7: values[row] = pack.publisherWebsite; break;
+                case 8: values[row] = pack.privacyPolicyWebsite; break;
+                case 9: values[row] = pack.licenseAgreementWebsite; break;
+                case 10: values[row] = pack.imageDataVersion; break;
+                case 11: values[row] = pack.avoidCache ? TRUE : FALSE; break;
+                case 12: values[row] = pack.animatedStickerPack ? TRUE : FALSE; break;
+                default: throw new IllegalArgumentException("Unknown pack column: " + column);
+            }
+        }
+        return values;
+    }
+
+    private static Object[] buildStickerColumn(List<Sticker> stickers, int column) {
+        Object[] values = new Object[stickers.size()];
+        for (int row = 0; row < values.length; row++) {
+            Sticker sticker = stickers.get(row);
+            switch (column) {
+                case 0: values[row] = sticker.imageFileName; break;
+                case 1: values[row] = TextUtils.join(",", sticker.emojis); break;
+                case 2: values[row] = sticker.accessibilityText; break;
+                default: throw new IllegalArgumentException("Unknown sticker column: " + column);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Cursor over the metadata of all packs.
+     */
+    Cursor packsCursor(String[] projection) {
+        String[] names = projection != null ? projection : PACK_COLUMNS;
+        Object[][] columns = new Object[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            columns[i] = getPackColumn(columnIndex(PACK_COLUMNS, names[i]));
+        }
+        return new SnapshotCursor(names, columns, 0, packs.size());
+    }
+
+    /**
+     * Cursor over the metadata of one pack; empty if the pack is unknown.
+     */
+    Cursor packCursor(String identifier, String[] projection) {
+        String[] names = projection != null ? projection : PACK_COLUMNS;
+        Integer row = packRows.get(identifier);
+        Object[][] columns = new Object[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            int column = columnIndex(PACK_COLUMNS, names[i]);
+            columns[i] = row != null ? getPackColumn(column) : NO_VALUES;
+        }
+        return row != null ? new SnapshotCursor(names, columns, row, 1) : new SnapshotCursor(names, columns, 0, 0);
+    }
+
+    /**
+     * Cursor over the stickers of one pack; empty if the pack is unknown.
+     */
+    Cursor stickersCursor(String identifier, String[] projection) {
+        String[] names = projection != null ? projection : STICKER_COLUMNS;
+        PackStickers stickers = packStickers.get(identifier);
+        Object[][] columns = new Object[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            int column = columnIndex(STICKER_COLUMNS, names[i]);
+            columns[i] = stickers != null ? stickers.getColumn(column) : NO_VALUES;
+        }
+        int count = stickers != null ? stickers.pack.getStickers().size() : 0;
+        return new SnapshotCursor(names, columns, 0, count);
+    }
+
+    /**
+     * Index of a column by name.
+     *
+     * @throws IllegalArgumentException if the column does not exist
+     */
+    private static int columnIndex(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) return i;
+        }
+        throw new IllegalArgumentException("Unknown column: " + name);
+    }
+}
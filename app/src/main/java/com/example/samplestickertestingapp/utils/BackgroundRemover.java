@@ -0,0 +1,223 @@
+package com.example.samplestickertestingapp.utils;
+
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Removes the background of an image automatically.
+ * The pixels along the border are grouped into a few colour clusters; the clusters common
+ * enough to be background are flood filled from every border pixel that matches them, so
+ * only background connected to the edge is removed and similar colours inside the subject
+ * are kept. Pixels just inside the removed area fade out by their distance to the
+ * background colour to soften the cut.
+ */
+public final class BackgroundRemover {
+    private static final String TAG = "BackgroundRemover";
+
+    // Largest RGB distance from a background colour that is still removed
+    public static final int DEFAULT_TOLERANCE = 48;
+
+    private static final int MAX_CLUSTERS = 8;
+
+    // Share of the border a cluster needs to count as background
+    private static final float MIN_CLUSTER_SHARE = 0.05f;
+
+    private BackgroundRemover() {
+    }
+
+    /**
+     * Find how much of each pixel of a bitmap to keep when its background is removed, to be
+     * combined with other edits of the same image.
+     *
+     * @param source Image to process, left unchanged
+     * @param tolerance Largest RGB distance from a background colour that is still removed
+     * @return An ALPHA_8 bitmap of the same size, transparent over the background, opaque over
+     *         the subject and in between where the edge was feathered
+     */
+    public static Bitmap createKeepMask(Bitmap source, int tolerance) {
+        long start = SystemClock.elapsedRealtime();
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int[] pixels = new int[width * height];
+        source.getPixels(pixels, 0, width, 0, 0, width, height);
+        byte[] sourceAlpha = new byte[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            sourceAlpha[i] = (byte) (pixels[i] >>> 24);
+        }
+
+        int removed = removeBackground(pixels, width, height, tolerance);
+
+        // The fraction of its alpha each pixel kept; pixels that were transparent already stay as they are
+        for (int i = 0; i < pixels.length; i++) {
+            int before = sourceAlpha[i] & 0xFF;
+            int keep = before == 0 ? 255 : Math.min(255, (pixels[i] >>> 24) * 255 / before);
+            pixels[i] = keep << 24;
+        }
+
+        Bitmap mask = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+        mask.setPixels(pixels, 0, width, 0, 0, width, height);
+        Log.d(TAG, "Removed " + removed + " of " + pixels.length + " pixels in " +
+                (SystemClock.elapsedRealtime() - start) + " ms");
+        return mask;
+    }
+
+    /**
+     * Make the background of a pixel buffer transparent, in place.
+     *
+     * @param pixels Pixels, row by row, in non-premultiplied ARGB
+     * @param width Image width
+     * @param height Image height
+     * @param tolerance Largest RGB distance from a background colour that is still removed
+     * @return Number of pixels removed
+     */
+    public static int removeBackground(int[] pixels, int width, int height, int tolerance) {
+        int[] background = new int[MAX_CLUSTERS];
+        int backgroundCount = estimateBackgroundColors(pixels, width, height, tolerance, background);
+        if (backgroundCount == 0) {
+            return 0;
+        }
+
+        byte[] mask = findBackground(pixels, width, height, background, backgroundCount, tolerance);
+
+        int removed = 0;
+        for (int i = 0; i < pixels.length; i++) {
+            if (mask[i] == FloodFill.FILLED) {
+                pixels[i] = 0;
+                removed++;
+            }
+        }
+        featherEdges(pixels, width, height, mask, background, backgroundCount, tolerance);
+        return removed;
+    }
+
+    /**
+     * Flood fill the background from every matching border pixel.
+     *
+     * @return Mask with {@link FloodFill#FILLED} for background pixels
+     */
+    static byte[] findBackground(int[] pixels, int width, int height, int[] background, int backgroundCount,
+                                 int tolerance) {
+        byte[] mask = new byte[width * height];
+        FloodFill floodFill = new FloodFill();
+        floodFill.setTolerance(tolerance);
+        for (int x = 0; x < width; x++) {
+            floodFill.fill(pixels, width, height, x, 0, background, backgroundCount, mask);
+            floodFill.fill(pixels, width, height, x, height - 1, background, backgroundCount, mask);
+        }
+        for (int y = 1; y < height - 1; y++) {
+            floodFill.fill(pixels, width, height, 0, y, background, backgroundCount, mask);
+            floodFill.fill(pixels, width, height, width - 1, y, background, backgroundCount, mask);
+        }
+        return mask;
+    }
+
+    /**
+     * Group the opaque border pixels into colour clusters and keep the common ones.
+     *
+     * @param colors Receives the mean colour of each background cluster
+     * @return Number of background colours found
+     */
+    static int estimateBackgroundColors(int[] pixels, int width, int height, int tolerance, int[] colors) {
+        int maxDistanceSquared = tolerance * tolerance;
+        int clusterCount = 0;
+        long[] sumR = new long[MAX_CLUSTERS];
+        long[] sumG = new long[MAX_CLUSTERS];
+        long[] sumB = new long[MAX_CLUSTERS];
+        int[] sizes = new int[MAX_CLUSTERS];
+        int[] means = new int[MAX_CLUSTERS];
+        int samples = 0;
+
+        int borderLength = 2 * width + 2 * Math.max(0, height - 2);
+        for (int i = 0; i < borderLength; i++) {
+            int pixel = pixels[borderIndex(i, width, height)];
+            if ((pixel >>> 24) == 0) {
+                continue;
+            }
+            samples++;
+
+            // Join the nearest cluster in range, or start a new one
+            int nearest = -1;
+            int nearestDistance = Integer.MAX_VALUE;
+            for (int c = 0; c < clusterCount; c++) {
+                int distance = FloodFill.distanceSquared(pixel, means[c]);
+                if (distance < nearestDistance) {
+                    nearest = c;
+                    nearestDistance = distance;
+                }
+            }
+            if (nearest < 0 || (nearestDistance > maxDistanceSquared && clusterCount < MAX_CLUSTERS)) {
+                nearest = clusterCount++;
+            }
+
+            sumR[nearest] += (pixel >> 16) & 0xFF;
+            sumG[nearest] += (pixel >> 8) & 0xFF;
+            sumB[nearest] += pixel & 0xFF;
+            sizes[nearest]++;
+            means[nearest] = 0xFF000000
+                    | (int) (sumR[nearest] / sizes[nearest]) << 16
+                    | (int) (sumG[nearest] / sizes[nearest]) << 8
+                    | (int) (sumB[nearest] / sizes[nearest]);
+        }
+
+        int count = 0;
+        for (int c = 0; c < clusterCount; c++) {
+            if (sizes[c] >= samples * MIN_CLUSTER_SHARE) {
+                colors[count++] = means[c];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Index of the i-th pixel walking the border: top row, bottom row, then both sides.
+     */
+    private static int borderIndex(int i, int width, int height) {
+        if (i < width) {
+            return i;
+        }
+        i -= width;
+        if (i < width) {
+            return (height - 1) * width + i;
+        }
+        i -= width;
+        int y = 1 + i / 2;
+        return y * width + (i % 2 == 0 ? 0 : width - 1);
+    }
+
+    /**
+     * Fade kept pixels next to the removed area by how close they are to the background.
+     */
+    private static void featherEdges(int[] pixels, int width, int height, byte[] mask,
+                                     int[] background, int backgroundCount, int tolerance) {
+        int maxDistance = tolerance * 2;
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int index = row + x;
+                if (mask[index] == FloodFill.FILLED || !touchesMask(mask, width, height, x, y)) {
+                    continue;
+                }
+
+                int pixel = pixels[index];
+                int nearest = Integer.MAX_VALUE;
+                for (int c = 0; c < backgroundCount; c++) {
+                    nearest = Math.min(nearest, FloodFill.distanceSquared(pixel, background[c]));
+                }
+                double distance = Math.sqrt(nearest);
+                if (distance < maxDistance) {
+                    int alpha = (int) ((pixel >>> 24) * (distance - tolerance) / tolerance);
+                    pixels[index] = (Math.max(0, alpha) << 24) | (pixel & 0xFFFFFF);
+                }
+            }
+        }
+    }
+
+    private static boolean touchesMask(byte[] mask, int width, int height, int x, int y) {
+        int index = y * width + x;
+        return (x > 0 && mask[index - 1] == FloodFill.FILLED)
+                || (x < width - 1 && mask[index + 1] == FloodFill.FILLED)
+                || (y > 0 && mask[index - width] == FloodFill.FILLED)
+                || (y < height - 1 && mask[index + width] == FloodFill.FILLED);
+    }
+}
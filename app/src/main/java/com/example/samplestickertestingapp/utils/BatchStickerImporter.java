@@ -0,0 +1,261 @@
+package com.example.samplestickertestingapp.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.samplestickertestingapp.models.CustomSticker;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Converts many images into custom stickers at once, in two stages.
+ * A decode pool sized to the number of cores decodes each image at twice the sticker size,
+ * trims, centers and outlines it; the finished sticker bitmap is then handed to a smaller
+ * encode pool, so decoding the next images overlaps with encoding the previous ones. Decoding
+ * larger than the sticker keeps trimmed images sharp: the resampler reduces them instead of
+ * the crop being enlarged. Images only enter the pipeline while a permit is free, and a permit
+ * is held until its sticker is written, so at most a memory-derived number of images are alive
+ * however many were picked. The stickers are registered with a single metadata write once all
+ * images are done.
+ */
+public class BatchStickerImporter {
+    private static final String TAG = "BatchStickerImporter";
+
+    // Longest side images are decoded at, leaving room for trimming before reducing to sticker size
+    private static final int DECODE_SIZE = ImageUtils.STICKER_SIZE * 2;
+
+    // Heap bytes one image in flight may need: the subsampled decode, up to twice the decode
+    // size per side, and its scaled copy; the sticker bitmap and resampling buffers are smaller
+    private static final long BYTES_PER_IMAGE = 5L * DECODE_SIZE * DECODE_SIZE * 4;
+
+    // Fraction of the heap the import may fill with bitmaps
+    private static final int HEAP_FRACTION = 4;
+
+    private static final int MIN_IMAGES_IN_FLIGHT = 2;
+
+    private static final ExecutorService decoders = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), new WorkerFactory("StickerDecode-"));
+
+    private static final ExecutorService encoders = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2), new WorkerFactory("StickerEncode-"));
+
+    private static final class WorkerFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        WorkerFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+
+    /**
+     * Receives the progress of an import on the main thread.
+     */
+    public interface Listener {
+        void onProgress(int done, int total);
+
+        void onFinished(List<CustomSticker> stickers, int failed);
+    }
+
+    private final Context context;
+    private final List<Uri> uris;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicInteger done = new AtomicInteger();
+    private volatile Listener listener;
+    private volatile boolean cancelled;
+
+    /**
+     * @param context Any context
+     * @param uris Images to convert, in the order the stickers should be saved
+     * @param listener Receives progress and the result on the main thread
+     */
+    public BatchStickerImporter(Context context, List<Uri> uris, Listener listener) {
+        this.context = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        this.uris = new ArrayList<>(uris);
+        this.listener = listener;
+    }
+
+    /**
+     * Start converting the images in the background.
+     */
+    public void start() {
+        Thread coordinator = new Thread(this::run, TAG);
+        coordinator.start();
+    }
+
+    /**
+     * Stop converting further images and stop reporting. Stickers already converted are still
+     * saved, so no files are left without metadata.
+     */
+    public void cancel() {
+        cancelled = true;
+        listener = null;
+    }
+
+    /**
+     * Get how many images may be converted at once without risking the heap.
+     */
+    static int getMaxImagesInFlight() {
+        long budget = Runtime.getRuntime().maxMemory() / HEAP_FRACTION;
+        int byMemory = (int) Math.max(MIN_IMAGES_IN_FLIGHT, budget / BYTES_PER_IMAGE);
+        return Math.min(byMemory, Math.max(MIN_IMAGES_IN_FLIGHT, Runtime.getRuntime().availableProcessors()));
+    }
+
+    private void run() {
+        long start = SystemClock.elapsedRealtime();
+        int total = uris.size();
+        int inFlight = getMaxImagesInFlight();
+        final Semaphore permits = new Semaphore(inFlight);
+        final CustomSticker[] results = new CustomSticker[total];
+
+        final File directory = FileUtils.getCustomStickersDirectory(context);
+        if (directory != null) {
+            for (int i = 0; i < total && !cancelled; i++) {
+                // Back-pressure: wait until an image in flight has been written out
+                permits.acquireUninterruptibly();
+                final int index = i;
+                decoders.execute(() -> {
+                    Bitmap sticker = null;
+                    try {
+                        if (!cancelled) {
+                            sticker = prepare(uris.get(index));
+                        }
+                    } catch (Exception e) {
+                        Log.e(TAG, "Error preparing image: " + uris.get(index), e);
+                    } finally {
+                        // The encode stage finishes the images that made it this far
+                        if (sticker == null) {
+                            finish(permits, total);
+                        }
+                    }
+                    if (sticker == null) {
+                        return;
+                    }
+
+                    final Bitmap prepared = sticker;
+                    encoders.execute(() -> {
+                        try {
+                            results[index] = encode(directory, prepared);
+                        } finally {
+                            BitmapPool.release(prepared);
+                            finish(permits, total);
+                        }
+                    });
+                });
+            }
+        }
+
+        // Holding every permit means every submitted image is done
+        permits.acquireUninterruptibly(inFlight);
+
+        List<CustomSticker> stickers = new ArrayList<>();
+        for (CustomSticker sticker : results) {
+            if (sticker != null) {
+                stickers.add(sticker);
+            }
+        }
+
+        // Register all stickers with one write
+        if (!stickers.isEmpty() && !FileUtils.addCustomStickers(context, stickers)) {
+            Log.e(TAG, "Failed to save custom sticker metadata");
+            for (CustomSticker sticker : stickers) {
+                new File(directory, sticker.getImageFileName()).delete();
+            }
+            stickers.clear();
+        }
+
+        Log.d(TAG, "Imported " + stickers.size() + " of " + total + " images in " +
+                (SystemClock.elapsedRealtime() - start) + " ms, " + inFlight + " in flight");
+
+        final int failed = total - stickers.size();
+        mainHandler.post(() -> {
+            Listener current = listener;
+            if (current != null) {
+                current.onFinished(stickers, failed);
+            }
+        });
+    }
+
+    /**
+     * End one image's trip through the pipeline.
+     */
+    private void finish(Semaphore permits, int total) {
+        permits.release();
+        postProgress(done.incrementAndGet(), total);
+    }
+
+    /**
+     * Decode, trim, center and outline one image.
+     *
+     * @return The sticker bitmap, to be returned to {@link BitmapPool#release(Bitmap)}, or null
+     *         if the image could not be decoded
+     */
+    private Bitmap prepare(Uri uri) {
+        Bitmap decoded = ImageUtils.decodeBitmapFromUri(context, uri, DECODE_SIZE);
+        if (decoded == null) {
+            return null;
+        }
+        try {
+            return ImageUtils.prepareSticker(decoded, ImageUtils.STICKER_MARGIN, true);
+        } finally {
+            decoded.recycle();
+        }
+    }
+
+    /**
+     * Encode a prepared sticker bitmap into the custom stickers directory.
+     *
+     * @return The sticker, not yet registered, or null if it could not be written
+     */
+    private CustomSticker encode(File directory, Bitmap bitmap) {
+        try {
+            String fileName = FileUtils.generateStickerFileName("image");
+            File outputFile = new File(directory, fileName);
+            if (WebPEncoder.encodeToFile(bitmap, outputFile, WebPEncoder.STICKER_MAX_BYTES) == null) {
+                return null;
+            }
+
+            List<String> emojis = new ArrayList<>(Arrays.asList("😀", "🎨", "🖼️"));
+            CustomSticker sticker = new CustomSticker(
+                    fileName,
+                    emojis,
+                    "Custom sticker from image",
+                    CustomSticker.SOURCE_TYPE_IMAGE
+            );
+            sticker.setSize(outputFile.length());
+            return sticker;
+        } catch (Exception e) {
+            Log.e(TAG, "Error encoding sticker", e);
+            return null;
+        }
+    }
+
+    private void postProgress(int doneCount, int total) {
+        mainHandler.post(() -> {
+            Listener current = listener;
+            if (current != null) {
+                current.onProgress(doneCount, total);
+            }
+        });
+    }
+}
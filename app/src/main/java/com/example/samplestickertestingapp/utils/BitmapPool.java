@@ -0,0 +1,192 @@
+package com.example.samplestickertestingapp.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Pool of mutable ARGB_8888 bitmaps, keyed by size.
+ * Sticker canvases, tray icons and grid thumbnails all have a handful of fixed sizes, so
+ * bitmaps released after use are handed out again instead of being left to the garbage
+ * collector. The pool holds at most {@link #getMaxBytes()} bytes; the oldest bitmaps are
+ * recycled beyond that.
+ *
+ * A bitmap must only be released once nothing draws or displays it any more.
+ */
+public final class BitmapPool {
+    private static final String TAG = "BitmapPool";
+
+    // Fraction of the heap the pool may hold on to
+    private static final int HEAP_FRACTION = 16;
+
+    private static final long maxBytes = Runtime.getRuntime().maxMemory() / HEAP_FRACTION;
+
+    // Free bitmaps by size, guarded by the class lock
+    private static final Map<Long, ArrayDeque<Bitmap>> pool = new HashMap<>();
+
+    // Free bitmaps in the order they were released, oldest first, for eviction
+    private static final LinkedList<Bitmap> releaseOrder = new LinkedList<>();
+
+    private static long pooledBytes;
+    private static int hits;
+    private static int misses;
+    private static int evictions;
+
+    private BitmapPool() {
+    }
+
+    /**
+     * Get a transparent, mutable ARGB_8888 bitmap, reused from the pool if one of this size
+     * is free.
+     *
+     * @param width Width in pixels
+     * @param height Height in pixels
+     * @return A cleared bitmap, to be passed to {@link #release(Bitmap)} when done
+     */
+    public static Bitmap obtain(int width, int height) {
+        Bitmap bitmap = take(width, height);
+        if (bitmap != null) {
+            bitmap.eraseColor(Color.TRANSPARENT);
+            return bitmap;
+        }
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Return a bitmap to the pool. Bitmaps the pool cannot reuse are recycled.
+     *
+     * @param bitmap Bitmap no longer in use, may be null
+     */
+    public static void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        if (!bitmap.isMutable() || bitmap.getConfig() != Bitmap.Config.ARGB_8888
+                || bitmap.getAllocationByteCount() > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+
+        synchronized (BitmapPool.class) {
+            long key = key(bitmap.getWidth(), bitmap.getHeight());
+            ArrayDeque<Bitmap> free = pool.get(key);
+            if (free == null) {
+                free = new ArrayDeque<>();
+                pool.put(key, free);
+            }
+            free.push(bitmap);
+            releaseOrder.addLast(bitmap);
+            pooledBytes += bitmap.getAllocationByteCount();
+            trimToSize();
+        }
+    }
+
+    /**
+     * Decode an image file into a pooled bitmap where one of the right size is free.
+     *
+     * @param path Path of the image file
+     * @return The decoded bitmap, to be passed to {@link #release(Bitmap)} when no longer
+     *         displayed, or null if the file could not be decoded
+     */
+    public static Bitmap decodeFile(String path) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        Bitmap reusable = take(options.outWidth, options.outHeight);
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        options.inBitmap = reusable;
+        Bitmap decoded;
+        try {
+            decoded = BitmapFactory.decodeFile(path, options);
+        } catch (IllegalArgumentException e) {
+            // The image could not be decoded into the pooled bitmap after all
+            Log.w(TAG, "Could not reuse bitmap for " + path + ": " + e.getMessage());
+            options.inBitmap = null;
+            decoded = BitmapFactory.decodeFile(path, options);
+        }
+
+        // Return the pooled bitmap unless the caller now owns it, also when the decode failed
+        if (reusable != null && decoded != reusable) {
+            release(reusable);
+        }
+        return decoded;
+    }
+
+    /**
+     * Recycle all free bitmaps, for example when the app is low on memory.
+     */
+    public static synchronized void clear() {
+        for (Bitmap bitmap : releaseOrder) {
+            bitmap.recycle();
+        }
+        pool.clear();
+        releaseOrder.clear();
+        pooledBytes = 0;
+    }
+
+    /**
+     * Get the most bytes the pool holds on to.
+     *
+     * @return Byte cap of the pool
+     */
+    public static long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Describe how well the pool is reused, for logging.
+     *
+     * @return Counters of hits, misses and evictions and the bytes held
+     */
+    public static synchronized String getStats() {
+        return "hits: " + hits + ", misses: " + misses + ", evictions: " + evictions +
+                ", pooled: " + releaseOrder.size() + " bitmaps (" + pooledBytes + " of " + maxBytes + " bytes)";
+    }
+
+    /**
+     * Take a free bitmap of this size out of the pool, counting the hit or miss.
+     */
+    private static synchronized Bitmap take(int width, int height) {
+        ArrayDeque<Bitmap> free = pool.get(key(width, height));
+        Bitmap bitmap = free != null ? free.poll() : null;
+        if (bitmap == null) {
+            misses++;
+            return null;
+        }
+        releaseOrder.remove(bitmap);
+        pooledBytes -= bitmap.getAllocationByteCount();
+        hits++;
+        return bitmap;
+    }
+
+    /**
+     * Recycle the oldest free bitmaps until the pool is within its cap.
+     */
+    private static void trimToSize() {
+        Iterator<Bitmap> oldest = releaseOrder.iterator();
+        while (pooledBytes > maxBytes && oldest.hasNext()) {
+            Bitmap bitmap = oldest.next();
+            oldest.remove();
+            pool.get(key(bitmap.getWidth(), bitmap.getHeight())).remove(bitmap);
+            pooledBytes -= bitmap.getAllocationByteCount();
+            bitmap.recycle();
+            evictions++;
+        }
+    }
+
+    private static long key(int width, int height) {
+        return ((long) width << 32) | (height & 0xFFFFFFFFL);
+    }
+}
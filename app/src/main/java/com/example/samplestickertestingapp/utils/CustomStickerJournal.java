@@ -0,0 +1,569 @@
+package com.example.samplestickertestingapp.utils;
+
+import android.util.Log;
+
+import com.example.samplestickertestingapp.models.CustomSticker;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the custom sticker library, stored in the custom stickers directory.
+ * Saving, updating or deleting a sticker appends one record, so the cost does not grow with
+ * the size of the library. The journal is replayed once per process into memory and
+ * compacted when obsolete records outnumber the live ones.
+ *
+ * Layout (big-endian):
+ * <pre>
+ * header   magic, format version
+ * record   type (byte), payload length (int), CRC32 of type and payload (int), payload
+ * </pre>
+ * A torn or corrupt record, left by a crash during an append, or one that cannot be decoded
+ * is dropped on replay along with everything after it, and the file is truncated to the last
+ * good record so the stickers before it survive. Only a file without a journal header is
+ * moved aside; after a read error the file is left as it is, writes are refused and loading is
+ * retried on the next access. A custom_stickers_info.json written by earlier versions is
+ * migrated into the journal the first time it is opened.
+ */
+public final class CustomStickerJournal {
+    private static final String TAG = "CustomStickerJournal";
+
+    public static final String FILE_NAME = "custom_stickers.journal";
+    private static final String LEGACY_FILE_NAME = "custom_stickers_info.json";
+
+    private static final int MAGIC = 0x43534A4C; // "CSJL"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    // Record types
+    private static final byte RECORD_ADD = 1;
+    private static final byte RECORD_DELETE = 2;
+    private static final byte RECORD_UPDATE = 3;
+
+    // Type, payload length and checksum
+    private static final int RECORD_HEADER_SIZE = 9;
+
+    // Upper bound on a payload, anything larger is treated as corruption
+    private static final int MAX_PAYLOAD_SIZE = 1 << 20;
+
+    // Compact once there are more obsolete records than this and than live stickers
+    private static final int COMPACT_MIN_OBSOLETE = 256;
+
+    // Outcomes of replaying the journal file
+    private static final int REPLAY_OK = 0;
+    private static final int REPLAY_NOT_JOURNAL = 1;
+    private static final int REPLAY_READ_ERROR = 2;
+
+    private static final Map<String, CustomStickerJournal> instances = new HashMap<>();
+
+    private final File directory;
+    private final File journalFile;
+
+    // Live stickers by file name, in the order they were added; guarded by this
+    private final Map<String, CustomSticker> stickers = new LinkedHashMap<>();
+
+    // Records in the journal file, guarded by this
+    private int recordCount;
+
+    // Whether the whole journal is in memory; stays false after a read error so it is retried
+    private boolean loaded;
+
+    // Whether the journal file starts with a valid header, so records may be appended to it
+    private boolean hasHeader;
+
+    private CustomStickerJournal(File directory) {
+        this.directory = directory;
+        this.journalFile = new File(directory, FILE_NAME);
+    }
+
+    /**
+     * Get the journal of a custom stickers directory.
+     *
+     * @param directory Custom stickers directory
+     * @return The journal shared by everyone in this process
+     */
+    public static synchronized CustomStickerJournal getInstance(File directory) {
+        String key = directory.getAbsolutePath();
+        CustomStickerJournal journal = instances.get(key);
+        if (journal == null) {
+            journal = new CustomStickerJournal(directory);
+            instances.put(key, journal);
+        }
+        return journal;
+    }
+
+    /**
+     * Get the saved stickers, oldest first.
+     *
+     * @return Copy of the live stickers
+     */
+    public synchronized List<CustomSticker> getStickers() {
+        ensureLoaded();
+        return new ArrayList<>(stickers.values());
+    }
+
+    /**
+     * Record a new sticker. A sticker with the same file name is replaced.
+     *
+     * @param sticker Sticker to add
+     * @return true if the record was written
+     */
+    public synchronized boolean add(CustomSticker sticker) {
+        return append(RECORD_ADD, sticker.getImageFileName(), sticker);
+    }
+
+    /**
+     * Record several new stickers with a single write.
+     *
+     * @param newStickers Stickers to add
+     * @return true if the records were written
+     */
+    public synchronized boolean addAll(List<CustomSticker> newStickers) {
+        if (!ensureWritable()) {
+            return false;
+        }
+        if (newStickers.isEmpty()) {
+            return true;
+        }
+
+        long previousLength = journalFile.length();
+        try {
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            for (CustomSticker sticker : newStickers) {
+                records.write(encodeRecord(RECORD_ADD, encodeSticker(sticker)));
+            }
+            try (FileOutputStream out = new FileOutputStream(journalFile, true)) {
+                records.writeTo(out);
+                out.getFD().sync();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error appending to custom sticker journal", e);
+            truncate(previousLength);
+            return false;
+        }
+
+        for (CustomSticker sticker : newStickers) {
+            stickers.put(sticker.getImageFileName(), sticker);
+        }
+        recordCount += newStickers.size();
+        compactIfNeeded();
+        return true;
+    }
+
+    /**
+     * Record new details of a saved sticker, keeping its position in the library.
+     *
+     * @param sticker Sticker with updated details
+     * @return true if the record was written, false if it failed or the sticker is unknown
+     */
+    public synchronized boolean update(CustomSticker sticker) {
+        if (!ensureWritable()) {
+            return false;
+        }
+        if (!stickers.containsKey(sticker.getImageFileName())) {
+            Log.w(TAG, "Cannot update unknown sticker: " + sticker.getImageFileName());
+            return false;
+        }
+        return append(RECORD_UPDATE, sticker.getImageFileName(), sticker);
+    }
+
+    /**
+     * Record that a sticker was deleted.
+     *
+     * @param imageFileName File name of the deleted sticker
+     * @return true if the record was written or the sticker was not in the library
+     */
+    public synchronized boolean delete(String imageFileName) {
+        if (!ensureWritable()) {
+            return false;
+        }
+        if (!stickers.containsKey(imageFileName)) {
+            return true;
+        }
+        return append(RECORD_DELETE, imageFileName, null);
+    }
+
+    /**
+     * Replace the whole library, rewriting the journal.
+     *
+     * @param newStickers Stickers to keep
+     * @return true if the journal was rewritten
+     */
+    public synchronized boolean replaceAll(List<CustomSticker> newStickers) {
+        ensureLoaded();
+        stickers.clear();
+        for (CustomSticker sticker : newStickers) {
+            stickers.put(sticker.getImageFileName(), sticker);
+        }
+        if (!compact()) {
+            return false;
+        }
+        // The journal now holds exactly the new library, whatever could be read before
+        loaded = true;
+        return true;
+    }
+
+    private boolean append(byte type, String imageFileName, CustomSticker sticker) {
+        if (!ensureWritable()) {
+            return false;
+        }
+        long previousLength = journalFile.length();
+        try {
+            byte[] payload = type == RECORD_DELETE ? encodeName(imageFileName) : encodeSticker(sticker);
+
+            // A single write of the whole record, synced before the change is published
+            try (FileOutputStream out = new FileOutputStream(journalFile, true)) {
+                out.write(encodeRecord(type, payload));
+                out.getFD().sync();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error appending to custom sticker journal", e);
+            truncate(previousLength);
+            return false;
+        }
+
+        recordCount++;
+        if (type == RECORD_DELETE) {
+            stickers.remove(imageFileName);
+        } else {
+            stickers.put(imageFileName, sticker);
+        }
+
+        compactIfNeeded();
+        return true;
+    }
+
+    /**
+     * Drop a partial append so later appends are not hidden behind it on replay.
+     */
+    private void truncate(long length) {
+        try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+            file.setLength(length);
+        } catch (IOException e) {
+            Log.e(TAG, "Error truncating custom sticker journal", e);
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (recordCount - stickers.size() > Math.max(COMPACT_MIN_OBSOLETE, stickers.size())) {
+            compact();
+        }
+    }
+
+    /**
+     * Load the journal into memory unless it is loaded already. After a read error, what could
+     * be read is kept in memory and the file is left alone, to be read again on the next call.
+     */
+    private void ensureLoaded() {
+        if (loaded) return;
+
+        stickers.clear();
+        recordCount = 0;
+        if (journalFile.exists()) {
+            int result = replay();
+            if (result == REPLAY_OK) {
+                loaded = true;
+                hasHeader = true;
+                return;
+            }
+            if (result == REPLAY_READ_ERROR) {
+                return;
+            }
+            // Keep the unreadable file aside rather than overwriting it
+            moveAside();
+            stickers.clear();
+            recordCount = 0;
+        }
+        loaded = true;
+
+        // No usable journal yet: start from the legacy JSON, if any, and write a fresh one
+        File legacyFile = new File(directory, LEGACY_FILE_NAME);
+        boolean migrated = legacyFile.exists() && readLegacyFile(legacyFile);
+        if (compact() && migrated && !legacyFile.delete()) {
+            Log.w(TAG, "Failed to delete migrated " + LEGACY_FILE_NAME);
+        }
+    }
+
+    /**
+     * Load the journal and make sure its file has a header, writing one if an earlier attempt
+     * failed, so an append never starts a file that replay would reject.
+     *
+     * @return true if records may be appended
+     */
+    private boolean ensureWritable() {
+        ensureLoaded();
+        if (!loaded) {
+            Log.e(TAG, "Custom sticker journal could not be read, not writing to it");
+            return false;
+        }
+        return hasHeader || compact();
+    }
+
+    /**
+     * Rename a file that is not a journal out of the way, never replacing an earlier one.
+     */
+    private void moveAside() {
+        File corruptFile = new File(directory, FILE_NAME + ".corrupt");
+        if (corruptFile.exists()) {
+            corruptFile = new File(directory, FILE_NAME + ".corrupt-" + System.currentTimeMillis());
+        }
+        if (!journalFile.renameTo(corruptFile)) {
+            Log.e(TAG, "Failed to move aside unreadable journal");
+        } else {
+            Log.e(TAG, "Moved unreadable journal to " + corruptFile.getName());
+        }
+    }
+
+    /**
+     * Replay the journal into memory, truncating at the first torn, corrupt or undecodable record.
+     *
+     * @return {@link #REPLAY_OK}, {@link #REPLAY_NOT_JOURNAL} if the file does not start with a
+     *         journal header, or {@link #REPLAY_READ_ERROR} if reading failed part way
+     */
+    private int replay() {
+        long goodLength = HEADER_SIZE;
+        boolean headerRead = false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                Log.e(TAG, "Not a custom sticker journal: " + journalFile.getPath());
+                return REPLAY_NOT_JOURNAL;
+            }
+            headerRead = true;
+
+            CRC32 crc = new CRC32();
+            while (true) {
+                int type = in.read();
+                if (type < 0) break;
+
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length < 0 || length > MAX_PAYLOAD_SIZE) {
+                    Log.w(TAG, "Invalid record length " + length + " at offset " + goodLength);
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+
+                crc.reset();
+                crc.update(type);
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    Log.w(TAG, "Checksum mismatch at offset " + goodLength);
+                    break;
+                }
+
+                // Intact but undecodable, e.g. written by a buggy build: keep what came before it
+                try {
+                    applyRecord((byte) type, payload);
+                } catch (IOException e) {
+                    Log.w(TAG, "Undecodable record at offset " + goodLength, e);
+                    break;
+                }
+                recordCount++;
+                goodLength += RECORD_HEADER_SIZE + length;
+            }
+        } catch (EOFException e) {
+            if (!headerRead) {
+                Log.e(TAG, "Custom sticker journal is shorter than its header");
+                return REPLAY_NOT_JOURNAL;
+            }
+            Log.w(TAG, "Torn record at offset " + goodLength);
+        } catch (IOException e) {
+            Log.e(TAG, "Error replaying custom sticker journal, will retry", e);
+            return REPLAY_READ_ERROR;
+        }
+
+        if (journalFile.length() > goodLength) {
+            Log.w(TAG, "Dropping " + (journalFile.length() - goodLength) + " bytes after the last good record");
+            try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+                file.setLength(goodLength);
+                file.getFD().sync();
+            } catch (IOException e) {
+                Log.e(TAG, "Error truncating custom sticker journal", e);
+            }
+        }
+
+        Log.d(TAG, "Replayed " + recordCount + " records into " + stickers.size() + " stickers");
+        return REPLAY_OK;
+    }
+
+    private void applyRecord(byte type, byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        switch (type) {
+            case RECORD_ADD:
+            case RECORD_UPDATE:
+                CustomSticker sticker = decodeSticker(in);
+                stickers.put(sticker.getImageFileName(), sticker);
+                break;
+            case RECORD_DELETE:
+                stickers.remove(in.readUTF());
+                break;
+            default:
+                // Written by a newer version; skip it
+                Log.w(TAG, "Unknown record type: " + type);
+                break;
+        }
+    }
+
+    /**
+     * Rewrite the journal with one record per live sticker, replacing the old file atomically.
+     */
+    private boolean compact() {
+        File tempFile = new File(directory, FILE_NAME + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(tempFile)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            for (CustomSticker sticker : stickers.values()) {
+                out.write(encodeRecord(RECORD_ADD, encodeSticker(sticker)));
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "Error compacting custom sticker journal", e);
+            tempFile.delete();
+            return false;
+        }
+
+        if (!tempFile.renameTo(journalFile)) {
+            Log.e(TAG, "Failed to replace custom sticker journal");
+            tempFile.delete();
+            return false;
+        }
+
+        Log.d(TAG, "Compacted custom sticker journal from " + recordCount + " to " + stickers.size() + " records");
+        recordCount = stickers.size();
+        hasHeader = true;
+        return true;
+    }
+
+    private static byte[] encodeRecord(byte type, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload, 0, payload.length);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(RECORD_HEADER_SIZE + payload.length);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(type);
+        out.writeInt(payload.length);
+        out.writeInt((int) crc.getValue());
+        out.write(payload);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeName(String imageFileName) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DataOutputStream(bytes).writeUTF(imageFileName);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeSticker(CustomSticker sticker) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(sticker.getImageFileName());
+
+        List<String> emojis = sticker.getEmojis();
+        out.writeInt(emojis != null ? emojis.size() : 0);
+        if (emojis != null) {
+            for (String emoji : emojis) {
+                out.writeUTF(emoji);
+            }
+        }
+
+        out.writeBoolean(sticker.getAccessibilityText() != null);
+        if (sticker.getAccessibilityText() != null) {
+            out.writeUTF(sticker.getAccessibilityText());
+        }
+        out.writeLong(sticker.getCreationTimestamp());
+        out.writeLong(sticker.getSize());
+        out.writeInt(sticker.getSourceType());
+        return bytes.toByteArray();
+    }
+
+    private static CustomSticker decodeSticker(DataInputStream in) throws IOException {
+        String imageFileName = in.readUTF();
+
+        int emojiCount = in.readInt();
+        if (emojiCount < 0 || emojiCount > in.available()) {
+            throw new IOException("Invalid emoji count " + emojiCount);
+        }
+        List<String> emojis = new ArrayList<>(emojiCount);
+        for (int i = 0; i < emojiCount; i++) {
+            emojis.add(in.readUTF());
+        }
+
+        String accessibilityText = in.readBoolean() ? in.readUTF() : null;
+        long creationTimestamp = in.readLong();
+        long size = in.readLong();
+        int sourceType = in.readInt();
+
+        CustomSticker sticker = new CustomSticker(imageFileName, emojis, accessibilityText, sourceType, creationTimestamp);
+        sticker.setSize(size);
+        return sticker;
+    }
+
+    /**
+     * Read the JSON list written by earlier versions of the app.
+     *
+     * @return true if the whole file was read
+     */
+    private boolean readLegacyFile(File legacyFile) {
+        try {
+            StringBuilder jsonString = new StringBuilder();
+            try (BufferedReader reader = new BufferedReader(new FileReader(legacyFile))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    jsonString.append(line);
+                }
+            }
+
+            JSONArray stickersArray = new JSONArray(jsonString.toString());
+            for (int i = 0; i < stickersArray.length(); i++) {
+                JSONObject stickerJson = stickersArray.getJSONObject(i);
+
+                List<String> emojis = new ArrayList<>();
+                JSONArray emojisArray = stickerJson.getJSONArray("emojis");
+                for (int j = 0; j < emojisArray.length(); j++) {
+                    emojis.add(emojisArray.getString(j));
+                }
+
+                CustomSticker sticker = new CustomSticker(
+                        stickerJson.getString("imageFileName"),
+                        emojis,
+                        stickerJson.getString("accessibilityText"),
+                        stickerJson.getInt("sourceType"),
+                        stickerJson.optLong("creationTimestamp", legacyFile.lastModified())
+                );
+                sticker.setSize(stickerJson.getLong("size"));
+                stickers.put(sticker.getImageFileName(), sticker);
+            }
+            Log.d(TAG, "Migrating " + stickers.size() + " stickers from " + LEGACY_FILE_NAME);
+            return true;
+        } catch (JSONException | IOException e) {
+            Log.e(TAG, "Error reading " + LEGACY_FILE_NAME, e);
+            return false;
+        }
+    }
+}
@@ -6,22 +6,13 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Path;
-import android.os.Build;
 import android.util.Log;
 
 import com.example.samplestickertestingapp.models.CustomSticker;
 import com.example.samplestickertestingapp.models.Sticker;
 import com.example.samplestickertestingapp.models.StickerPack;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -36,7 +27,6 @@ public class FileUtils {
 
     // Directory names
     private static final String CUSTOM_STICKERS_DIR = "custom_stickers";
-    private static final String CUSTOM_STICKERS_INFO_FILE = "custom_stickers_info.json";
 
     /**
      * Get the directory for custom stickers.
@@ -67,48 +57,66 @@ public class FileUtils {
     }
 
     /**
-     * Save custom sticker metadata to JSON.
+     * Get the journal holding custom sticker metadata.
+     *
+     * @param context Application context
+     * @return The journal, or null if the custom stickers directory is not available
+     */
+    private static CustomStickerJournal getCustomStickerJournal(Context context) {
+        File directory = getCustomStickersDirectory(context);
+        return directory != null ? CustomStickerJournal.getInstance(directory) : null;
+    }
+
+    /**
+     * Replace all custom sticker metadata.
      *
      * @param context Application context
      * @param stickers List of custom stickers
      * @return true if saved successfully, false otherwise
      */
     public static boolean saveCustomStickersInfo(Context context, List<CustomSticker> stickers) {
-        try {
-            JSONArray stickersArray = new JSONArray();
-
-            for (CustomSticker sticker : stickers) {
-                JSONObject stickerJson = new JSONObject();
-                stickerJson.put("imageFileName", sticker.getImageFileName());
-
-                JSONArray emojisArray = new JSONArray();
-                for (String emoji : sticker.getEmojis()) {
-                    emojisArray.put(emoji);
-                }
-
-                stickerJson.put("emojis", emojisArray);
-                stickerJson.put("accessibilityText", sticker.getAccessibilityText());
-                stickerJson.put("creationTimestamp", sticker.getCreationTimestamp());
-                stickerJson.put("size", sticker.getSize());
-                stickerJson.put("sourceType", sticker.getSourceType());
+        CustomStickerJournal journal = getCustomStickerJournal(context);
+        return journal != null && journal.replaceAll(stickers);
+    }
 
-                stickersArray.put(stickerJson);
-            }
+    /**
+     * Add a custom sticker to the saved stickers.
+     *
+     * @param context Application context
+     * @param sticker Custom sticker whose file was saved
+     * @return true if saved successfully, false otherwise
+     */
+    public static boolean addCustomSticker(Context context, CustomSticker sticker) {
+        CustomStickerJournal journal = getCustomStickerJournal(context);
+        return journal != null && journal.add(sticker);
+    }
 
-            File infoFile = new File(getCustomStickersDirectory(context), CUSTOM_STICKERS_INFO_FILE);
-            try (FileWriter writer = new FileWriter(infoFile)) {
-                writer.write(stickersArray.toString());
-            }
+    /**
+     * Add several custom stickers to the saved stickers with a single metadata write.
+     *
+     * @param context Application context
+     * @param stickers Custom stickers whose files were saved
+     * @return true if saved successfully, false otherwise
+     */
+    public static boolean addCustomStickers(Context context, List<CustomSticker> stickers) {
+        CustomStickerJournal journal = getCustomStickerJournal(context);
+        return journal != null && journal.addAll(stickers);
+    }
 
-            return true;
-        } catch (JSONException | IOException e) {
-            Log.e(TAG, "Error saving custom stickers info", e);
-            return false;
-        }
+    /**
+     * Update the details of a saved custom sticker.
+     *
+     * @param context Application context
+     * @param sticker Custom sticker with updated details
+     * @return true if saved successfully, false otherwise
+     */
+    public static boolean updateCustomSticker(Context context, CustomSticker sticker) {
+        CustomStickerJournal journal = getCustomStickerJournal(context);
+        return journal != null && journal.update(sticker);
     }
 
     /**
-     * Load custom stickers from JSON.
+     * Load custom stickers.
      *
      * @param context Application context
      * @return List of custom stickers
@@ -116,53 +124,25 @@ public class FileUtils {
     public static List<CustomSticker> loadCustomStickers(Context context) {
         List<CustomSticker> stickers = new ArrayList<>();
 
-        try {
-            File infoFile = new File(getCustomStickersDirectory(context), CUSTOM_STICKERS_INFO_FILE);
-            if (!infoFile.exists()) {
-                return stickers;
-            }
-
-            StringBuilder jsonString = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(new FileReader(infoFile))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    jsonString.append(line);
-                }
-            }
-
-            JSONArray stickersArray = new JSONArray(jsonString.toString());
-            for (int i = 0; i < stickersArray.length(); i++) {
-                JSONObject stickerJson = stickersArray.getJSONObject(i);
-
-                String imageFileName = stickerJson.getString("imageFileName");
-
-                List<String> emojis = new ArrayList<>();
-                JSONArray emojisArray = stickerJson.getJSONArray("emojis");
-                for (int j = 0; j < emojisArray.length(); j++) {
-                    emojis.add(emojisArray.getString(j));
-                }
-
-                String accessibilityText = stickerJson.getString("accessibilityText");
-                int sourceType = stickerJson.getInt("sourceType");
-
-                CustomSticker sticker = new CustomSticker(imageFileName, emojis, accessibilityText, sourceType);
-                sticker.setSize(stickerJson.getLong("size"));
+        CustomStickerJournal journal = getCustomStickerJournal(context);
+        if (journal == null) {
+            return stickers;
+        }
 
-                // Check if the sticker file exists
-                File stickerFile = new File(getCustomStickersDirectory(context), imageFileName);
-                if (stickerFile.exists()) {
-                    stickers.add(sticker);
-                }
+        File directory = getCustomStickersDirectory(context);
+        for (CustomSticker sticker : journal.getStickers()) {
+            // Check if the sticker file exists
+            File stickerFile = new File(directory, sticker.getImageFileName());
+            if (stickerFile.exists()) {
+                stickers.add(sticker);
             }
-        } catch (JSONException | IOException e) {
-            Log.e(TAG, "Error loading custom stickers", e);
         }
 
         return stickers;
     }
 
     /**
-     * Delete a custom sticker file and update the JSON info.
+     * Delete a custom sticker file and its saved info.
      *
      * @param context Application context
      * @param sticker Custom sticker to delete
@@ -170,19 +150,19 @@ public class FileUtils {
      */
     public static boolean deleteCustomSticker(Context context, CustomSticker sticker) {
         try {
-            // Delete the sticker file
+            // Delete the sticker file, and its blob if no pack uses the image
             File stickerFile = new File(getCustomStickersDirectory(context), sticker.getImageFileName());
-            if (stickerFile.exists() && !stickerFile.delete()) {
+            if (!StickerBlobStore.delete(context, stickerFile)) {
                 Log.e(TAG, "Failed to delete sticker file: " + stickerFile.getAbsolutePath());
                 return false;
             }
 
             // Update the stickers info
-            List<CustomSticker> stickers = loadCustomStickers(context);
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
-                stickers.removeIf(s -> s.getImageFileName().equals(sticker.getImageFileName()));
+            CustomStickerJournal journal = getCustomStickerJournal(context);
+            if (journal == null || !journal.delete(sticker.getImageFileName())) {
+                return false;
             }
-            return saveCustomStickersInfo(context, stickers);
+            return true;
         } catch (Exception e) {
             Log.e(TAG, "Error deleting custom sticker", e);
             return false;
@@ -215,7 +195,7 @@ public class FileUtils {
         String trayIconFileName = "tray_icon.webp";
         try {
             // Create a simple colored tray icon
-            Bitmap trayIcon = Bitmap.createBitmap(96, 96, Bitmap.Config.ARGB_8888);
+            Bitmap trayIcon = BitmapPool.obtain(96, 96);
             Canvas canvas = new Canvas(trayIcon);
 
             // Use a green color similar to WhatsApp
@@ -231,10 +211,11 @@ public class FileUtils {
 
             // Save the tray icon to file
             File trayIconFile = new File(packDirectory, trayIconFileName);
-            try (FileOutputStream out = new FileOutputStream(trayIconFile)) {
-                trayIcon.compress(Bitmap.CompressFormat.WEBP, 100, out);
+            WebPEncoder.Result result = WebPEncoder.encodeToFile(trayIcon, trayIconFile, WebPEncoder.TRAY_MAX_BYTES);
+            BitmapPool.release(trayIcon);
+            if (result == null) {
+                throw new IOException("Failed to write " + trayIconFileName);
             }
-            trayIcon.recycle();
         } catch (IOException e) {
             Log.e(TAG, "Error creating tray icon: " + e.getMessage());
             return null;
@@ -260,46 +241,14 @@ public class FileUtils {
         stickerPack.setStickers(defaultStickers);
 
         // Save pack info to JSON file
-        try {
-            JSONObject packJson = new JSONObject();
-            packJson.put("identifier", stickerPack.identifier);
-            packJson.put("name", stickerPack.name);
-            packJson.put("publisher", stickerPack.publisher);
-            packJson.put("tray_image_file", stickerPack.trayImageFile);
-            packJson.put("image_data_version", stickerPack.imageDataVersion);
-            packJson.put("avoid_cache", stickerPack.avoidCache);
-            packJson.put("animated_sticker_pack", stickerPack.animatedStickerPack);
-
-            // Add default stickers to JSON
-            JSONArray stickersArray = new JSONArray();
-            for (Sticker sticker : defaultStickers) {
-                JSONObject stickerJson = new JSONObject();
-                stickerJson.put("image_file", sticker.imageFileName);
-
-                JSONArray emojisArray = new JSONArray();
-                for (String emoji : sticker.emojis) {
-                    emojisArray.put(emoji);
-                }
-                stickerJson.put("emojis", emojisArray);
-                stickerJson.put("accessibility_text", sticker.accessibilityText);
-
-                stickersArray.put(stickerJson);
-            }
-            packJson.put("stickers", stickersArray);
-
-            // Write the JSON to pack_info.json file
-            File packInfoFile = new File(packDirectory, "pack_info.json");
-            try (FileWriter writer = new FileWriter(packInfoFile)) {
-                writer.write(packJson.toString(2));
-            }
-
-            Log.d(TAG, "Created sticker pack: " + packId + " with " + defaultStickers.size() +
-                    " default stickers, info file and tray icon");
-        } catch (JSONException | IOException e) {
-            Log.e(TAG, "Error saving pack info: " + e.getMessage());
+        if (!PackRepository.writePack(packDirectory, stickerPack)) {
+            Log.e(TAG, "Error saving pack info for: " + packId);
             return null;
         }
 
+        Log.d(TAG, "Created sticker pack: " + packId + " with " + defaultStickers.size() +
+                " default stickers, info file and tray icon");
+
         return stickerPack;
     }
 
@@ -335,9 +284,7 @@ public class FileUtils {
 
                 // Save bitmap to file
                 File outputFile = new File(packDirectory, filename);
-                try (FileOutputStream out = new FileOutputStream(outputFile)) {
-                    stickerBitmap.compress(Bitmap.CompressFormat.WEBP, 100, out);
-                }
+                WebPEncoder.encodeToFile(stickerBitmap, outputFile, WebPEncoder.STICKER_MAX_BYTES);
 
                 // Create sticker object with appropriate emojis (using helper methods from StickerGenerator)
                 List<String> emojis = getEmojisForShape(shapeTypes[i]);
@@ -351,8 +298,8 @@ public class FileUtils {
                 sticker.setSize(outputFile.length());
                 stickers.add(sticker);
 
-                // Recycle bitmap to free memory
-                stickerBitmap.recycle();
+                // Return the canvas for the next sticker
+                BitmapPool.release(stickerBitmap);
             } catch (Exception e) {
                 Log.e(TAG, "Error creating default sticker: " + e.getMessage());
             }
@@ -370,7 +317,7 @@ public class FileUtils {
         final int WHITE_BORDER_WIDTH = 8;
         final int SHAPE_PADDING = 40;
 
-        Bitmap bitmap = Bitmap.createBitmap(STICKER_SIZE, STICKER_SIZE, Bitmap.Config.ARGB_8888);
+        Bitmap bitmap = BitmapPool.obtain(STICKER_SIZE, STICKER_SIZE);
         Canvas canvas = new Canvas(bitmap);
 
         // Transparent background
@@ -0,0 +1,212 @@
+package com.example.samplestickertestingapp.utils;
+
+/**
+ * Scanline flood fill over an ARGB pixel buffer.
+ * Starting from a seed, every connected pixel whose colour is within a tolerance of one of a
+ * set of reference colours, or of the seed itself, is marked in a mask. Pixels connect
+ * through their 4 edge neighbours, or also through the diagonals. Whole runs of a row are
+ * filled at once and only the start of each run in the rows above and below is pushed onto
+ * an int stack, which is kept between fills, so repeated fills do not allocate.
+ *
+ * The class does not depend on Android, so it can be tested on the JVM. An instance is not
+ * thread safe.
+ */
+public final class FloodFill {
+    // Value of filled pixels in the mask
+    public static final byte FILLED = 1;
+
+    // Largest RGB distance from a reference colour that still matches, by default
+    public static final int DEFAULT_TOLERANCE = 32;
+
+    private static final int INITIAL_STACK_SIZE = 1024;
+
+    // Pending run starts, as y * width + x
+    private int[] stack = new int[INITIAL_STACK_SIZE];
+    private int stackSize;
+
+    // Settings
+    private int maxDistanceSquared = DEFAULT_TOLERANCE * DEFAULT_TOLERANCE;
+    private boolean eightConnected;
+    private boolean transparentMatches = true;
+
+    // Reference colour of fills from the seed colour
+    private final int[] seedColor = new int[1];
+
+    // Parameters of the fill in progress
+    private int[] pixels;
+    private int[] references;
+    private int referenceCount;
+
+    /**
+     * Set how far a colour may be from a reference colour and still be filled.
+     *
+     * @param tolerance Largest RGB distance, from 0 for exact matches to 442 for everything;
+     *                  it includes the alpha difference when transparent pixels do not match
+     */
+    public void setTolerance(int tolerance) {
+        maxDistanceSquared = tolerance * tolerance;
+    }
+
+    /**
+     * Set whether pixels also connect through their diagonal neighbours.
+     *
+     * @param eightConnected true for 8-connectivity, false for 4-connectivity
+     */
+    public void setEightConnected(boolean eightConnected) {
+        this.eightConnected = eightConnected;
+    }
+
+    /**
+     * Set whether fully transparent pixels match whatever their colour values, so areas that
+     * were already erased connect the regions around them. On by default. When off, alpha is
+     * compared like a colour channel instead: fully transparent pixels never match, and
+     * partly transparent ones only match references of similar alpha.
+     *
+     * @param transparentMatches true to fill through transparent pixels
+     */
+    public void setTransparentMatches(boolean transparentMatches) {
+        this.transparentMatches = transparentMatches;
+    }
+
+    /**
+     * Fill the pixels similar in colour to the seed pixel.
+     *
+     * @param pixels Pixels, row by row, in non-premultiplied ARGB
+     * @param width Image width
+     * @param height Image height
+     * @param seedX Column of the seed
+     * @param seedY Row of the seed
+     * @param mask One byte per pixel; pixels already marked are not filled again
+     * @return Number of pixels newly marked
+     */
+    public int fillSimilar(int[] pixels, int width, int height, int seedX, int seedY, byte[] mask) {
+        if (seedX < 0 || seedY < 0 || seedX >= width || seedY >= height) {
+            return 0;
+        }
+        seedColor[0] = pixels[seedY * width + seedX];
+        return fill(pixels, width, height, seedX, seedY, seedColor, 1, mask);
+    }
+
+    /**
+     * Fill from a seed.
+     *
+     * @param pixels Pixels, row by row, in non-premultiplied ARGB
+     * @param width Image width
+     * @param height Image height
+     * @param seedX Column of the seed
+     * @param seedY Row of the seed
+     * @param references Colours a pixel may match
+     * @param referenceCount Number of colours used from references
+     * @param mask One byte per pixel; pixels already marked are not filled again
+     * @return Number of pixels newly marked
+     */
+    public int fill(int[] pixels, int width, int height, int seedX, int seedY,
+                    int[] references, int referenceCount, byte[] mask) {
+        if (seedX < 0 || seedY < 0 || seedX >= width || seedY >= height) {
+            return 0;
+        }
+
+        this.pixels = pixels;
+        this.references = references;
+        this.referenceCount = referenceCount;
+
+        int filled = 0;
+        stackSize = 0;
+        push(seedY * width + seedX);
+
+        try {
+            while (stackSize > 0) {
+                int index = stack[--stackSize];
+                if (mask[index] == FILLED || !matches(index)) {
+                    continue;
+                }
+
+                // Extend the run to the left and right
+                int rowStart = index - index % width;
+                int rowEnd = rowStart + width;
+                int left = index;
+                while (left > rowStart && mask[left - 1] != FILLED && matches(left - 1)) {
+                    left--;
+                }
+                int right = index + 1;
+                while (right < rowEnd && mask[right] != FILLED && matches(right)) {
+                    right++;
+                }
+
+                for (int i = left; i < right; i++) {
+                    mask[i] = FILLED;
+                }
+                filled += right - left;
+
+                // Queue every matching run that touches this one from above or below,
+                // including diagonally when 8-connected
+                int from = eightConnected && left > rowStart ? left - 1 : left;
+                int to = eightConnected && right < rowEnd ? right + 1 : right;
+                if (rowStart > 0) {
+                    pushRuns(from - width, to - width, mask);
+                }
+                if (rowEnd < width * height) {
+                    pushRuns(from + width, to + width, mask);
+                }
+            }
+        } finally {
+            // Do not keep the caller's buffers alive
+            this.pixels = null;
+            this.references = null;
+        }
+        return filled;
+    }
+
+    /**
+     * Push the first pixel of each unfilled matching run in [from, to) of one row.
+     */
+    private void pushRuns(int from, int to, byte[] mask) {
+        boolean inRun = false;
+        for (int i = from; i < to; i++) {
+            boolean open = mask[i] != FILLED && matches(i);
+            if (open && !inRun) {
+                push(i);
+            }
+            inRun = open;
+        }
+    }
+
+    private void push(int index) {
+        if (stackSize == stack.length) {
+            int[] larger = new int[stack.length * 2];
+            System.arraycopy(stack, 0, larger, 0, stackSize);
+            stack = larger;
+        }
+        stack[stackSize++] = index;
+    }
+
+    private boolean matches(int index) {
+        int pixel = pixels[index];
+        int alpha = pixel >>> 24;
+        if (alpha == 0) {
+            // Erased pixels are 0x00000000, which would otherwise pass for opaque black
+            return transparentMatches;
+        }
+        for (int i = 0; i < referenceCount; i++) {
+            int distance = distanceSquared(pixel, references[i]);
+            if (!transparentMatches) {
+                int da = alpha - (references[i] >>> 24);
+                distance += da * da;
+            }
+            if (distance <= maxDistanceSquared) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Squared RGB distance between two colours, ignoring alpha.
+     */
+    public static int distanceSquared(int first, int second) {
+        int dr = ((first >> 16) & 0xFF) - ((second >> 16) & 0xFF);
+        int dg = ((first >> 8) & 0xFF) - ((second >> 8) & 0xFF);
+        int db = (first & 0xFF) - (second & 0xFF);
+        return dr * dr + dg * dg + db * db;
+    }
+}
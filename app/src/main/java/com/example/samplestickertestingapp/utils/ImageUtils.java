@@ -7,14 +7,16 @@ import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Matrix;
 import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
 import android.net.Uri;
 import android.util.Log;
 
+import androidx.exifinterface.media.ExifInterface;
+
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 
 /**
  * Utility class for image processing related to stickers.
@@ -26,98 +28,382 @@ public class ImageUtils {
     public static final int STICKER_SIZE = 512;
     public static final int STICKER_QUALITY = 90;
 
+    // Longest side of images loaded for editing
+    public static final int EDITOR_MAX_SIZE = 1024;
+
+    // Transparent space kept around trimmed sticker content, in pixels
+    public static final int STICKER_MARGIN = 16;
+
+    // Reductions beyond this are resampled with an area average instead of Lanczos
+    private static final float LANCZOS_MAX_REDUCTION = 3f;
+
+    // Pixels at or below this alpha are cut off by trimming, such as faint erase leftovers
+    private static final int TRIM_MAX_ALPHA = 8;
+
+    // Pixels read at once when looking for the content bounds of a bitmap
+    private static final int TRIM_BAND_PIXELS = 64 * 1024;
+
     /**
-     * Decode a Bitmap from a Uri.
+     * Decode a Bitmap from a Uri, downsampled to fit within {@link #EDITOR_MAX_SIZE}.
      *
      * @param context Application context
      * @param uri Image Uri
      * @return Decoded Bitmap or null if error
      */
     public static Bitmap decodeBitmapFromUri(Context context, Uri uri) {
+        return decodeBitmapFromUri(context, uri, EDITOR_MAX_SIZE);
+    }
+
+    /**
+     * Decode a Bitmap from a Uri so that its longest side is at most maxSize, upright
+     * according to its EXIF orientation. Do not call on the main thread.
+     * The image is decoded with the largest power-of-two sample size that keeps it at least
+     * maxSize, then scaled and rotated in a single pass, so memory use depends on maxSize
+     * rather than on the size of the source image.
+     *
+     * @param context Application context
+     * @param uri Image Uri
+     * @param maxSize Maximum width and height of the result in pixels
+     * @return Decoded Bitmap or null if error
+     */
+    public static Bitmap decodeBitmapFromUri(Context context, Uri uri, int maxSize) {
         try {
             ContentResolver resolver = context.getContentResolver();
-            InputStream inputStream = resolver.openInputStream(uri);
-            if (inputStream == null) {
+
+            // Read the dimensions only
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            try (InputStream inputStream = resolver.openInputStream(uri)) {
+                if (inputStream == null) {
+                    return null;
+                }
+                BitmapFactory.decodeStream(inputStream, null, options);
+            }
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                Log.e(TAG, "Could not read image bounds: " + uri);
                 return null;
             }
 
-            // Decode the input stream to a bitmap
-            BitmapFactory.Options options = new BitmapFactory.Options();
+            int orientation = readExifOrientation(resolver, uri);
+
+            // Decode at the smallest power-of-two reduction that is still at least maxSize
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, maxSize);
             options.inPreferredConfig = Bitmap.Config.ARGB_8888;
-            Bitmap bitmap = BitmapFactory.decodeStream(inputStream, null, options);
-            inputStream.close();
-            return bitmap;
-        } catch (IOException e) {
+            Bitmap sampled;
+            try (InputStream inputStream = resolver.openInputStream(uri)) {
+                if (inputStream == null) {
+                    return null;
+                }
+                sampled = BitmapFactory.decodeStream(inputStream, null, options);
+            }
+            if (sampled == null) {
+                return null;
+            }
+
+            // Scale the rest of the way and apply the orientation in one pass
+            Matrix matrix = getExifMatrix(orientation);
+            int longestSide = Math.max(sampled.getWidth(), sampled.getHeight());
+            if (longestSide > maxSize) {
+                float scale = (float) maxSize / longestSide;
+                matrix.postScale(scale, scale);
+            }
+            if (matrix.isIdentity()) {
+                return sampled;
+            }
+
+            Bitmap result = Bitmap.createBitmap(sampled, 0, 0, sampled.getWidth(), sampled.getHeight(), matrix, true);
+            if (result != sampled) {
+                sampled.recycle();
+            }
+            Log.d(TAG, "Decoded " + options.outWidth + "x" + options.outHeight + " at 1/" + options.inSampleSize +
+                    " to " + result.getWidth() + "x" + result.getHeight() + ", orientation " + orientation);
+            return result;
+        } catch (IOException | OutOfMemoryError e) {
             Log.e(TAG, "Error decoding bitmap from uri", e);
             return null;
         }
     }
 
     /**
-     * Resize a bitmap to fit within sticker dimensions and maintain aspect ratio.
+     * Get the largest power-of-two sample size that keeps the longest side at least maxSize.
      *
-     * @param source Source bitmap
-     * @return Resized bitmap to fit within sticker dimensions
+     * @param width Source width
+     * @param height Source height
+     * @param maxSize Target size of the longest side
+     * @return Sample size for {@link BitmapFactory.Options#inSampleSize}
      */
-    public static Bitmap resizeBitmap(Bitmap source) {
-        int width = source.getWidth();
-        int height = source.getHeight();
+    public static int calculateInSampleSize(int width, int height, int maxSize) {
+        int longestSide = Math.max(width, height);
+        int inSampleSize = 1;
+        while (longestSide / (inSampleSize * 2) >= maxSize) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
 
-        float scaleFactor = Math.min(
-                (float) STICKER_SIZE / width,
-                (float) STICKER_SIZE / height
-        );
+    /**
+     * Read the EXIF orientation of an image.
+     *
+     * @return One of the ExifInterface orientation constants, ORIENTATION_NORMAL if unknown
+     */
+    private static int readExifOrientation(ContentResolver resolver, Uri uri) {
+        try (InputStream inputStream = resolver.openInputStream(uri)) {
+            if (inputStream == null) {
+                return ExifInterface.ORIENTATION_NORMAL;
+            }
+            return new ExifInterface(inputStream).getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Could not read EXIF orientation: " + e.getMessage());
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
 
+    /**
+     * Get the transform that turns an image with the given EXIF orientation upright.
+     */
+    private static Matrix getExifMatrix(int orientation) {
         Matrix matrix = new Matrix();
-        matrix.postScale(scaleFactor, scaleFactor);
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.setScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.setRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.setScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.setRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.setRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.setRotate(-90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.setRotate(-90);
+                break;
+            default:
+                break;
+        }
+        return matrix;
+    }
 
-        return Bitmap.createBitmap(source, 0, 0, width, height, matrix, true);
+    /**
+     * Scale a bitmap to fit within sticker dimensions and center it on a square canvas, in a
+     * single filtered pass straight into the final bitmap. Reductions go through
+     * {@link Resampler} to avoid aliasing.
+     *
+     * @param source Source bitmap
+     * @param sourceBounds Part of the source to use, for example without its transparent
+     *                     margins, or null for the whole bitmap
+     * @return Bitmap of STICKER_SIZE with the source letterboxed in it, to be returned to
+     *         {@link BitmapPool#release(Bitmap)}
+     */
+    public static Bitmap letterboxBitmap(Bitmap source, Rect sourceBounds) {
+        return letterboxBitmap(source, sourceBounds, 0);
     }
 
     /**
-     * Center a bitmap within a square of specified size (for stickers).
+     * Scale a bitmap to fit within sticker dimensions less a margin on every side and center
+     * it on a square canvas.
      *
      * @param source Source bitmap
-     * @return Bitmap centered within a square canvas of STICKER_SIZE
+     * @param sourceBounds Part of the source to use, or null for the whole bitmap
+     * @param margin Transparent space to keep around the content, in pixels
+     * @return Bitmap of STICKER_SIZE with the source letterboxed in it, to be returned to
+     *         {@link BitmapPool#release(Bitmap)}
      */
-    public static Bitmap centerBitmap(Bitmap source) {
-        int width = source.getWidth();
-        int height = source.getHeight();
+    public static Bitmap letterboxBitmap(Bitmap source, Rect sourceBounds, int margin) {
+        Rect bounds = sourceBounds != null ? sourceBounds : new Rect(0, 0, source.getWidth(), source.getHeight());
+        int width = bounds.width();
+        int height = bounds.height();
+        int available = Math.max(1, STICKER_SIZE - 2 * margin);
 
-        // Create a square bitmap with transparent background
-        Bitmap result = Bitmap.createBitmap(STICKER_SIZE, STICKER_SIZE, Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(result);
+        float scaleFactor = Math.min(
+                (float) available / width,
+                (float) available / height
+        );
+        float scaledWidth = width * scaleFactor;
+        float scaledHeight = height * scaleFactor;
+        float left = (STICKER_SIZE - scaledWidth) / 2f;
+        float top = (STICKER_SIZE - scaledHeight) / 2f;
+
+        // Take a square bitmap with transparent background from the pool
+        Bitmap result = BitmapPool.obtain(STICKER_SIZE, STICKER_SIZE);
 
-        // Calculate position to center the image
-        float left = (STICKER_SIZE - width) / 2f;
-        float top = (STICKER_SIZE - height) / 2f;
+        if (scaleFactor < 1f) {
+            int newWidth = Math.max(1, Math.round(scaledWidth));
+            int newHeight = Math.max(1, Math.round(scaledHeight));
+            int[] scaled = resamplePixels(source, bounds, newWidth, newHeight);
+            result.setPixels(scaled, 0, newWidth, (STICKER_SIZE - newWidth) / 2, (STICKER_SIZE - newHeight) / 2,
+                    newWidth, newHeight);
+            return result;
+        }
 
-        // Draw the source bitmap onto the square canvas
+        Canvas canvas = new Canvas(result);
         Paint paint = new Paint();
         paint.setAntiAlias(true);
         paint.setFilterBitmap(true);
         paint.setDither(true);
-        canvas.drawBitmap(source, left, top, paint);
+        canvas.drawBitmap(source, bounds, new RectF(left, top, left + scaledWidth, top + scaledHeight), paint);
 
         return result;
     }
 
     /**
-     * Save a bitmap as a WebP file.
+     * Scale a bitmap down to the given size with {@link Resampler}.
+     *
+     * @param source Source bitmap
+     * @param width Width of the result
+     * @param height Height of the result
+     * @return Scaled bitmap, to be returned to {@link BitmapPool#release(Bitmap)}
+     */
+    public static Bitmap downscaleBitmap(Bitmap source, int width, int height) {
+        int[] scaled = resamplePixels(source, new Rect(0, 0, source.getWidth(), source.getHeight()), width, height);
+        Bitmap result = BitmapPool.obtain(width, height);
+        result.setPixels(scaled, 0, width, 0, 0, width, height);
+        return result;
+    }
+
+    /**
+     * Resample part of a bitmap, choosing the filter by how much it is reduced.
+     * The source is first box-reduced by the largest whole factor that keeps it at least the
+     * new size, reading a band of rows at a time, so the working buffers stay within a few
+     * times the size of the result however large the source is.
+     */
+    private static int[] resamplePixels(Bitmap source, Rect bounds, int newWidth, int newHeight) {
+        int width = bounds.width();
+        int height = bounds.height();
+        int factor = Math.max(1, Math.min(width / newWidth, height / newHeight));
+        int[] pixels;
+        if (factor > 1) {
+            final int sourceWidth = width;
+            pixels = Resampler.boxReduce((band, top, rows) -> source.getPixels(band, 0, sourceWidth,
+                    bounds.left, bounds.top + top, sourceWidth, rows), width, height, factor);
+            width = (width + factor - 1) / factor;
+            height = (height + factor - 1) / factor;
+        } else {
+            pixels = new int[width * height];
+            source.getPixels(pixels, 0, width, bounds.left, bounds.top, width, height);
+        }
+
+        float reduction = Math.max((float) width / newWidth, (float) height / newHeight);
+        int filter = reduction > LANCZOS_MAX_REDUCTION ? Resampler.FILTER_BOX : Resampler.FILTER_LANCZOS3;
+        return Resampler.resample(pixels, width, height, newWidth, newHeight, filter);
+    }
+
+    /**
+     * Save a bitmap as a WebP file within the sticker size limit.
      *
      * @param bitmap Bitmap to save
      * @param outputFile File to save to
      * @return true if saved successfully, false otherwise
      */
     public static boolean saveBitmapAsWebP(Bitmap bitmap, File outputFile) {
-        try (OutputStream out = new FileOutputStream(outputFile)) {
-            // Use lossless compression for best quality
-            bitmap.compress(Bitmap.CompressFormat.WEBP, STICKER_QUALITY, out);
-            return true;
-        } catch (IOException e) {
-            Log.e(TAG, "Error saving WebP file: " + outputFile.getName(), e);
-            return false;
+        return WebPEncoder.encodeToFile(bitmap, outputFile, WebPEncoder.STICKER_MAX_BYTES) != null;
+    }
+
+    /**
+     * Find the tight bounding box of the visible content of a pixel buffer.
+     * Each row is scanned from the left up to its first visible pixel and from the right down
+     * to the widest column found so far, so every pixel is read at most once.
+     *
+     * @param pixels Pixels, row by row, in ARGB
+     * @param width Image width
+     * @param height Image height
+     * @return Bounds of the visible content, or null if the image is empty
+     */
+    public static Rect findContentBounds(int[] pixels, int width, int height) {
+        int left = width;
+        int right = -1;
+        int top = -1;
+        int bottom = -1;
+
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int first = 0;
+            while (first < width && (pixels[row + first] >>> 24) <= TRIM_MAX_ALPHA) {
+                first++;
+            }
+            if (first == width) {
+                continue;
+            }
+            if (top < 0) {
+                top = y;
+            }
+            bottom = y;
+            left = Math.min(left, first);
+
+            // Only columns right of the current bounds can widen them
+            for (int x = width - 1; x > right && x >= first; x--) {
+                if ((pixels[row + x] >>> 24) > TRIM_MAX_ALPHA) {
+                    right = x;
+                    break;
+                }
+            }
+        }
+        return top < 0 ? null : new Rect(left, top, right + 1, bottom + 1);
+    }
+
+    /**
+     * Find the tight bounding box of the visible content of a bitmap.
+     *
+     * @param bitmap Bitmap to scan
+     * @return Bounds of the visible content, or null if the bitmap is empty
+     */
+    public static Rect findContentBounds(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        // Scan a band of rows at a time rather than copying the whole bitmap
+        int bandRows = Math.max(1, Math.min(height, TRIM_BAND_PIXELS / width));
+        int[] band = new int[width * bandRows];
+
+        Rect bounds = null;
+        for (int top = 0; top < height; top += bandRows) {
+            int rows = Math.min(bandRows, height - top);
+            bitmap.getPixels(band, 0, width, 0, top, width, rows);
+            Rect bandBounds = findContentBounds(band, width, rows);
+            if (bandBounds == null) {
+                continue;
+            }
+            bandBounds.offset(0, top);
+            if (bounds == null) {
+                bounds = bandBounds;
+            } else {
+                bounds.union(bandBounds);
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Trim the transparent margins of a bitmap and fit its content into the sticker canvas,
+     * optionally with the white outline that keeps the sticker readable on dark chat
+     * backgrounds.
+     *
+     * @param source Source bitmap
+     * @param margin Transparent space to keep around the content, in pixels
+     * @param outline Whether to add a {@link StickerOutline} border
+     * @return Bitmap of STICKER_SIZE, to be returned to {@link BitmapPool#release(Bitmap)}
+     */
+    public static Bitmap prepareSticker(Bitmap source, int margin, boolean outline) {
+        // An empty bitmap is kept whole rather than cropped to nothing
+        Rect bounds = findContentBounds(source);
+        if (!outline) {
+            return letterboxBitmap(source, bounds, margin);
         }
+        // Leave room for the border so it is not cut off at the canvas edge
+        Bitmap sticker = letterboxBitmap(source, bounds,
+                margin + StickerOutline.getMargin(StickerOutline.DEFAULT_WIDTH, false));
+        StickerOutline.apply(sticker, StickerOutline.DEFAULT_WIDTH, StickerOutline.DEFAULT_COLOR, false);
+        return sticker;
     }
 
     /**
@@ -130,6 +416,22 @@ public class ImageUtils {
      * @return File object pointing to the saved sticker file or null if error
      */
     public static File saveAsStickerFile(Context context, Bitmap bitmap, String fileName) {
+        return saveAsStickerFile(context, bitmap, fileName, STICKER_MARGIN, false);
+    }
+
+    /**
+     * Process and save a bitmap as a sticker.
+     * Transparent margins are trimmed and the content is fit into the canvas.
+     *
+     * @param context Application context
+     * @param bitmap Source bitmap
+     * @param fileName Filename to save the sticker as
+     * @param margin Transparent space to keep around the content, in pixels
+     * @param outline Whether to add a white outline around the content
+     * @return File object pointing to the saved sticker file or null if error
+     */
+    public static File saveAsStickerFile(Context context, Bitmap bitmap, String fileName, int margin,
+                                         boolean outline) {
         try {
             // Ensure the directory exists
             File directory = FileUtils.getCustomStickersDirectory(context);
@@ -137,22 +439,14 @@ public class ImageUtils {
                 return null;
             }
 
-            // Process bitmap
-            Bitmap resized = resizeBitmap(bitmap);
-            Bitmap centered = centerBitmap(resized);
-            if (resized != bitmap) {
-                resized.recycle(); // Free memory if this is a new bitmap
-            }
+            // Trim, scale and center the bitmap in one step
+            Bitmap centered = prepareSticker(bitmap, margin, outline);
 
             // Save as WebP
             File outputFile = new File(directory, fileName);
-            if (saveBitmapAsWebP(centered, outputFile)) {
-                centered.recycle();
-                return outputFile;
-            } else {
-                centered.recycle();
-                return null;
-            }
+            boolean saved = saveBitmapAsWebP(centered, outputFile);
+            BitmapPool.release(centered);
+            return saved ? outputFile : null;
         } catch (Exception e) {
             Log.e(TAG, "Error saving sticker file", e);
             return null;
@@ -0,0 +1,437 @@
+package com.example.samplestickertestingapp.utils;
+
+import android.util.Log;
+
+import com.example.samplestickertestingapp.models.Sticker;
+import com.example.samplestickertestingapp.models.StickerPack;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary copy of a pack's pack_info.json, stored next to it as pack_info.bin.
+ * pack_info.json stays the interchange format; this file is what the app reads on hot paths.
+ * It is memory-mapped and decoded lazily, so reading the pack header or a single sticker
+ * does not materialise the rest of the pack.
+ *
+ * Layout (big-endian):
+ * <pre>
+ * header         magic, format version, flags, pack_info.json mtime and length,
+ *                sticker count, table offsets, string indexes of the pack fields
+ * sticker table  per sticker: file name, file size, accessibility text, first emoji, emoji count
+ * emoji table    string index of every emoji, referenced by the sticker records
+ * string table   string count, byte offsets, UTF-8 data; every distinct string is stored once
+ * </pre>
+ * The recorded mtime and length of pack_info.json are checked on open, so a manifest that is
+ * older than its JSON is never used. A PackManifest instance is not thread-safe.
+ */
+public final class PackManifest {
+    private static final String TAG = "PackManifest";
+
+    public static final String FILE_NAME = "pack_info.bin";
+    private static final String JSON_FILE_NAME = "pack_info.json";
+
+    private static final int MAGIC = 0x53504B4D; // "SPKM"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int FLAG_AVOID_CACHE = 1;
+    private static final int FLAG_ANIMATED = 1 << 1;
+
+    // Pack fields stored as string indexes in the header, in this order
+    private static final int FIELD_IDENTIFIER = 0;
+    private static final int FIELD_NAME = 1;
+    private static final int FIELD_PUBLISHER = 2;
+    private static final int FIELD_TRAY_IMAGE_FILE = 3;
+    private static final int FIELD_PUBLISHER_EMAIL = 4;
+    private static final int FIELD_PUBLISHER_WEBSITE = 5;
+    private static final int FIELD_PRIVACY_POLICY_WEBSITE = 6;
+    private static final int FIELD_LICENSE_AGREEMENT_WEBSITE = 7;
+    private static final int FIELD_IMAGE_DATA_VERSION = 8;
+    private static final int FIELD_ANDROID_PLAY_STORE_LINK = 9;
+    private static final int FIELD_IOS_APP_STORE_LINK = 10;
+    private static final int FIELD_COUNT = 11;
+
+    // Header offsets
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_FORMAT_VERSION = 4;
+    private static final int OFFSET_FLAGS = 8;
+    private static final int OFFSET_JSON_MODIFIED = 12;
+    private static final int OFFSET_JSON_LENGTH = 20;
+    private static final int OFFSET_STICKER_COUNT = 28;
+    private static final int OFFSET_STICKER_TABLE = 32;
+    private static final int OFFSET_EMOJI_TABLE = 36;
+    private static final int OFFSET_STRING_TABLE = 40;
+    private static final int OFFSET_FIELDS = 44;
+    private static final int HEADER_SIZE = OFFSET_FIELDS + FIELD_COUNT * 4;
+
+    // String index used for null values
+    private static final int NULL_STRING = -1;
+
+    // Sticker record: file name (int), size (long), accessibility text (int), first emoji (int), emoji count (int)
+    private static final int STICKER_RECORD_SIZE = 24;
+
+    private final ByteBuffer buffer;
+    private final int stickerCount;
+    private final int stickerTable;
+    private final int emojiTable;
+    private final int stringCount;
+    private final int stringOffsets;
+    private final int stringData;
+
+    // Strings decoded so far, by index
+    private final String[] strings;
+
+    private PackManifest(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        int limit = buffer.limit();
+
+        stickerCount = buffer.getInt(OFFSET_STICKER_COUNT);
+        stickerTable = buffer.getInt(OFFSET_STICKER_TABLE);
+        emojiTable = buffer.getInt(OFFSET_EMOJI_TABLE);
+        int stringTable = buffer.getInt(OFFSET_STRING_TABLE);
+        if (stickerCount < 0 || stickerTable < HEADER_SIZE || emojiTable < stickerTable ||
+                stringTable < emojiTable || stringTable > limit - 4 ||
+                (long) stickerTable + (long) stickerCount * STICKER_RECORD_SIZE > emojiTable) {
+            throw new IOException("Corrupt manifest tables");
+        }
+
+        stringCount = buffer.getInt(stringTable);
+        stringOffsets = stringTable + 4;
+        stringData = stringOffsets + (stringCount + 1) * 4;
+        if (stringCount < 0 || stringData > limit ||
+                (long) stringData + buffer.getInt(stringOffsets + stringCount * 4) > limit) {
+            throw new IOException("Corrupt manifest string table");
+        }
+        strings = new String[stringCount];
+    }
+
+    /**
+     * Open the manifest of a pack directory.
+     *
+     * @param packDirectory Pack directory
+     * @return The manifest, or null if it is missing, older than pack_info.json or unreadable
+     */
+    public static PackManifest open(File packDirectory) {
+        File manifestFile = new File(packDirectory, FILE_NAME);
+        File jsonFile = new File(packDirectory, JSON_FILE_NAME);
+        if (!manifestFile.exists() || !jsonFile.exists()) {
+            return null;
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(manifestFile, "r");
+             FileChannel channel = file.getChannel()) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                return null;
+            }
+
+            // The mapping stays valid after the channel is closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(OFFSET_MAGIC) != MAGIC || buffer.getInt(OFFSET_FORMAT_VERSION) != FORMAT_VERSION) {
+                return null;
+            }
+            if (buffer.getLong(OFFSET_JSON_MODIFIED) != jsonFile.lastModified() ||
+                    buffer.getLong(OFFSET_JSON_LENGTH) != jsonFile.length()) {
+                Log.d(TAG, "Manifest is older than pack_info.json: " + packDirectory.getName());
+                return null;
+            }
+            return new PackManifest(buffer);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Error opening manifest: " + manifestFile.getPath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Read a whole pack from its manifest.
+     *
+     * @param packDirectory Pack directory
+     * @return The pack with its listed stickers, or null if there is no usable manifest
+     */
+    public static StickerPack readPack(File packDirectory) {
+        PackManifest manifest = open(packDirectory);
+        if (manifest == null) {
+            return null;
+        }
+        try {
+            StickerPack pack = manifest.readHeader();
+            pack.setStickers(manifest.readStickers());
+            return pack;
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Error reading manifest: " + packDirectory.getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Read the pack headers of every pack directory that has a usable manifest.
+     *
+     * @param filesDir Directory holding the pack directories
+     * @return Packs without stickers, in directory name order
+     */
+    public static List<StickerPack> listPacks(File filesDir) {
+        List<StickerPack> packs = new ArrayList<>();
+        File[] directories = filesDir.listFiles(File::isDirectory);
+        if (directories == null) {
+            return packs;
+        }
+
+        Arrays.sort(directories);
+        for (File directory : directories) {
+            PackManifest manifest = open(directory);
+            if (manifest == null) continue;
+            try {
+                packs.add(manifest.readHeader());
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Error reading manifest header: " + directory.getName(), e);
+            }
+        }
+        return packs;
+    }
+
+    /**
+     * Read the pack fields. The returned pack has no stickers.
+     *
+     * @return Pack header
+     */
+    public StickerPack readHeader() {
+        int flags = buffer.getInt(OFFSET_FLAGS);
+        StickerPack pack = new StickerPack(
+                field(FIELD_IDENTIFIER),
+                field(FIELD_NAME),
+                field(FIELD_PUBLISHER),
+                field(FIELD_TRAY_IMAGE_FILE),
+                field(FIELD_PUBLISHER_EMAIL),
+                field(FIELD_PUBLISHER_WEBSITE),
+                field(FIELD_PRIVACY_POLICY_WEBSITE),
+                field(FIELD_LICENSE_AGREEMENT_WEBSITE),
+                field(FIELD_IMAGE_DATA_VERSION),
+                (flags & FLAG_AVOID_CACHE) != 0,
+                (flags & FLAG_ANIMATED) != 0
+        );
+        pack.setAndroidPlayStoreLink(field(FIELD_ANDROID_PLAY_STORE_LINK));
+        pack.setIosAppStoreLink(field(FIELD_IOS_APP_STORE_LINK));
+        pack.setStickers(new ArrayList<>());
+        return pack;
+    }
+
+    /**
+     * @return Number of stickers listed in the manifest
+     */
+    public int getStickerCount() {
+        return stickerCount;
+    }
+
+    /**
+     * Read one sticker record.
+     *
+     * @param index Sticker index, in pack_info.json order
+     * @return The sticker, with the file size recorded when the manifest was written
+     */
+    public Sticker readSticker(int index) {
+        if (index < 0 || index >= stickerCount) {
+            throw new IndexOutOfBoundsException("Sticker " + index + " of " + stickerCount);
+        }
+
+        int record = stickerTable + index * STICKER_RECORD_SIZE;
+        String fileName = string(buffer.getInt(record));
+        long size = buffer.getLong(record + 4);
+        String accessibilityText = string(buffer.getInt(record + 12));
+        int firstEmoji = buffer.getInt(record + 16);
+        int emojiCount = buffer.getInt(record + 20);
+
+        List<String> emojis = new ArrayList<>(emojiCount);
+        for (int i = 0; i < emojiCount; i++) {
+            int position = emojiTable + (firstEmoji + i) * 4;
+            emojis.add(string(buffer.getInt(position)));
+        }
+
+        Sticker sticker = new Sticker(fileName, emojis, accessibilityText);
+        sticker.setSize(size);
+        return sticker;
+    }
+
+    /**
+     * Read all sticker records.
+     *
+     * @return Stickers in pack_info.json order
+     */
+    public List<Sticker> readStickers() {
+        List<Sticker> stickers = new ArrayList<>(stickerCount);
+        for (int i = 0; i < stickerCount; i++) {
+            stickers.add(readSticker(i));
+        }
+        return stickers;
+    }
+
+    private String field(int field) {
+        return string(buffer.getInt(OFFSET_FIELDS + field * 4));
+    }
+
+    private String string(int index) {
+        if (index == NULL_STRING) {
+            return null;
+        }
+        if (index < 0 || index >= stringCount) {
+            throw new IndexOutOfBoundsException("String " + index + " of " + stringCount);
+        }
+
+        String value = strings[index];
+        if (value == null) {
+            int start = buffer.getInt(stringOffsets + index * 4);
+            int end = buffer.getInt(stringOffsets + (index + 1) * 4);
+            byte[] bytes = new byte[end - start];
+            ByteBuffer data = buffer.duplicate();
+            data.position(stringData + start);
+            data.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+            strings[index] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Write the manifest for a pack. Must be called after pack_info.json has been written,
+     * since its modification time and length are recorded.
+     *
+     * @param packDirectory Pack directory holding pack_info.json
+     * @param pack Pack as written to pack_info.json
+     * @return true if the manifest was written
+     */
+    public static boolean write(File packDirectory, StickerPack pack) {
+        File jsonFile = new File(packDirectory, JSON_FILE_NAME);
+        File manifestFile = new File(packDirectory, FILE_NAME);
+        File tempFile = new File(packDirectory, FILE_NAME + ".tmp");
+
+        try {
+            byte[] data = encode(pack, jsonFile.lastModified(), jsonFile.length());
+            try (FileOutputStream out = new FileOutputStream(tempFile)) {
+                out.write(data);
+                out.getFD().sync();
+            }
+            if (!tempFile.renameTo(manifestFile)) {
+                throw new IOException("Failed to rename " + tempFile.getName());
+            }
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing manifest for pack: " + pack.identifier, e);
+            tempFile.delete();
+            return false;
+        }
+    }
+
+    private static byte[] encode(StickerPack pack, long jsonModified, long jsonLength) {
+        Map<String, Integer> stringIndexes = new LinkedHashMap<>();
+        List<Sticker> stickers = pack.getStickers() != null ? pack.getStickers() : new ArrayList<>();
+
+        int[] fields = new int[FIELD_COUNT];
+        fields[FIELD_IDENTIFIER] = intern(stringIndexes, pack.identifier);
+        fields[FIELD_NAME] = intern(stringIndexes, pack.name);
+        fields[FIELD_PUBLISHER] = intern(stringIndexes, pack.publisher);
+        fields[FIELD_TRAY_IMAGE_FILE] = intern(stringIndexes, pack.trayImageFile);
+        fields[FIELD_PUBLISHER_EMAIL] = intern(stringIndexes, pack.publisherEmail);
+        fields[FIELD_PUBLISHER_WEBSITE] = intern(stringIndexes, pack.publisherWebsite);
+        fields[FIELD_PRIVACY_POLICY_WEBSITE] = intern(stringIndexes, pack.privacyPolicyWebsite);
+        fields[FIELD_LICENSE_AGREEMENT_WEBSITE] = intern(stringIndexes, pack.licenseAgreementWebsite);
+        fields[FIELD_IMAGE_DATA_VERSION] = intern(stringIndexes, pack.imageDataVersion);
+        fields[FIELD_ANDROID_PLAY_STORE_LINK] = intern(stringIndexes, pack.androidPlayStoreLink);
+        fields[FIELD_IOS_APP_STORE_LINK] = intern(stringIndexes, pack.iosAppStoreLink);
+
+        int emojiCount = 0;
+        int[][] stickerStrings = new int[stickers.size()][];
+        for (int i = 0; i < stickers.size(); i++) {
+            Sticker sticker = stickers.get(i);
+            List<String> emojis = sticker.emojis != null ? sticker.emojis : new ArrayList<>();
+            int[] indexes = new int[2 + emojis.size()];
+            indexes[0] = intern(stringIndexes, sticker.imageFileName);
+            indexes[1] = intern(stringIndexes, sticker.accessibilityText);
+            for (int j = 0; j < emojis.size(); j++) {
+                indexes[2 + j] = intern(stringIndexes, emojis.get(j));
+            }
+            stickerStrings[i] = indexes;
+            emojiCount += emojis.size();
+        }
+
+        List<byte[]> encodedStrings = new ArrayList<>(stringIndexes.size());
+        int stringBytes = 0;
+        for (String value : stringIndexes.keySet()) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            encodedStrings.add(bytes);
+            stringBytes += bytes.length;
+        }
+
+        int stickerTable = HEADER_SIZE;
+        int emojiTable = stickerTable + stickers.size() * STICKER_RECORD_SIZE;
+        int stringTable = emojiTable + emojiCount * 4;
+        int size = stringTable + 4 + (encodedStrings.size() + 1) * 4 + stringBytes;
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.putInt(FORMAT_VERSION);
+        buffer.putInt((pack.avoidCache ? FLAG_AVOID_CACHE : 0) | (pack.animatedStickerPack ? FLAG_ANIMATED : 0));
+        buffer.putLong(jsonModified);
+        buffer.putLong(jsonLength);
+        buffer.putInt(stickers.size());
+        buffer.putInt(stickerTable);
+        buffer.putInt(emojiTable);
+        buffer.putInt(stringTable);
+        for (int field : fields) {
+            buffer.putInt(field);
+        }
+
+        // Sticker records
+        int nextEmoji = 0;
+        for (int i = 0; i < stickers.size(); i++) {
+            int[] indexes = stickerStrings[i];
+            buffer.putInt(indexes[0]);
+            buffer.putLong(stickers.get(i).getSize());
+            buffer.putInt(indexes[1]);
+            buffer.putInt(nextEmoji);
+            buffer.putInt(indexes.length - 2);
+            nextEmoji += indexes.length - 2;
+        }
+
+        // Emoji table
+        for (int[] indexes : stickerStrings) {
+            for (int j = 2; j < indexes.length; j++) {
+                buffer.putInt(indexes[j]);
+            }
+        }
+
+        // String table
+        buffer.putInt(encodedStrings.size());
+        int offset = 0;
+        for (byte[] bytes : encodedStrings) {
+            buffer.putInt(offset);
+            offset += bytes.length;
+        }
+        buffer.putInt(offset);
+        for (byte[] bytes : encodedStrings) {
+            buffer.put(bytes);
+        }
+
+        return buffer.array();
+    }
+
+    private static int intern(Map<String, Integer> stringIndexes, String value) {
+        if (value == null) {
+            return NULL_STRING;
+        }
+        Integer index = stringIndexes.get(value);
+        if (index == null) {
+            index = stringIndexes.size();
+            stringIndexes.put(value, index);
+        }
+        return index;
+    }
+}
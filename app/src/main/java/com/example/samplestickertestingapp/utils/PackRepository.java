@@ -0,0 +1,443 @@
+package com.example.samplestickertestingapp.utils;
+
+import android.os.SystemClock;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+import android.util.Log;
+
+import com.example.samplestickertestingapp.models.Sticker;
+import com.example.samplestickertestingapp.models.StickerPack;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes the pack_info.json of pack directories. Every part of the app that
+ * loads or saves a pack goes through here.
+ *
+ * Packs are read from the binary {@link PackManifest} when it is up to date, otherwise
+ * pack_info.json is parsed with a streaming reader and the manifest is rewritten. Parsed
+ * packs are cached by the modification time and length of pack_info.json, and callers
+ * always get their own copy. Writes replace pack_info.json atomically.
+ */
+public final class PackRepository {
+    private static final String TAG = "PackRepository";
+
+    public static final String PACK_INFO_FILE_NAME = "pack_info.json";
+
+    // Keys in pack_info.json
+    private static final String KEY_IDENTIFIER = "identifier";
+    private static final String KEY_NAME = "name";
+    private static final String KEY_PUBLISHER = "publisher";
+    private static final String KEY_TRAY_IMAGE_FILE = "tray_image_file";
+    private static final String KEY_IMAGE_DATA_VERSION = "image_data_version";
+    private static final String KEY_AVOID_CACHE = "avoid_cache";
+    private static final String KEY_ANIMATED_STICKER_PACK = "animated_sticker_pack";
+    private static final String KEY_PUBLISHER_EMAIL = "publisher_email";
+    private static final String KEY_PUBLISHER_WEBSITE = "publisher_website";
+    private static final String KEY_PRIVACY_POLICY_WEBSITE = "privacy_policy_website";
+    private static final String KEY_LICENSE_AGREEMENT_WEBSITE = "license_agreement_website";
+    private static final String KEY_STICKERS = "stickers";
+    private static final String KEY_STICKER_FILE = "image_file";
+    private static final String KEY_EMOJIS = "emojis";
+    private static final String KEY_ACCESSIBILITY_TEXT = "accessibility_text";
+
+    /**
+     * Cached pack together with the stamp of the pack_info.json it was read from.
+     */
+    private static final class CacheEntry {
+        final long modified;
+        final long length;
+        final StickerPack pack;
+
+        CacheEntry(long modified, long length, StickerPack pack) {
+            this.modified = modified;
+            this.length = length;
+            this.pack = pack;
+        }
+    }
+
+    // Parsed packs keyed by pack directory path, guarded by the class lock
+    private static final Map<String, CacheEntry> cache = new HashMap<>();
+
+    // I/O counters, guarded by the class lock
+    private static long cacheHits;
+    private static long manifestReads;
+    private static long jsonParses;
+    private static long parseTimeMs;
+    private static long writes;
+    private static long writeTimeMs;
+
+    private PackRepository() {
+    }
+
+    /**
+     * Read the pack stored in a pack directory.
+     * The sticker list holds every sticker listed in pack_info.json, whether its file exists
+     * or not; sizes are the ones recorded when the pack was last written.
+     *
+     * @param packDirectory Pack directory
+     * @return A copy of the pack the caller may modify, or null if there is no readable pack_info.json
+     */
+    public static StickerPack readPack(File packDirectory) {
+        File packInfoFile = new File(packDirectory, PACK_INFO_FILE_NAME);
+        long modified = packInfoFile.lastModified();
+        long length = packInfoFile.length();
+        if (modified == 0) {
+            return null;
+        }
+
+        String key = packDirectory.getAbsolutePath();
+        synchronized (PackRepository.class) {
+            CacheEntry entry = cache.get(key);
+            if (entry != null && entry.modified == modified && entry.length == length) {
+                cacheHits++;
+                return copyOf(entry.pack, entry.pack.imageDataVersion);
+            }
+        }
+
+        StickerPack pack = PackManifest.readPack(packDirectory);
+        if (pack != null) {
+            synchronized (PackRepository.class) {
+                manifestReads++;
+            }
+        } else {
+            long start = SystemClock.elapsedRealtime();
+            try {
+                pack = parsePackInfo(packInfoFile);
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Error parsing pack info file: " + packInfoFile.getPath(), e);
+                return null;
+            }
+            fillSizes(packDirectory, pack);
+            PackManifest.write(packDirectory, pack);
+
+            long elapsed = SystemClock.elapsedRealtime() - start;
+            synchronized (PackRepository.class) {
+                jsonParses++;
+                parseTimeMs += elapsed;
+            }
+            Log.d(TAG, "Parsed " + packDirectory.getName() + "/" + PACK_INFO_FILE_NAME + " in " + elapsed + " ms");
+        }
+
+        synchronized (PackRepository.class) {
+            cache.put(key, new CacheEntry(modified, length, pack));
+        }
+        return copyOf(pack, pack.imageDataVersion);
+    }
+
+    /**
+     * Write a pack to pack_info.json in its directory, replacing the previous file atomically,
+     * and update the binary manifest.
+     *
+     * @param packDirectory Pack directory
+     * @param pack Pack to write
+     * @return true if the pack was written
+     */
+    public static boolean writePack(File packDirectory, StickerPack pack) {
+        long start = SystemClock.elapsedRealtime();
+        File packInfoFile = new File(packDirectory, PACK_INFO_FILE_NAME);
+        File tempFile = new File(packDirectory, PACK_INFO_FILE_NAME + ".tmp");
+
+        try {
+            try (FileOutputStream out = new FileOutputStream(tempFile)) {
+                JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+                writer.setIndent("  ");
+                writePackInfo(writer, pack);
+                writer.flush();
+                out.getFD().sync();
+            }
+            if (!tempFile.renameTo(packInfoFile)) {
+                throw new IOException("Failed to rename " + tempFile.getName());
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing pack info for: " + pack.identifier, e);
+            tempFile.delete();
+            return false;
+        }
+
+        StickerPack cached = copyOf(pack, pack.imageDataVersion);
+        PackManifest.write(packDirectory, cached);
+
+        long elapsed = SystemClock.elapsedRealtime() - start;
+        synchronized (PackRepository.class) {
+            cache.put(packDirectory.getAbsolutePath(),
+                    new CacheEntry(packInfoFile.lastModified(), packInfoFile.length(), cached));
+            writes++;
+            writeTimeMs += elapsed;
+        }
+        Log.d(TAG, "Wrote pack info for " + pack.identifier + " with " +
+                cached.getStickers().size() + " stickers in " + elapsed + " ms");
+        return true;
+    }
+
+    /**
+     * Copy a pack with the next image data version, so WhatsApp reloads its images.
+     * Numeric versions are incremented, anything else gets ".1" appended.
+     *
+     * @param pack Pack to copy
+     * @return Copy of the pack with the new version
+     */
+    public static StickerPack withNextImageDataVersion(StickerPack pack) {
+        String version = pack.imageDataVersion;
+        String nextVersion;
+        try {
+            nextVersion = String.valueOf(Integer.parseInt(version) + 1);
+        } catch (NumberFormatException e) {
+            nextVersion = version + ".1";
+        }
+        return copyOf(pack, nextVersion);
+    }
+
+    /**
+     * Describe the pack I/O done so far, for logging.
+     *
+     * @return Counters and timings of reads and writes
+     */
+    public static synchronized String getStats() {
+        return "cache hits: " + cacheHits + ", manifest reads: " + manifestReads +
+                ", JSON parses: " + jsonParses + " (" + parseTimeMs + " ms)" +
+                ", writes: " + writes + " (" + writeTimeMs + " ms)";
+    }
+
+    /**
+     * Parse pack_info.json with a streaming reader. Missing optional fields get their
+     * defaults; missing stickers or emojis give empty lists.
+     */
+    private static StickerPack parsePackInfo(File packInfoFile) throws IOException {
+        String identifier = null;
+        String name = null;
+        String publisher = null;
+        String trayImageFile = null;
+        String publisherEmail = "";
+        String publisherWebsite = "";
+        String privacyPolicyWebsite = "";
+        String licenseAgreementWebsite = "";
+        String imageDataVersion = "1";
+        boolean avoidCache = false;
+        boolean animatedStickerPack = false;
+        List<Sticker> stickers = new ArrayList<>();
+
+        try (JsonReader reader = new JsonReader(new BufferedReader(
+                new InputStreamReader(new FileInputStream(packInfoFile), StandardCharsets.UTF_8)))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case KEY_IDENTIFIER:
+                        identifier = nextString(reader, null);
+                        break;
+                    case KEY_NAME:
+                        name = nextString(reader, null);
+                        break;
+                    case KEY_PUBLISHER:
+                        publisher = nextString(reader, null);
+                        break;
+                    case KEY_TRAY_IMAGE_FILE:
+                        trayImageFile = nextString(reader, null);
+                        break;
+                    case KEY_PUBLISHER_EMAIL:
+                        publisherEmail = nextString(reader, "");
+                        break;
+                    case KEY_PUBLISHER_WEBSITE:
+                        publisherWebsite = nextString(reader, "");
+                        break;
+                    case KEY_PRIVACY_POLICY_WEBSITE:
+                        privacyPolicyWebsite = nextString(reader, "");
+                        break;
+                    case KEY_LICENSE_AGREEMENT_WEBSITE:
+                        licenseAgreementWebsite = nextString(reader, "");
+                        break;
+                    case KEY_IMAGE_DATA_VERSION:
+                        imageDataVersion = nextString(reader, "1");
+                        break;
+                    case KEY_AVOID_CACHE:
+                        avoidCache = nextBoolean(reader);
+                        break;
+                    case KEY_ANIMATED_STICKER_PACK:
+                        animatedStickerPack = nextBoolean(reader);
+                        break;
+                    case KEY_STICKERS:
+                        readStickers(reader, stickers);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+        }
+
+        if (identifier == null || name == null || publisher == null || trayImageFile == null) {
+            throw new IOException("Missing required pack field in " + packInfoFile.getPath());
+        }
+
+        StickerPack pack = new StickerPack(identifier, name, publisher, trayImageFile,
+                publisherEmail, publisherWebsite, privacyPolicyWebsite, licenseAgreementWebsite,
+                imageDataVersion, avoidCache, animatedStickerPack);
+        pack.setStickers(stickers);
+        return pack;
+    }
+
+    private static void readStickers(JsonReader reader, List<Sticker> stickers) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return;
+        }
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String imageFile = null;
+            List<String> emojis = new ArrayList<>();
+            String accessibilityText = "";
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case KEY_STICKER_FILE:
+                        imageFile = nextString(reader, null);
+                        break;
+                    case KEY_EMOJIS:
+                        if (reader.peek() == JsonToken.NULL) {
+                            reader.nextNull();
+                            break;
+                        }
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            String emoji = nextString(reader, null);
+                            if (emoji != null) {
+                                emojis.add(emoji);
+                            }
+                        }
+                        reader.endArray();
+                        break;
+                    case KEY_ACCESSIBILITY_TEXT:
+                        accessibilityText = nextString(reader, "");
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+
+            if (imageFile == null) {
+                throw new IOException("Sticker without " + KEY_STICKER_FILE);
+            }
+            stickers.add(new Sticker(imageFile, emojis, accessibilityText));
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Read a string value; numbers and booleans are returned as text, null gives the fallback.
+     */
+    private static String nextString(JsonReader reader, String fallback) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return fallback;
+        }
+        if (token == JsonToken.BOOLEAN) {
+            return String.valueOf(reader.nextBoolean());
+        }
+        return reader.nextString();
+    }
+
+    /**
+     * Read a boolean value; "true" strings are accepted, null is false.
+     */
+    private static boolean nextBoolean(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.BOOLEAN) {
+            return reader.nextBoolean();
+        }
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return false;
+        }
+        return Boolean.parseBoolean(reader.nextString());
+    }
+
+    private static void writePackInfo(JsonWriter writer, StickerPack pack) throws IOException {
+        writer.beginObject();
+        writer.name(KEY_IDENTIFIER).value(pack.identifier);
+        writer.name(KEY_NAME).value(pack.name);
+        writer.name(KEY_PUBLISHER).value(pack.publisher);
+        writer.name(KEY_TRAY_IMAGE_FILE).value(pack.trayImageFile);
+        writer.name(KEY_IMAGE_DATA_VERSION).value(pack.imageDataVersion);
+        writer.name(KEY_AVOID_CACHE).value(pack.avoidCache);
+        writer.name(KEY_ANIMATED_STICKER_PACK).value(pack.animatedStickerPack);
+
+        // Optional fields are only written when set
+        writeOptional(writer, KEY_PUBLISHER_EMAIL, pack.publisherEmail);
+        writeOptional(writer, KEY_PUBLISHER_WEBSITE, pack.publisherWebsite);
+        writeOptional(writer, KEY_PRIVACY_POLICY_WEBSITE, pack.privacyPolicyWebsite);
+        writeOptional(writer, KEY_LICENSE_AGREEMENT_WEBSITE, pack.licenseAgreementWebsite);
+
+        writer.name(KEY_STICKERS).beginArray();
+        for (Sticker sticker : pack.getStickers()) {
+            writer.beginObject();
+            writer.name(KEY_STICKER_FILE).value(sticker.imageFileName);
+            writer.name(KEY_EMOJIS).beginArray();
+            for (String emoji : sticker.emojis) {
+                writer.value(emoji);
+            }
+            writer.endArray();
+            writeOptional(writer, KEY_ACCESSIBILITY_TEXT, sticker.accessibilityText);
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+
+    private static void writeOptional(JsonWriter writer, String name, String value) throws IOException {
+        if (value != null && !value.isEmpty()) {
+            writer.name(name).value(value);
+        }
+    }
+
+    /**
+     * Record the current file size of every listed sticker that exists.
+     */
+    private static void fillSizes(File packDirectory, StickerPack pack) {
+        for (Sticker sticker : pack.getStickers()) {
+            File stickerFile = new File(packDirectory, sticker.imageFileName);
+            sticker.setSize(stickerFile.length());
+        }
+    }
+
+    /**
+     * Deep copy of a pack, so cached packs are never shared with callers.
+     */
+    private static StickerPack copyOf(StickerPack pack, String imageDataVersion) {
+        StickerPack copy = new StickerPack(pack.identifier, pack.name, pack.publisher, pack.trayImageFile,
+                pack.publisherEmail, pack.publisherWebsite, pack.privacyPolicyWebsite,
+                pack.licenseAgreementWebsite, imageDataVersion, pack.avoidCache, pack.animatedStickerPack);
+        copy.setAndroidPlayStoreLink(pack.androidPlayStoreLink);
+        copy.setIosAppStoreLink(pack.iosAppStoreLink);
+
+        List<Sticker> stickers = new ArrayList<>();
+        if (pack.getStickers() != null) {
+            for (Sticker sticker : pack.getStickers()) {
+                Sticker stickerCopy = new Sticker(sticker.imageFileName,
+                        new ArrayList<>(sticker.emojis), sticker.accessibilityText);
+                stickerCopy.setSize(sticker.getSize());
+                stickers.add(stickerCopy);
+            }
+        }
+        copy.setStickers(stickers);
+        return copy;
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.samplestickertestingapp.utils;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.samplestickertestingapp.BuildConfig;
+import com.example.samplestickertestingapp.models.CustomSticker;
+import com.example.samplestickertestingapp.models.Sticker;
+import com.example.samplestickertestingapp.models.StickerPack;
+import com.example.samplestickertestingapp.providers.StickerContentProvider;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Write-behind queue for stickers added to packs.
+ * Additions to the same pack that arrive within a short window are applied together: the
+ * pack info is written once, the tray icon regenerated once and a single change notification
+ * sent, however many stickers were added. Callbacks run on the main thread after the write.
+ */
+public class PackWriteBehind {
+    private static final String TAG = "PackWriteBehind";
+
+    // Quiet period after the last addition before a pack is written
+    private static final long BATCH_WINDOW_MS = 300;
+
+    // Longest a batch may wait while additions keep arriving
+    private static final long MAX_BATCH_DELAY_MS = 2000;
+
+    private static PackWriteBehind instance;
+
+    /**
+     * Additions to one pack waiting to be written.
+     */
+    private final class Batch implements Runnable {
+        final String packId;
+        final long firstQueued = SystemClock.uptimeMillis();
+        final List<CustomSticker> stickers = new ArrayList<>();
+        // Held strongly until the flush so anonymous callbacks are not collected
+        final List<StickerPackManager.AddStickerCallback> callbacks = new ArrayList<>();
+
+        Batch(String packId) {
+            this.packId = packId;
+        }
+
+        @Override
+        public void run() {
+            flush(this);
+        }
+    }
+
+    private final Context context;
+    private final Handler handler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Batches by pack identifier, guarded by this
+    private final Map<String, Batch> pending = new HashMap<>();
+
+    private PackWriteBehind(Context context) {
+        this.context = context;
+
+        HandlerThread thread = new HandlerThread("PackWriteBehind");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * Get the process-wide queue.
+     *
+     * @param context Any context
+     * @return The queue
+     */
+    public static synchronized PackWriteBehind getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+            instance = new PackWriteBehind(appContext);
+        }
+        return instance;
+    }
+
+    /**
+     * Queue a custom sticker to be added at the beginning of a pack.
+     *
+     * @param packId Identifier of the pack
+     * @param customSticker The custom sticker to add
+     * @param callback Called on the main thread once the pack was written, may be null
+     */
+    public synchronized void addSticker(String packId, CustomSticker customSticker,
+                                        StickerPackManager.AddStickerCallback callback) {
+        Batch batch = pending.get(packId);
+        if (batch == null) {
+            batch = new Batch(packId);
+            pending.put(packId, batch);
+        }
+        batch.stickers.add(customSticker);
+        if (callback != null) {
+            batch.callbacks.add(callback);
+        }
+
+        // Restart the window, but never wait longer than the maximum delay in total
+        long deadline = batch.firstQueued + MAX_BATCH_DELAY_MS;
+        long delay = Math.min(BATCH_WINDOW_MS, Math.max(0, deadline - SystemClock.uptimeMillis()));
+        handler.removeCallbacks(batch);
+        handler.postDelayed(batch, delay);
+    }
+
+    private void flush(Batch batch) {
+        synchronized (this) {
+            // Later additions go to a new batch from here on
+            if (pending.get(batch.packId) == batch) {
+                pending.remove(batch.packId);
+            }
+        }
+
+        long start = SystemClock.elapsedRealtime();
+        final boolean success = applyBatch(batch);
+        Log.d(TAG, "Wrote " + batch.stickers.size() + " stickers to pack " + batch.packId +
+                " in " + (SystemClock.elapsedRealtime() - start) + " ms, success: " + success);
+
+        if (success) {
+            notifyContentProviderChange(batch.packId);
+        }
+
+        final List<StickerPackManager.AddStickerCallback> callbacks = batch.callbacks;
+        mainHandler.post(() -> {
+            for (StickerPackManager.AddStickerCallback callback : callbacks) {
+                callback.onStickerAdded(success);
+            }
+        });
+    }
+
+    /**
+     * Link the batch's sticker files into the pack and write the pack once.
+     */
+    private boolean applyBatch(Batch batch) {
+        try {
+            String packId = batch.packId;
+
+            // 1. Get the sticker pack
+            StickerPack targetPack = readPack(packId);
+            if (targetPack == null) {
+                Log.e(TAG, "Target pack not found: " + packId);
+                return false;
+            }
+
+            File targetDir = new File(context.getFilesDir(), packId);
+            if (!targetDir.exists() && !targetDir.mkdirs()) {
+                Log.e(TAG, "Failed to create directory: " + targetDir.getAbsolutePath());
+                return false;
+            }
+
+            // 2. Link every sticker file into the pack, newest first, so each lands at the beginning
+            File customStickersDir = FileUtils.getCustomStickersDirectory(context);
+            List<Sticker> newStickers = new ArrayList<>();
+            long timestamp = System.currentTimeMillis();
+            for (int i = batch.stickers.size() - 1; i >= 0; i--) {
+                CustomSticker customSticker = batch.stickers.get(i);
+                String newStickerFileName = "sticker_" + timestamp + "_" + i + ".webp";
+                File sourceFile = new File(customStickersDir, customSticker.getImageFileName());
+                File targetFile = new File(targetDir, newStickerFileName);
+                if (sourceFile.exists()) {
+                    StickerBlobStore.linkInto(context, sourceFile, targetFile);
+                }
+
+                Sticker newSticker = new Sticker(
+                        newStickerFileName,
+                        customSticker.getEmojis(),
+                        customSticker.getAccessibilityText()
+                );
+                newSticker.setSize(targetFile.length());
+                newStickers.add(newSticker);
+            }
+            newStickers.addAll(targetPack.getStickers());
+            targetPack.setStickers(newStickers);
+
+            // 3. Write the pack's info once
+            if (!PackRepository.writePack(targetDir, targetPack)) {
+                Log.e(TAG, "Failed to write pack info for: " + packId);
+                return false;
+            }
+
+            // 4. Make the newest sticker the tray icon
+            CustomSticker newest = batch.stickers.get(batch.stickers.size() - 1);
+            updateTrayIcon(targetDir, targetPack, new File(customStickersDir, newest.getImageFileName()));
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error adding stickers to pack: " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Read a pack from its directory, keeping only stickers whose file exists, or from the
+     * loader if the directory has no pack info.
+     */
+    private StickerPack readPack(String packId) {
+        File packDirectory = new File(context.getFilesDir(), packId);
+        StickerPack pack = PackRepository.readPack(packDirectory);
+        if (pack != null) {
+            List<Sticker> stickers = new ArrayList<>();
+            for (Sticker sticker : pack.getStickers()) {
+                if (new File(packDirectory, sticker.imageFileName).exists()) {
+                    stickers.add(sticker);
+                }
+            }
+            pack.setStickers(stickers);
+            return pack;
+        }
+
+        try {
+            for (StickerPack loadedPack : StickerPackLoader.getStickerPacks(context)) {
+                if (loadedPack.identifier.equals(packId)) {
+                    return loadedPack;
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading sticker packs: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Update the tray icon to use the user's custom sticker
+     */
+    private static void updateTrayIcon(File packDirectory, StickerPack pack, File customStickerFile) {
+        try {
+            File trayIconFile = new File(packDirectory, pack.trayImageFile);
+
+            // Create a 96x96 version of the custom sticker for the tray icon
+            Bitmap originalBitmap = BitmapFactory.decodeFile(customStickerFile.getAbsolutePath());
+            if (originalBitmap != null) {
+                // Scale the bitmap to 96x96 (WhatsApp tray icon size), averaging to avoid aliasing
+                Bitmap scaledBitmap = ImageUtils.downscaleBitmap(originalBitmap, 96, 96);
+                originalBitmap.recycle();
+
+                // Save the scaled bitmap as the tray icon
+                WebPEncoder.encodeToFile(scaledBitmap, trayIconFile, WebPEncoder.TRAY_MAX_BYTES);
+                BitmapPool.release(scaledBitmap);
+
+                Log.d(TAG, "Updated tray icon for pack: " + pack.identifier);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error updating tray icon: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Notify the ContentProvider that data has changed.
+     * This is critical for WhatsApp to detect the changes.
+     */
+    private void notifyContentProviderChange(String packId) {
+        try {
+            // Get the authority of our content provider
+            String authority = BuildConfig.CONTENT_PROVIDER_AUTHORITY;
+            ContentResolver resolver = context.getContentResolver();
+
+            // Notify changes to all relevant URIs
+            Uri packUri = Uri.parse("content://" + authority + "/" +
+                    StickerContentProvider.METADATA + "/" + packId);
+            Uri stickersUri = Uri.parse("content://" + authority + "/" +
+                    StickerContentProvider.STICKERS + "/" + packId);
+
+            // Notify the content provider about the changes
+            resolver.notifyChange(packUri, null);
+            resolver.notifyChange(stickersUri, null);
+
+            // Also notify the main metadata URI
+            Uri metadataUri = Uri.parse("content://" + authority + "/" +
+                    StickerContentProvider.METADATA);
+            resolver.notifyChange(metadataUri, null);
+
+            Log.d(TAG, "Successfully notified ContentProvider about changes to pack: " + packId);
+        } catch (Exception e) {
+            Log.e(TAG, "Error notifying ContentProvider about changes", e);
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.samplestickertestingapp.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Resizes ARGB pixel arrays with an area-average (box) or Lanczos-3 filter.
+ * Colours are weighted by their alpha, so transparent pixels do not darken or tint the edges
+ * of a sticker. The image is resized horizontally, then vertically, and the rows of each pass
+ * are split across a fork-join pool. Large reductions can first be averaged by a whole factor
+ * while the source is read a band of rows at a time, so the full source never has to be
+ * copied into one array.
+ *
+ * Pixels are in the non-premultiplied ARGB format of {@code Bitmap.getPixels()}. The class
+ * does not depend on Android, so it can be tested on the JVM.
+ */
+public final class Resampler {
+    // Averages every source pixel under the destination pixel, best for large reductions
+    public static final int FILTER_BOX = 0;
+
+    // Sharper windowed sinc, best for reductions of up to about 3x and for enlarging
+    public static final int FILTER_LANCZOS3 = 1;
+
+    private static final int LANCZOS_LOBES = 3;
+
+    // Rows below which a pass is not split further
+    private static final int MIN_ROWS_PER_TASK = 16;
+
+    // Pixels below which an image is resized on the calling thread
+    private static final int MIN_PARALLEL_PIXELS = 64 * 1024;
+
+    // ForkJoinPool.commonPool() needs API 24
+    private static final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Supplies source pixels a band of rows at a time.
+     */
+    public interface RowSource {
+        /**
+         * Copy rows of the source into pixels, row by row, starting at index 0.
+         */
+        void readRows(int[] pixels, int top, int rows);
+    }
+
+    /**
+     * Source pixels and their weights for each destination pixel along one axis.
+     */
+    static final class Contributions {
+        final int[] first;
+        final int[] count;
+        final float[] weights;
+        final int stride;
+
+        Contributions(int[] first, int[] count, float[] weights, int stride) {
+            this.first = first;
+            this.count = count;
+            this.weights = weights;
+            this.stride = stride;
+        }
+    }
+
+    private Resampler() {
+    }
+
+    /**
+     * Resize an image.
+     *
+     * @param pixels Source pixels, row by row
+     * @param width Source width
+     * @param height Source height
+     * @param newWidth Destination width
+     * @param newHeight Destination height
+     * @param filter {@link #FILTER_BOX} or {@link #FILTER_LANCZOS3}
+     * @return Destination pixels, row by row
+     */
+    public static int[] resample(int[] pixels, int width, int height, int newWidth, int newHeight, int filter) {
+        if (width <= 0 || height <= 0 || newWidth <= 0 || newHeight <= 0) {
+            throw new IllegalArgumentException("Invalid size " + width + "x" + height + " to " + newWidth + "x" + newHeight);
+        }
+        if (pixels.length < width * height) {
+            throw new IllegalArgumentException("Expected " + width * height + " pixels, got " + pixels.length);
+        }
+
+        Contributions horizontal = computeContributions(width, newWidth, filter);
+        Contributions vertical = computeContributions(height, newHeight, filter);
+
+        // Horizontal pass into premultiplied rows of the new width
+        int[] intermediate = new int[newWidth * height];
+        run(new Pass(pixels, width, intermediate, newWidth, horizontal, true, 0, height),
+                newWidth * height);
+
+        // Vertical pass back to straight alpha
+        int[] result = new int[newWidth * newHeight];
+        run(new Pass(intermediate, newWidth, result, newWidth, vertical, false, 0, newHeight),
+                newWidth * newHeight);
+        return result;
+    }
+
+    /**
+     * Average blocks of factor by factor pixels, weighting colours by alpha. Only one band of
+     * factor rows of the source is held at a time. Blocks at the right and bottom edges may be
+     * smaller and are averaged over the pixels they have.
+     *
+     * @param source Source rows
+     * @param width Source width
+     * @param height Source height
+     * @param factor Reduction factor, at least 1
+     * @return Pixels of size ceil(width / factor) by ceil(height / factor), row by row
+     */
+    public static int[] boxReduce(RowSource source, int width, int height, int factor) {
+        if (width <= 0 || height <= 0 || factor < 1) {
+            throw new IllegalArgumentException("Invalid size " + width + "x" + height + " by " + factor);
+        }
+        int reducedWidth = (width + factor - 1) / factor;
+        int reducedHeight = (height + factor - 1) / factor;
+        int[] result = new int[reducedWidth * reducedHeight];
+        int[] band = new int[width * factor];
+        // Premultiplied sums and pixel counts of the blocks of one band
+        float[] sums = new float[reducedWidth * 4];
+
+        for (int reducedY = 0; reducedY < reducedHeight; reducedY++) {
+            int top = reducedY * factor;
+            int rows = Math.min(factor, height - top);
+            source.readRows(band, top, rows);
+            Arrays.fill(sums, 0);
+
+            for (int y = 0; y < rows; y++) {
+                int row = y * width;
+                for (int x = 0; x < width; x++) {
+                    int pixel = band[row + x];
+                    int sum = (x / factor) * 4;
+                    float alpha = pixel >>> 24;
+                    sums[sum] += alpha;
+                    sums[sum + 1] += ((pixel >> 16) & 0xFF) * alpha;
+                    sums[sum + 2] += ((pixel >> 8) & 0xFF) * alpha;
+                    sums[sum + 3] += (pixel & 0xFF) * alpha;
+                }
+            }
+
+            int offset = reducedY * reducedWidth;
+            for (int x = 0; x < reducedWidth; x++) {
+                int sum = x * 4;
+                int count = rows * (Math.min(width, (x + 1) * factor) - x * factor);
+                float a = sums[sum];
+                result[offset + x] = a == 0 ? 0
+                        : unpremultiply(a / count, sums[sum + 1] / (count * 255f),
+                                sums[sum + 2] / (count * 255f), sums[sum + 3] / (count * 255f));
+            }
+        }
+        return result;
+    }
+
+    private static void run(Pass pass, int pixelCount) {
+        if (pixelCount < MIN_PARALLEL_PIXELS) {
+            pass.compute();
+        } else {
+            pool.invoke(pass);
+        }
+    }
+
+    /**
+     * Work out which source pixels contribute to each destination pixel and by how much.
+     */
+    static Contributions computeContributions(int sourceSize, int destinationSize, int filter) {
+        double scale = (double) sourceSize / destinationSize;
+        // When reducing, the kernel is stretched so that it covers every source pixel
+        double kernelScale = Math.max(scale, 1.0);
+        double support = (filter == FILTER_LANCZOS3 ? LANCZOS_LOBES : 0.5) * kernelScale;
+        int stride = (int) Math.ceil(support * 2) + 2;
+
+        int[] first = new int[destinationSize];
+        int[] count = new int[destinationSize];
+        float[] weights = new float[destinationSize * stride];
+
+        for (int i = 0; i < destinationSize; i++) {
+            double center = (i + 0.5) * scale;
+            int start = Math.max(0, (int) Math.floor(center - support));
+            int end = Math.min(sourceSize, (int) Math.ceil(center + support));
+
+            double total = 0;
+            int n = 0;
+            for (int j = start; j < end && n < stride; j++) {
+                double weight;
+                if (filter == FILTER_LANCZOS3) {
+                    weight = lanczos((j + 0.5 - center) / kernelScale);
+                } else {
+                    // Overlap of the source pixel with the destination pixel's footprint
+                    weight = Math.min(j + 1, center + support) - Math.max(j, center - support);
+                }
+                if (n == 0 && weight == 0) {
+                    start++;
+                    continue;
+                }
+                weights[i * stride + n] = (float) weight;
+                total += weight;
+                n++;
+            }
+
+            // Normalise, which also makes up for pixels cut off at the image border
+            if (total != 0) {
+                for (int k = 0; k < n; k++) {
+                    weights[i * stride + k] /= (float) total;
+                }
+            }
+            first[i] = start;
+            count[i] = n;
+        }
+        return new Contributions(first, count, weights, stride);
+    }
+
+    private static double lanczos(double x) {
+        if (x == 0) {
+            return 1;
+        }
+        if (x <= -LANCZOS_LOBES || x >= LANCZOS_LOBES) {
+            return 0;
+        }
+        double pix = Math.PI * x;
+        return LANCZOS_LOBES * Math.sin(pix) * Math.sin(pix / LANCZOS_LOBES) / (pix * pix);
+    }
+
+    /**
+     * One direction of the resize over a range of rows.
+     * The horizontal pass reads straight alpha and writes premultiplied pixels, the vertical
+     * pass reads premultiplied pixels and writes straight alpha.
+     */
+    private static final class Pass extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] source;
+        private final int sourceWidth;
+        private final int[] destination;
+        private final int destinationWidth;
+        private final Contributions contributions;
+        private final boolean horizontal;
+        private final int fromRow;
+        private final int toRow;
+
+        Pass(int[] source, int sourceWidth, int[] destination, int destinationWidth,
+             Contributions contributions, boolean horizontal, int fromRow, int toRow) {
+            this.source = source;
+            this.sourceWidth = sourceWidth;
+            this.destination = destination;
+            this.destinationWidth = destinationWidth;
+            this.contributions = contributions;
+            this.horizontal = horizontal;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow > MIN_ROWS_PER_TASK * 2) {
+                int middle = (fromRow + toRow) >>> 1;
+                invokeAll(new Pass(source, sourceWidth, destination, destinationWidth, contributions, horizontal, fromRow, middle),
+                        new Pass(source, sourceWidth, destination, destinationWidth, contributions, horizontal, middle, toRow));
+                return;
+            }
+
+            for (int row = fromRow; row < toRow; row++) {
+                if (horizontal) {
+                    resizeRow(row);
+                } else {
+                    resizeColumnsIntoRow(row);
+                }
+            }
+        }
+
+        private void resizeRow(int row) {
+            int sourceOffset = row * sourceWidth;
+            int destinationOffset = row * destinationWidth;
+            for (int x = 0; x < destinationWidth; x++) {
+                int first = contributions.first[x];
+                int count = contributions.count[x];
+                int weightOffset = x * contributions.stride;
+
+                float a = 0, r = 0, g = 0, b = 0;
+                for (int k = 0; k < count; k++) {
+                    int pixel = source[sourceOffset + first + k];
+                    float weight = contributions.weights[weightOffset + k];
+                    float alpha = (pixel >>> 24) * weight;
+                    a += alpha;
+                    r += ((pixel >> 16) & 0xFF) * alpha;
+                    g += ((pixel >> 8) & 0xFF) * alpha;
+                    b += (pixel & 0xFF) * alpha;
+                }
+                destination[destinationOffset + x] = packPremultiplied(a, r / 255f, g / 255f, b / 255f);
+            }
+        }
+
+        private void resizeColumnsIntoRow(int row) {
+            int first = contributions.first[row];
+            int count = contributions.count[row];
+            int weightOffset = row * contributions.stride;
+            int destinationOffset = row * destinationWidth;
+
+            for (int x = 0; x < destinationWidth; x++) {
+                float a = 0, r = 0, g = 0, b = 0;
+                int sourceIndex = first * sourceWidth + x;
+                for (int k = 0; k < count; k++) {
+                    int pixel = source[sourceIndex];
+                    float weight = contributions.weights[weightOffset + k];
+                    a += (pixel >>> 24) * weight;
+                    r += ((pixel >> 16) & 0xFF) * weight;
+                    g += ((pixel >> 8) & 0xFF) * weight;
+                    b += (pixel & 0xFF) * weight;
+                    sourceIndex += sourceWidth;
+                }
+                destination[destinationOffset + x] = unpremultiply(a, r, g, b);
+            }
+        }
+    }
+
+    /**
+     * Pack premultiplied channels, keeping every colour channel at most alpha.
+     */
+    private static int packPremultiplied(float a, float r, float g, float b) {
+        int alpha = clamp(a, 255);
+        return (alpha << 24) | (clamp(r, alpha) << 16) | (clamp(g, alpha) << 8) | clamp(b, alpha);
+    }
+
+    private static int unpremultiply(float a, float r, float g, float b) {
+        int alpha = clamp(a, 255);
+        if (alpha == 0) {
+            return 0;
+        }
+        float factor = 255f / alpha;
+        return (alpha << 24) | (clamp(r * factor, 255) << 16) | (clamp(g * factor, 255) << 8) | clamp(b * factor, 255);
+    }
+
+    private static int clamp(float value, int max) {
+        int rounded = Math.round(value);
+        return rounded < 0 ? 0 : Math.min(rounded, max);
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.samplestickertestingapp.utils;
+
+import android.content.Context;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.StructStat;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Content-addressed store for sticker images, in files/blobs.
+ * Every distinct image is kept once, named by the SHA-256 of its bytes, and the custom sticker
+ * library and the packs reference it through hard links. Stickers therefore keep their usual
+ * paths, and the provider and loaders open them as before, while the bytes exist only once on
+ * disk however many packs use them.
+ *
+ * The link count of a blob is its reference count: a blob whose only link is the store's own
+ * is garbage. Sticker files should be deleted through {@link #delete(Context, File)}, which
+ * drops their own blob once it is unreferenced; {@link #collectGarbage(Context)} sweeps the
+ * whole store at startup for blobs orphaned any other way. Linked files share their contents,
+ * so sticker files must be replaced, never rewritten in place. Where hard links are not
+ * possible the target gets a plain copy that is not tracked by the store, so every blob is
+ * always reachable through its link count.
+ */
+public final class StickerBlobStore {
+    private static final String TAG = "StickerBlobStore";
+
+    private static final String BLOB_DIR = "blobs";
+    private static final String BLOB_EXTENSION = ".webp";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private StickerBlobStore() {
+    }
+
+    /**
+     * Get the directory holding the blobs.
+     *
+     * @param context Application context
+     * @return The blob directory, created if needed
+     */
+    public static File getBlobDirectory(Context context) {
+        File directory = new File(context.getFilesDir(), BLOB_DIR);
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.e(TAG, "Failed to create blob directory");
+        }
+        return directory;
+    }
+
+    /**
+     * Make target reference the same image as source. The image is added to the store if it
+     * is not there yet; an existing target is replaced.
+     *
+     * @param context Application context
+     * @param source Sticker file to reference
+     * @param target New sticker file, for example in a pack directory
+     * @throws IOException if the target could not be created
+     */
+    public static void linkInto(Context context, File source, File target) throws IOException {
+        File blob = new File(getBlobDirectory(context), sha256(source) + BLOB_EXTENSION);
+
+        synchronized (StickerBlobStore.class) {
+            if (target.exists() && !deleteLocked(context, target)) {
+                throw new IOException("Failed to replace " + target.getPath());
+            }
+            if (!blob.exists() && !link(source, blob)) {
+                // The first reference donates its inode to the store; without links there is
+                // nothing to share, and a copied blob would look unreferenced
+                copyFile(source, target);
+                return;
+            }
+            if (!link(blob, target)) {
+                copyFile(blob, target);
+                return;
+            }
+        }
+        Log.d(TAG, "Linked " + target.getName() + " to blob " + blob.getName() +
+                ", references: " + getReferenceCount(blob));
+    }
+
+    /**
+     * Delete a sticker file, and its blob if no other sticker file references it.
+     * Only that one blob is looked at, so this does not depend on the size of the store.
+     *
+     * @param context Application context
+     * @param file Sticker file
+     * @return true if the file no longer exists
+     */
+    public static synchronized boolean delete(Context context, File file) {
+        return deleteLocked(context, file);
+    }
+
+    /**
+     * Get how many sticker files reference a blob.
+     *
+     * @param blob Blob file
+     * @return Number of references, or -1 if unknown
+     */
+    public static long getReferenceCount(File blob) {
+        try {
+            return Os.stat(blob.getAbsolutePath()).st_nlink - 1;
+        } catch (ErrnoException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Delete a file and, if it was linked to a blob that is now unreferenced, the blob.
+     */
+    private static boolean deleteLocked(Context context, File file) {
+        File blob = findBlob(context, file);
+        if (!file.delete() && file.exists()) {
+            return false;
+        }
+        if (blob != null && getReferenceCount(blob) == 0) {
+            long size = blob.length();
+            if (blob.delete()) {
+                Log.d(TAG, "Deleted unreferenced blob " + blob.getName() + ", freed " + size + " bytes");
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find the blob a sticker file is a link to.
+     *
+     * @return The blob, or null if the file is not linked into the store
+     */
+    private static File findBlob(Context context, File file) {
+        try {
+            StructStat fileStat = Os.stat(file.getAbsolutePath());
+            if (fileStat.st_nlink < 2) {
+                return null;
+            }
+            File blob = new File(getBlobDirectory(context), sha256(file) + BLOB_EXTENSION);
+            StructStat blobStat = Os.stat(blob.getAbsolutePath());
+            if (blobStat.st_dev == fileStat.st_dev && blobStat.st_ino == fileStat.st_ino) {
+                return blob;
+            }
+        } catch (ErrnoException | IOException e) {
+            // Not linked, or gone already
+        }
+        return null;
+    }
+
+    /**
+     * Delete blobs that no sticker references any more, by looking at every blob. Blobs are
+     * orphaned when a sticker file is replaced rather than deleted, so this runs once at startup.
+     *
+     * @param context Application context
+     * @return Number of blobs deleted
+     */
+    public static synchronized int collectGarbage(Context context) {
+        File[] blobs = getBlobDirectory(context).listFiles();
+        if (blobs == null) {
+            return 0;
+        }
+
+        int deleted = 0;
+        long freed = 0;
+        for (File blob : blobs) {
+            if (getReferenceCount(blob) == 0) {
+                long size = blob.length();
+                if (blob.delete()) {
+                    deleted++;
+                    freed += size;
+                }
+            }
+        }
+        if (deleted > 0) {
+            Log.d(TAG, "Deleted " + deleted + " unreferenced blobs, freed " + freed + " bytes");
+        }
+        return deleted;
+    }
+
+    /**
+     * Create a hard link.
+     *
+     * @return false if the file system refuses the link
+     */
+    private static boolean link(File existing, File newFile) {
+        try {
+            Os.link(existing.getAbsolutePath(), newFile.getAbsolutePath());
+            return true;
+        } catch (ErrnoException e) {
+            Log.w(TAG, "Hard link failed, copying " + existing.getName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Copy a file through a temporary file, so a partial copy is never visible.
+     */
+    private static void copyFile(File sourceFile, File destFile) throws IOException {
+        File tempFile = new File(destFile.getPath() + ".tmp");
+        try (FileChannel source = new FileInputStream(sourceFile).getChannel();
+             FileChannel destination = new FileOutputStream(tempFile).getChannel()) {
+            destination.transferFrom(source, 0, source.size());
+        }
+        if (!tempFile.renameTo(destFile)) {
+            tempFile.delete();
+            throw new IOException("Failed to create " + destFile.getPath());
+        }
+    }
+
+    private static String sha256(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 not available", e);
+        }
+
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        byte[] hash = digest.digest();
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX_DIGITS[hash[i] & 0xF];
+        }
+        return new String(hex);
+    }
+}
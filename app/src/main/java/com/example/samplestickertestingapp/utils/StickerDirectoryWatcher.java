@@ -0,0 +1,269 @@
+package com.example.samplestickertestingapp.utils;
+
+import android.content.Context;
+import android.os.FileObserver;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Watches the sticker directories with {@link FileObserver} and reports which packs changed.
+ * The files directory, every pack directory in it and the custom stickers directory are
+ * observed. Listeners either get every event right away (for cache invalidation) or a
+ * coalesced batch once a burst of events has settled (for UI reloads).
+ * If the kernel event queue overflows, events were lost, so every directory is reported as
+ * changed and the set of watched directories is rebuilt from a fresh listing.
+ */
+public class StickerDirectoryWatcher {
+    private static final String TAG = "StickerDirectoryWatcher";
+
+    // Quiet period before a burst of events is reported to coalescing listeners
+    private static final long COALESCE_DELAY_MS = 250;
+
+    private static final int DIRECTORY_EVENTS = FileObserver.CREATE | FileObserver.DELETE |
+            FileObserver.MOVED_FROM | FileObserver.MOVED_TO;
+    private static final int PACK_EVENTS = DIRECTORY_EVENTS | FileObserver.CLOSE_WRITE |
+            FileObserver.DELETE_SELF | FileObserver.MOVE_SELF;
+
+    // IN_Q_OVERFLOW, which FileObserver does not name: the kernel dropped events
+    private static final int QUEUE_OVERFLOW = 0x4000;
+
+    private static StickerDirectoryWatcher instance;
+
+    /**
+     * Receives change notifications.
+     */
+    public interface Listener {
+        /**
+         * Called when sticker files changed.
+         *
+         * @param packIds Directory names of the packs that changed, may be empty
+         * @param customStickersChanged Whether the custom stickers directory changed
+         */
+        void onStickersChanged(Set<String> packIds, boolean customStickersChanged);
+    }
+
+    private final File filesDir;
+    private final String customStickersDirName;
+
+    private final List<Listener> immediateListeners = new CopyOnWriteArrayList<>();
+    private final List<Listener> coalescedListeners = new CopyOnWriteArrayList<>();
+
+    // Observers must stay referenced or they stop delivering events
+    private final Map<String, FileObserver> observers = new HashMap<>();
+    private FileObserver rootObserver;
+
+    private final Handler handler;
+
+    // Changes waiting to be reported to coalescing listeners, guarded by this
+    private Set<String> pendingPacks = new HashSet<>();
+    private boolean pendingCustomStickers;
+    private boolean flushScheduled;
+
+    private final Runnable flushRunnable = this::flush;
+
+    private StickerDirectoryWatcher(Context context) {
+        filesDir = context.getFilesDir();
+        File customDir = FileUtils.getCustomStickersDirectory(context);
+        customStickersDirName = customDir != null ? customDir.getName() : null;
+
+        HandlerThread thread = new HandlerThread("StickerDirectoryWatcher");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * Get the process-wide watcher, starting it on first use.
+     *
+     * @param context Any context
+     * @return The watcher
+     */
+    public static synchronized StickerDirectoryWatcher getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+            instance = new StickerDirectoryWatcher(appContext);
+            instance.start();
+        }
+        return instance;
+    }
+
+    /**
+     * Register a listener.
+     *
+     * @param listener Listener to add
+     * @param coalesce true to receive batched changes on the watcher thread after a quiet period,
+     *                 false to be called for every event on the observer thread
+     */
+    public void addListener(Listener listener, boolean coalesce) {
+        (coalesce ? coalescedListeners : immediateListeners).add(listener);
+    }
+
+    /**
+     * Unregister a listener added with {@link #addListener(Listener, boolean)}.
+     *
+     * @param listener Listener to remove
+     */
+    public void removeListener(Listener listener) {
+        immediateListeners.remove(listener);
+        coalescedListeners.remove(listener);
+    }
+
+    // FileObserver(File, int) needs API 29
+    @SuppressWarnings("deprecation")
+    private synchronized void start() {
+        rootObserver = new FileObserver(filesDir.getAbsolutePath(), DIRECTORY_EVENTS) {
+            @Override
+            public void onEvent(int event, String path) {
+                if ((event & QUEUE_OVERFLOW) != 0) {
+                    resync();
+                } else if (path != null) {
+                    onRootEvent(event & FileObserver.ALL_EVENTS, path);
+                }
+            }
+        };
+        rootObserver.startWatching();
+
+        File[] directories = filesDir.listFiles(File::isDirectory);
+        if (directories != null) {
+            for (File directory : directories) {
+                watchDirectory(directory.getName());
+            }
+        }
+        Log.d(TAG, "Watching " + observers.size() + " sticker directories");
+    }
+
+    /**
+     * A pack directory was created, deleted or moved in the files directory.
+     */
+    private void onRootEvent(int event, String name) {
+        if ((event & (FileObserver.CREATE | FileObserver.MOVED_TO)) != 0) {
+            // Start watching before reporting, so writes after the report are not missed
+            if (new File(filesDir, name).isDirectory()) {
+                watchDirectory(name);
+            }
+        } else if ((event & (FileObserver.DELETE | FileObserver.MOVED_FROM)) != 0) {
+            unwatchDirectory(name);
+        }
+        dispatch(name);
+    }
+
+    @SuppressWarnings("deprecation")
+    private synchronized void watchDirectory(final String name) {
+        if (observers.containsKey(name)) return;
+
+        FileObserver observer = new FileObserver(new File(filesDir, name).getAbsolutePath(), PACK_EVENTS) {
+            @Override
+            public void onEvent(int event, String path) {
+                if ((event & QUEUE_OVERFLOW) != 0) {
+                    resync();
+                } else {
+                    dispatch(name);
+                }
+            }
+        };
+        observer.startWatching();
+        observers.put(name, observer);
+    }
+
+    private synchronized void unwatchDirectory(String name) {
+        FileObserver observer = observers.remove(name);
+        if (observer != null) {
+            observer.stopWatching();
+        }
+    }
+
+    /**
+     * Recover from lost events: watch exactly the directories that exist now and report
+     * every directory, watched before or found now, as changed.
+     */
+    public void resync() {
+        Set<String> names;
+        synchronized (this) {
+            names = new HashSet<>(observers.keySet());
+            Set<String> current = new HashSet<>();
+            File[] directories = filesDir.listFiles(File::isDirectory);
+            if (directories != null) {
+                for (File directory : directories) {
+                    current.add(directory.getName());
+                }
+            }
+            for (String name : names) {
+                if (!current.contains(name)) {
+                    unwatchDirectory(name);
+                }
+            }
+            for (String name : current) {
+                watchDirectory(name);
+            }
+            names.addAll(current);
+        }
+        Log.w(TAG, "Sticker directory events were lost, reporting all " + names.size() + " directories");
+        dispatch(names);
+    }
+
+    /**
+     * Report a change in the given directory of the files directory.
+     */
+    private void dispatch(String name) {
+        dispatch(Collections.singleton(name));
+    }
+
+    /**
+     * Report a change in the given directories of the files directory.
+     */
+    private void dispatch(Set<String> names) {
+        boolean customStickers = customStickersDirName != null && names.contains(customStickersDirName);
+        Set<String> packIds = names;
+        if (customStickers) {
+            packIds = new HashSet<>(names);
+            packIds.remove(customStickersDirName);
+        }
+        packIds = Collections.unmodifiableSet(packIds);
+
+        for (Listener listener : immediateListeners) {
+            listener.onStickersChanged(packIds, customStickers);
+        }
+
+        if (coalescedListeners.isEmpty()) return;
+        synchronized (this) {
+            if (customStickers) {
+                pendingCustomStickers = true;
+            }
+            pendingPacks.addAll(packIds);
+            // Restart the quiet period on every event of a burst
+            handler.removeCallbacks(flushRunnable);
+            handler.postDelayed(flushRunnable, COALESCE_DELAY_MS);
+            flushScheduled = true;
+        }
+    }
+
+    private void flush() {
+        Set<String> packIds;
+        boolean customStickers;
+        synchronized (this) {
+            if (!flushScheduled) return;
+            packIds = Collections.unmodifiableSet(pendingPacks);
+            customStickers = pendingCustomStickers;
+            pendingPacks = new HashSet<>();
+            pendingCustomStickers = false;
+            flushScheduled = false;
+        }
+
+        for (Listener listener : coalescedListeners) {
+            try {
+                listener.onStickersChanged(packIds, customStickers);
+            } catch (Exception e) {
+                Log.e(TAG, "Error notifying sticker change listener", e);
+            }
+        }
+    }
+}
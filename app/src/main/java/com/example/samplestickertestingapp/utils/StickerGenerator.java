@@ -12,14 +12,7 @@ import android.util.Log;
 import com.example.samplestickertestingapp.models.Sticker;
 import com.example.samplestickertestingapp.models.StickerPack;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -75,7 +68,10 @@ public class StickerGenerator {
         // Create tray icon and save it
         String trayIconFileName = "tray_icon.webp";
         Bitmap trayIcon = createTrayIcon();
-        if (!saveBitmapAsWebP(trayIcon, new File(packDirectory, trayIconFileName))) {
+        boolean trayIconSaved = saveBitmapAsWebP(trayIcon, new File(packDirectory, trayIconFileName),
+                WebPEncoder.TRAY_MAX_BYTES);
+        BitmapPool.release(trayIcon);
+        if (!trayIconSaved) {
             Log.e(TAG, "Failed to save tray icon");
             return null;
         }
@@ -110,45 +106,10 @@ public class StickerGenerator {
      * This helps with loading the pack later.
      */
     private void savePackInfoToJson(File directory, StickerPack pack) {
-        try {
-            JSONObject packJson = new JSONObject();
-            packJson.put("identifier", pack.identifier);
-            packJson.put("name", pack.name);
-            packJson.put("publisher", pack.publisher);
-            packJson.put("tray_image_file", pack.trayImageFile);
-            packJson.put("image_data_version", pack.imageDataVersion);
-            packJson.put("avoid_cache", pack.avoidCache);
-            packJson.put("animated_sticker_pack", pack.animatedStickerPack);
-
-            // Add stickers
-            JSONArray stickersJson = new JSONArray();
-            for (Sticker sticker : pack.getStickers()) {
-                JSONObject stickerJson = new JSONObject();
-                stickerJson.put("image_file", sticker.imageFileName);
-
-                JSONArray emojisJson = new JSONArray();
-                for (String emoji : sticker.emojis) {
-                    emojisJson.put(emoji);
-                }
-                stickerJson.put("emojis", emojisJson);
-
-                if (sticker.accessibilityText != null) {
-                    stickerJson.put("accessibility_text", sticker.accessibilityText);
-                }
-
-                stickersJson.put(stickerJson);
-            }
-            packJson.put("stickers", stickersJson);
-
-            // Write to file
-            File infoFile = new File(directory, "pack_info.json");
-            try (FileWriter writer = new FileWriter(infoFile)) {
-                writer.write(packJson.toString(2));
-            }
-
-            Log.d(TAG, "Saved pack info to " + infoFile.getAbsolutePath());
-        } catch (JSONException | IOException e) {
-            Log.e(TAG, "Error saving pack info JSON", e);
+        if (PackRepository.writePack(directory, pack)) {
+            Log.d(TAG, "Saved pack info to " + new File(directory, PackRepository.PACK_INFO_FILE_NAME).getAbsolutePath());
+        } else {
+            Log.e(TAG, "Error saving pack info JSON for: " + pack.identifier);
         }
     }
 
@@ -174,7 +135,7 @@ public class StickerGenerator {
 
             // Save bitmap to file
             File outputFile = new File(directory, filename);
-            if (saveBitmapAsWebP(stickerBitmap, outputFile)) {
+            if (saveBitmapAsWebP(stickerBitmap, outputFile, WebPEncoder.STICKER_MAX_BYTES)) {
                 // Create sticker object with appropriate emojis
                 Sticker sticker = new Sticker(
                         filename,
@@ -187,8 +148,8 @@ public class StickerGenerator {
                 Log.e(TAG, "Failed to save sticker: " + filename);
             }
 
-            // Recycle bitmap to free memory
-            stickerBitmap.recycle();
+            // Return the canvas for the next sticker
+            BitmapPool.release(stickerBitmap);
         }
 
         return stickers;
@@ -200,7 +161,7 @@ public class StickerGenerator {
      * @return Bitmap of the tray icon
      */
     private Bitmap createTrayIcon() {
-        Bitmap bitmap = Bitmap.createBitmap(TRAY_ICON_SIZE, TRAY_ICON_SIZE, Bitmap.Config.ARGB_8888);
+        Bitmap bitmap = BitmapPool.obtain(TRAY_ICON_SIZE, TRAY_ICON_SIZE);
         Canvas canvas = new Canvas(bitmap);
 
         // Transparent background
@@ -240,7 +201,7 @@ public class StickerGenerator {
      * @return Bitmap of the sticker
      */
     private Bitmap createColorSticker(int shapeType) {
-        Bitmap bitmap = Bitmap.createBitmap(STICKER_SIZE, STICKER_SIZE, Bitmap.Config.ARGB_8888);
+        Bitmap bitmap = BitmapPool.obtain(STICKER_SIZE, STICKER_SIZE);
         Canvas canvas = new Canvas(bitmap);
 
         // Transparent background
@@ -448,20 +409,14 @@ public class StickerGenerator {
     }
 
     /**
-     * Saves a bitmap as a WebP file.
+     * Saves a bitmap as a WebP file within a size limit.
      *
      * @param bitmap Bitmap to save
      * @param outputFile File to save to
+     * @param maxBytes Maximum file size
      * @return true if saved successfully, false otherwise
      */
-    private boolean saveBitmapAsWebP(Bitmap bitmap, File outputFile) {
-        try (FileOutputStream out = new FileOutputStream(outputFile)) {
-            // Use lossless compression for best quality
-            bitmap.compress(Bitmap.CompressFormat.WEBP, 100, out);
-            return true;
-        } catch (IOException e) {
-            Log.e(TAG, "Error saving WebP file: " + outputFile.getName(), e);
-            return false;
-        }
+    private boolean saveBitmapAsWebP(Bitmap bitmap, File outputFile, int maxBytes) {
+        return WebPEncoder.encodeToFile(bitmap, outputFile, maxBytes) != null;
     }
 }
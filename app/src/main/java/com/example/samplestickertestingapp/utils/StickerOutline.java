@@ -0,0 +1,220 @@
+package com.example.samplestickertestingapp.utils;
+
+import android.graphics.Bitmap;
+
+/**
+ * Adds the outline ("white border") and optional drop shadow that make stickers readable on
+ * any chat background.
+ * The distance of every pixel to the nearest opaque pixel is found with a two-pass Euclidean
+ * distance transform (Felzenszwalb and Huttenlocher), so the border costs the same for any
+ * width, unlike repeated dilation. The border edge is anti-aliased from the exact distance.
+ */
+public final class StickerOutline {
+    // Border width used for stickers on the 512 px canvas
+    public static final int DEFAULT_WIDTH = 10;
+
+    public static final int DEFAULT_COLOR = 0xFFFFFFFF;
+
+    // Pixels with at least this alpha count as part of the sticker
+    private static final int INSIDE_ALPHA = 128;
+
+    // Opacity of the drop shadow where it is darkest
+    private static final float SHADOW_OPACITY = 0.35f;
+
+    // Distance used for pixels with no opaque pixel, squared values stay finite
+    private static final float FAR = 1e20f;
+
+    private StickerOutline() {
+    }
+
+    /**
+     * Get how much empty space an outline needs around the content so it is not cut off.
+     *
+     * @param borderWidth Border width in pixels
+     * @param shadow Whether a drop shadow is drawn
+     * @return Margin in pixels
+     */
+    public static int getMargin(int borderWidth, boolean shadow) {
+        if (!shadow) {
+            return borderWidth + 1;
+        }
+        return borderWidth + shadowOffset(borderWidth) + shadowBlur(borderWidth) + 1;
+    }
+
+    /**
+     * Add an outline to a bitmap, in place.
+     *
+     * @param bitmap Mutable bitmap with transparent space around its content
+     * @param borderWidth Border width in pixels
+     * @param color Border colour
+     * @param shadow Whether to add a drop shadow below and right of the border
+     */
+    public static void apply(Bitmap bitmap, int borderWidth, int color, boolean shadow) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] pixels = new int[width * height];
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+        addOutline(pixels, width, height, borderWidth, color, shadow);
+        bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+    }
+
+    /**
+     * Add an outline to a pixel buffer, in place.
+     *
+     * @param pixels Pixels, row by row, in non-premultiplied ARGB
+     * @param width Image width
+     * @param height Image height
+     * @param borderWidth Border width in pixels
+     * @param color Border colour
+     * @param shadow Whether to add a drop shadow below and right of the border
+     */
+    public static void addOutline(int[] pixels, int width, int height, int borderWidth, int color, boolean shadow) {
+        float[] distances = new float[width * height];
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = (pixels[i] >>> 24) >= INSIDE_ALPHA ? 0 : FAR;
+        }
+        distanceTransform(distances, width, height);
+
+        float borderAlpha = (color >>> 24) / 255f;
+        float borderR = (color >> 16) & 0xFF;
+        float borderG = (color >> 8) & 0xFF;
+        float borderB = color & 0xFF;
+        int shadowOffset = shadowOffset(borderWidth);
+        float shadowBlur = shadowBlur(borderWidth);
+        // Squared distance beyond which neither the border nor the shadow reaches
+        float reachSquared = (borderWidth + shadowBlur + 1) * (borderWidth + shadowBlur + 1);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int index = y * width + x;
+                int pixel = pixels[index];
+                int sourceAlpha = pixel >>> 24;
+                if (sourceAlpha == 255) {
+                    continue;
+                }
+
+                // Shadow at the bottom, black, so only its alpha is needed
+                float a = 0;
+                if (shadow) {
+                    int shadowX = x - shadowOffset;
+                    int shadowY = y - shadowOffset;
+                    if (shadowX >= 0 && shadowY >= 0 && distances[shadowY * width + shadowX] < reachSquared) {
+                        float distance = (float) Math.sqrt(distances[shadowY * width + shadowX]);
+                        a = SHADOW_OPACITY * coverage((borderWidth + shadowBlur - distance) / shadowBlur);
+                    }
+                }
+                float r = 0, g = 0, b = 0;
+
+                // Border over the shadow, anti-aliased over its last pixel
+                float border = 0;
+                if (distances[index] < reachSquared) {
+                    float distance = (float) Math.sqrt(distances[index]);
+                    border = borderAlpha * coverage(borderWidth + 0.5f - distance);
+                }
+                if (border > 0) {
+                    r = borderR * border + r * (1 - border);
+                    g = borderG * border + g * (1 - border);
+                    b = borderB * border + b * (1 - border);
+                    a = border + a * (1 - border);
+                }
+
+                // The sticker itself on top
+                if (sourceAlpha > 0) {
+                    float source = sourceAlpha / 255f;
+                    r = ((pixel >> 16) & 0xFF) * source + r * (1 - source);
+                    g = ((pixel >> 8) & 0xFF) * source + g * (1 - source);
+                    b = (pixel & 0xFF) * source + b * (1 - source);
+                    a = source + a * (1 - source);
+                }
+
+                if (a <= 0) {
+                    pixels[index] = 0;
+                } else {
+                    pixels[index] = Math.round(a * 255) << 24
+                            | Math.min(255, Math.round(r / a)) << 16
+                            | Math.min(255, Math.round(g / a)) << 8
+                            | Math.min(255, Math.round(b / a));
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace each value with the squared Euclidean distance to the nearest zero, in place.
+     * Non-zero cells should hold {@link #FAR}.
+     */
+    static void distanceTransform(float[] grid, int width, int height) {
+        int size = Math.max(width, height);
+        float[] line = new float[size];
+        float[] result = new float[size];
+        int[] parabolas = new int[size];
+        float[] boundaries = new float[size + 1];
+
+        // Columns first, then rows of the column distances
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                line[y] = grid[y * width + x];
+            }
+            transformLine(line, height, result, parabolas, boundaries);
+            for (int y = 0; y < height; y++) {
+                grid[y * width + x] = result[y];
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            System.arraycopy(grid, row, line, 0, width);
+            transformLine(line, width, result, parabolas, boundaries);
+            System.arraycopy(result, 0, grid, row, width);
+        }
+    }
+
+    /**
+     * One-dimensional squared distance transform as the lower envelope of parabolas.
+     */
+    private static void transformLine(float[] f, int n, float[] d, int[] v, float[] z) {
+        int k = 0;
+        v[0] = 0;
+        z[0] = -Float.MAX_VALUE;
+        z[1] = Float.MAX_VALUE;
+        for (int q = 1; q < n; q++) {
+            // Drop the parabolas the new one hides; z[0] stops the loop at the first
+            float s = intersection(f, q, v[k]);
+            while (s <= z[k]) {
+                k--;
+                s = intersection(f, q, v[k]);
+            }
+            k++;
+            v[k] = q;
+            z[k] = s;
+            z[k + 1] = Float.MAX_VALUE;
+        }
+
+        k = 0;
+        for (int q = 0; q < n; q++) {
+            while (z[k + 1] < q) {
+                k++;
+            }
+            int dq = q - v[k];
+            d[q] = dq * dq + f[v[k]];
+        }
+    }
+
+    /**
+     * Position where the parabolas rooted at q and p cross.
+     */
+    private static float intersection(float[] f, int q, int p) {
+        return ((f[q] + q * q) - (f[p] + p * p)) / (2f * (q - p));
+    }
+
+    private static float coverage(float value) {
+        return value <= 0 ? 0 : Math.min(1, value);
+    }
+
+    private static int shadowOffset(int borderWidth) {
+        return Math.max(1, borderWidth / 2);
+    }
+
+    private static int shadowBlur(int borderWidth) {
+        return Math.max(1, borderWidth / 2);
+    }
+}
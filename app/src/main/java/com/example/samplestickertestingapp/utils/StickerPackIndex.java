@@ -0,0 +1,421 @@
+package com.example.samplestickertestingapp.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.samplestickertestingapp.models.Sticker;
+import com.example.samplestickertestingapp.models.StickerPack;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory index of the sticker packs served by the content provider.
+ * Every pack directory is remembered together with a stamp of its directory and
+ * pack_info.json (modification time, size and a generation counter), so a refresh
+ * only re-parses the packs whose files actually changed since the previous scan.
+ *
+ * Refreshes are serialized by a lock and publish an immutable {@link StickerPackSnapshot}.
+ * Readers only read the published snapshot and never wait for a refresh.
+ *
+ * Once attached to a {@link StickerDirectoryWatcher}, a refresh after the first one only looks
+ * at the pack directories the watcher reported as changed and does not scan the files directory.
+ */
+public class StickerPackIndex {
+    private static final String TAG = "StickerPackIndex";
+
+    private static final String PACK_INFO_FILE_NAME = "pack_info.json";
+
+    private final Context context;
+
+    // Held while refreshing; guards assetPacks and entries
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    // Packs bundled in assets never change while the app is running
+    private List<StickerPack> assetPacks;
+
+    // Indexed pack directories, keyed and ordered by directory name
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    // Generation counters bumped by invalidate() to force a re-parse, guarded by itself
+    private final Map<String, Integer> generations = new HashMap<>();
+
+    // Directories reported as changed since the last refresh, guarded by itself
+    private final Set<String> dirtyPacks = new HashSet<>();
+
+    // Whether a directory watcher reports changes, so unchanged directories need no stat
+    private volatile boolean watching;
+
+    // Current packs, replaced as a whole whenever something changed
+    private volatile StickerPackSnapshot snapshot = StickerPackSnapshot.EMPTY;
+
+    // Whether a refresh has completed at least once
+    private volatile boolean loaded;
+
+    /**
+     * Stamp of the files a pack was parsed from, used to detect changes.
+     */
+    private static final class Stamp {
+        final long directoryModified;
+        final long infoModified;
+        final long infoLength;
+        final int generation;
+
+        Stamp(File directory, File packInfoFile, int generation) {
+            this.directoryModified = directory.lastModified();
+            this.infoModified = packInfoFile.lastModified();
+            this.infoLength = packInfoFile.length();
+            this.generation = generation;
+        }
+
+        boolean matches(Stamp other) {
+            return directoryModified == other.directoryModified &&
+                    infoModified == other.infoModified &&
+                    infoLength == other.infoLength &&
+                    generation == other.generation;
+        }
+    }
+
+    /**
+     * Indexed pack directory. The pack is null if the directory holds no valid pack.
+     */
+    private static final class Entry {
+        final Stamp stamp;
+        final StickerPack pack;
+
+        Entry(Stamp stamp, StickerPack pack) {
+            this.stamp = stamp;
+            this.pack = pack;
+        }
+    }
+
+    public StickerPackIndex(Context context) {
+        this.context = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+    }
+
+    /**
+     * Get the current snapshot without touching the filesystem or taking a lock.
+     *
+     * @return Current snapshot
+     */
+    public StickerPackSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Get the current list of sticker packs without touching the filesystem.
+     *
+     * @return Current list of sticker packs
+     */
+    public List<StickerPack> getStickerPacks() {
+        return snapshot.getStickerPacks();
+    }
+
+    /**
+     * Get the version of the pack list. It changes whenever a refresh finds a change.
+     *
+     * @return Current version
+     */
+    public long getVersion() {
+        return snapshot.getVersion();
+    }
+
+    /**
+     * Check whether the index has been refreshed at least once.
+     *
+     * @return true once the first refresh has completed
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Force the given pack to be re-parsed on the next refresh, even if its stamp is unchanged.
+     *
+     * @param packId Pack identifier (directory name)
+     */
+    public void invalidate(String packId) {
+        synchronized (generations) {
+            Integer generation = generations.get(packId);
+            generations.put(packId, generation == null ? 1 : generation + 1);
+        }
+        markDirty(packId);
+    }
+
+    /**
+     * Rely on the watcher to report changed pack directories instead of scanning the files
+     * directory on every refresh. Must be called before the first refresh.
+     *
+     * @param watcher Watcher of the sticker directories
+     */
+    public void watch(StickerDirectoryWatcher watcher) {
+        watcher.addListener((packIds, customStickersChanged) -> {
+            for (String packId : packIds) {
+                markDirty(packId);
+            }
+        }, false);
+        watching = true;
+    }
+
+    /**
+     * Check the given pack directory again on the next refresh.
+     *
+     * @param packId Pack identifier (directory name)
+     */
+    public void markDirty(String packId) {
+        synchronized (dirtyPacks) {
+            dirtyPacks.add(packId);
+        }
+    }
+
+    private Set<String> takeDirtyPacks() {
+        synchronized (dirtyPacks) {
+            Set<String> dirty = new HashSet<>(dirtyPacks);
+            dirtyPacks.clear();
+            return dirty;
+        }
+    }
+
+    private int getGeneration(String packId) {
+        synchronized (generations) {
+            Integer generation = generations.get(packId);
+            return generation == null ? 0 : generation;
+        }
+    }
+
+    /**
+     * Bring the index up to date with the files directory.
+     * Only packs whose stamp changed are parsed again. Waits for a refresh already
+     * running on another thread.
+     *
+     * @return true if the pack list changed
+     */
+    public boolean refresh() {
+        refreshLock.lock();
+        try {
+            return refreshLocked();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Like {@link #refresh()}, but returns immediately if another thread is already
+     * refreshing. The caller keeps using the current snapshot in that case.
+     *
+     * @return true if this call refreshed and the pack list changed
+     */
+    public boolean tryRefresh() {
+        if (!refreshLock.tryLock()) {
+            return false;
+        }
+        try {
+            return refreshLocked();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private boolean refreshLocked() {
+        boolean changed = false;
+
+        if (assetPacks == null) {
+            try {
+                assetPacks = StickerPackLoader.loadAssetStickerPacks(context);
+                for (StickerPack pack : assetPacks) {
+                    pack.setStickers(Collections.unmodifiableList(pack.getStickers()));
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error loading packs from assets: " + e.getMessage());
+                assetPacks = Collections.emptyList();
+            }
+            changed = true;
+        }
+
+        Set<String> dirty = takeDirtyPacks();
+        if (!watching || !loaded) {
+            changed |= scanAll();
+        } else {
+            for (String dirName : dirty) {
+                changed |= refreshDirectory(new File(context.getFilesDir(), dirName));
+            }
+        }
+
+        if (changed) {
+            rebuildPackList();
+        }
+        loaded = true;
+        return changed;
+    }
+
+    /**
+     * Check every directory in the files directory and drop packs whose directory disappeared.
+     *
+     * @return true if any pack changed
+     */
+    private boolean scanAll() {
+        boolean changed = false;
+
+        File[] directories = context.getFilesDir().listFiles(File::isDirectory);
+        if (directories == null) {
+            directories = new File[0];
+        }
+
+        Set<String> seen = new HashSet<>();
+        for (File directory : directories) {
+            seen.add(directory.getName());
+            changed |= refreshDirectory(directory);
+        }
+
+        // Drop packs whose directory disappeared
+        if (entries.keySet().retainAll(seen)) {
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * Re-parse a pack directory if its stamp changed, or drop it if it no longer holds a pack.
+     *
+     * @param directory Pack directory
+     * @return true if the pack changed
+     */
+    private boolean refreshDirectory(File directory) {
+        String dirName = directory.getName();
+        File packInfoFile = new File(directory, PACK_INFO_FILE_NAME);
+        if (!directory.isDirectory() || !packInfoFile.exists()) {
+            return entries.remove(dirName) != null;
+        }
+
+        Stamp stamp = new Stamp(directory, packInfoFile, getGeneration(dirName));
+        Entry entry = entries.get(dirName);
+        if (entry != null && entry.stamp.matches(stamp)) {
+            return false;
+        }
+
+        entries.put(dirName, new Entry(stamp, loadPack(directory)));
+        Log.d(TAG, "Re-indexed pack directory: " + dirName);
+        return true;
+    }
+
+    /**
+     * Rebuild the pack list and publish it as a new snapshot:
+     * assets first, then pack directories in name order.
+     */
+    private void rebuildPackList() {
+        List<StickerPack> packs = new ArrayList<>(assetPacks);
+        for (Entry entry : entries.values()) {
+            if (entry.pack == null) continue;
+
+            // A directory pack overrides an asset pack with the same identifier
+            for (int i = 0; i < packs.size(); i++) {
+                if (packs.get(i).identifier.equals(entry.pack.identifier)) {
+                    packs.remove(i);
+                    break;
+                }
+            }
+            packs.add(entry.pack);
+        }
+
+        long version = snapshot.getVersion() + 1;
+        snapshot = new StickerPackSnapshot(version, packs);
+        Log.d(TAG, "Pack index version " + version + " with " + packs.size() + " packs");
+    }
+
+    /**
+     * Load a single pack directory.
+     * Packs created by this app are loaded leniently, other directories go through the loader.
+     */
+    private StickerPack loadPack(File directory) {
+        String dirName = directory.getName();
+        if (dirName.startsWith("custom_") || dirName.startsWith("colorstickers_")) {
+            return loadAppPack(directory);
+        }
+        StickerPack pack = StickerPackLoader.loadStickerPackFromDirectory(directory);
+        if (pack != null) {
+            // Published packs are shared between threads, keep their sticker list read-only
+            pack.setStickers(Collections.unmodifiableList(pack.getStickers()));
+        }
+        return pack;
+    }
+
+    /**
+     * Load a pack created by this app. Stickers present on disk but not yet listed in
+     * pack_info.json are included with default info.
+     *
+     * @param directory Pack directory
+     * @return StickerPack or null if the pack has no stickers or cannot be parsed
+     */
+    private StickerPack loadAppPack(File directory) {
+        try {
+            // Sizes of the sticker files actually present, from a single directory listing
+            Map<String, Long> fileSizes = new LinkedHashMap<>();
+            File[] webpFiles = directory.listFiles(file -> file.isFile() && file.getName().endsWith(".webp"));
+            if (webpFiles != null) {
+                Arrays.sort(webpFiles);
+                for (File file : webpFiles) {
+                    fileSizes.put(file.getName(), file.length());
+                }
+            }
+
+            StickerPack pack = PackRepository.readPack(directory);
+            if (pack == null) {
+                return null;
+            }
+
+            // Keep listed stickers whose file exists
+            List<Sticker> stickers = new ArrayList<>();
+            Set<String> listedFiles = new HashSet<>();
+            for (Sticker sticker : pack.getStickers()) {
+                Long size = fileSizes.get(sticker.imageFileName);
+                if (size != null && listedFiles.add(sticker.imageFileName)) {
+                    if (sticker.emojis.isEmpty()) {
+                        // Default emoji
+                        sticker = new Sticker(sticker.imageFileName,
+                                Collections.singletonList("🎨"), sticker.accessibilityText);
+                    }
+                    sticker.setSize(size);
+                    stickers.add(sticker);
+                }
+            }
+
+            // Also include sticker files not listed in the JSON yet
+            for (Map.Entry<String, Long> file : fileSizes.entrySet()) {
+                String fileName = file.getKey();
+                if (fileName.equals(pack.trayImageFile) || listedFiles.contains(fileName)) continue;
+
+                // Create a default sticker entry
+                List<String> defaultEmojis = new ArrayList<>();
+                defaultEmojis.add("🎨");
+                Sticker sticker = new Sticker(
+                        fileName,
+                        defaultEmojis,
+                        "Custom sticker"
+                );
+                sticker.setSize(file.getValue());
+                stickers.add(sticker);
+            }
+
+            // Only index if we have at least 1 sticker (WhatsApp requires 3 but we're more lenient)
+            if (stickers.isEmpty()) {
+                return null;
+            }
+
+            pack.setStickers(Collections.unmodifiableList(stickers));
+            return pack;
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading pack from directory: " + directory.getName(), e);
+            return null;
+        }
+    }
+}
@@ -15,11 +15,9 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
@@ -79,9 +77,34 @@ public class StickerPackLoader {
      * @throws IOException if there's an error reading the files
      */
     private static void loadStickerPacks(Context context) throws JSONException, IOException {
+        List<StickerPack> packs = new ArrayList<>(loadAssetStickerPacks(context));
+
+        // Look for dynamically generated packs in files directory
+        File[] directories = context.getFilesDir().listFiles(File::isDirectory);
+        if (directories != null) {
+            for (File directory : directories) {
+                StickerPack pack = loadStickerPackFromDirectory(directory);
+                if (pack != null) {
+                    packs.add(pack);
+                }
+            }
+        }
+
+        stickerPackList = packs;
+        Log.d(TAG, "Loaded " + packs.size() + " sticker packs");
+    }
+
+    /**
+     * Load the sticker packs bundled in assets/contents.json.
+     *
+     * @param context Application context
+     * @return List of sticker packs from assets, empty if there are none
+     * @throws JSONException if there's an error parsing the JSON file
+     * @throws IOException if there's an error reading the sticker files
+     */
+    public static List<StickerPack> loadAssetStickerPacks(Context context) throws JSONException, IOException {
         List<StickerPack> packs = new ArrayList<>();
 
-        // Load packs from assets (if any)
         try {
             InputStream contentsInputStream = context.getAssets().open(CONTENT_FILE_NAME);
             JSONObject contentsJson = new JSONObject(inputStreamToString(contentsInputStream));
@@ -116,54 +139,98 @@ public class StickerPackLoader {
             Log.d(TAG, "No contents.json found in assets or error reading: " + e.getMessage());
         }
 
-        // Look for dynamically generated packs in files directory
+        return packs;
+    }
+
+    /**
+     * Load a dynamically generated sticker pack from its directory.
+     * The directory must contain pack_info.json, the tray icon and at least 3 stickers.
+     *
+     * @param directory Pack directory inside the files directory
+     * @return StickerPack object or null if the directory is not a valid sticker pack
+     */
+    public static StickerPack loadStickerPackFromDirectory(File directory) {
+        try {
+            // Check if this directory contains a sticker pack
+            File packInfoFile = new File(directory, PACK_INFO_FILE_NAME);
+            File trayIconFile = new File(directory, "tray_icon.webp");
+
+            // Directory must have pack_info.json and tray icon to be a valid sticker pack
+            if (!packInfoFile.exists() || !trayIconFile.exists()) {
+                Log.d(TAG, "Directory is not a valid sticker pack: " + directory.getName());
+                return null;
+            }
+
+            StickerPack pack = PackRepository.readPack(directory);
+            if (pack == null) {
+                return null;
+            }
+
+            // Load stickers
+            File[] stickerFiles = directory.listFiles(file ->
+                    file.isFile() && file.getName().endsWith(".webp") &&
+                            !file.getName().equals("tray_icon.webp"));
+
+            if (stickerFiles == null || stickerFiles.length < 3) {
+                return null;
+            }
+
+            List<Sticker> stickers = new ArrayList<>();
+            for (File stickerFile : stickerFiles) {
+                // Get sticker info from pack_info.json
+                Sticker sticker = findStickerInfo(pack, stickerFile.getName());
+                if (sticker != null) {
+                    sticker.setSize(stickerFile.length());
+                    stickers.add(sticker);
+                }
+            }
+
+            if (stickers.isEmpty()) {
+                return null;
+            }
+
+            // Set stickers on the pack
+            pack.setStickers(stickers);
+            Log.d(TAG, "Loaded sticker pack: " + pack.identifier + " with " + stickers.size() + " stickers");
+            return pack;
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading sticker pack from directory: " + directory.getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Get the sticker packs without their stickers, for lists that only show pack details.
+     * Directory packs are read from their binary manifest when it is up to date, so their
+     * stickers are not decoded; other packs fall back to a full load.
+     *
+     * @param context Application context
+     * @return Sticker pack headers; asset packs still carry their stickers
+     */
+    public static List<StickerPack> getStickerPackHeaders(Context context) throws JSONException, IOException {
+        List<StickerPack> packs = new ArrayList<>(loadAssetStickerPacks(context));
+
         File[] directories = context.getFilesDir().listFiles(File::isDirectory);
         if (directories != null) {
             for (File directory : directories) {
-                try {
-                    // Check if this directory contains a sticker pack
-                    File packInfoFile = new File(directory, PACK_INFO_FILE_NAME);
-                    File trayIconFile = new File(directory, "tray_icon.webp");
-
-                    // Directory must have pack_info.json and tray icon to be a valid sticker pack
-                    if (packInfoFile.exists() && trayIconFile.exists()) {
-                        StickerPack pack = loadStickerPackFromFiles(packInfoFile);
-                        if (pack != null) {
-                            // Load stickers
-                            File[] stickerFiles = directory.listFiles(file ->
-                                    file.isFile() && file.getName().endsWith(".webp") &&
-                                            !file.getName().equals("tray_icon.webp"));
-
-                            if (stickerFiles != null && stickerFiles.length >= 3) {
-                                List<Sticker> stickers = new ArrayList<>();
-                                for (File stickerFile : stickerFiles) {
-                                    // Get sticker info from pack_info.json
-                                    Sticker sticker = findStickerInfo(pack, stickerFile.getName());
-                                    if (sticker != null) {
-                                        sticker.setSize(stickerFile.length());
-                                        stickers.add(sticker);
-                                    }
-                                }
-
-                                // Set stickers and add pack to list
-                                if (!stickers.isEmpty()) {
-                                    pack.setStickers(stickers);
-                                    packs.add(pack);
-                                    Log.d(TAG, "Loaded sticker pack: " + pack.identifier + " with " + stickers.size() + " stickers");
-                                }
-                            }
-                        }
-                    } else {
-                        Log.d(TAG, "Directory is not a valid sticker pack: " + directory.getName());
+                StickerPack pack = null;
+
+                // Same validity rules as a full load: tray icon and at least 3 stickers
+                PackManifest manifest = PackManifest.open(directory);
+                if (manifest != null) {
+                    if (manifest.getStickerCount() >= 3 && new File(directory, "tray_icon.webp").exists()) {
+                        pack = manifest.readHeader();
                     }
-                } catch (Exception e) {
-                    Log.e(TAG, "Error loading sticker pack from directory: " + directory.getName(), e);
+                } else {
+                    pack = loadStickerPackFromDirectory(directory);
+                }
+
+                if (pack != null) {
+                    packs.add(pack);
                 }
             }
         }
-
-        stickerPackList = packs;
-        Log.d(TAG, "Loaded " + packs.size() + " sticker packs");
+        return packs;
     }
 
     /**
@@ -185,68 +252,6 @@ public class StickerPackLoader {
         return new Sticker(fileName, defaultEmojis, "A colorful sticker");
     }
 
-    /**
-     * Load a sticker pack from a JSON file.
-     *
-     * @param packInfoFile File containing pack info
-     * @return StickerPack object or null if invalid
-     */
-    private static StickerPack loadStickerPackFromFiles(File packInfoFile) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(packInfoFile))) {
-            StringBuilder jsonString = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                jsonString.append(line);
-            }
-
-            JSONObject packJson = new JSONObject(jsonString.toString());
-
-            // Create sticker pack with info from JSON
-            StickerPack pack = new StickerPack(
-                    packJson.getString(KEY_IDENTIFIER),
-                    packJson.getString(KEY_NAME),
-                    packJson.getString(KEY_PUBLISHER),
-                    packJson.getString(KEY_TRAY_IMAGE_FILE),
-                    packJson.optString(KEY_PUBLISHER_EMAIL, ""),
-                    packJson.optString(KEY_PUBLISHER_WEBSITE, ""),
-                    packJson.optString(KEY_PRIVACY_POLICY_WEBSITE, ""),
-                    packJson.optString(KEY_LICENSE_AGREEMENT_WEBSITE, ""),
-                    packJson.optString(KEY_IMAGE_DATA_VERSION, "1"),
-                    packJson.optBoolean(KEY_AVOID_CACHE, false),
-                    packJson.optBoolean(KEY_ANIMATED_STICKER_PACK, false)
-            );
-
-            // Parse stickers
-            JSONArray stickersJson = packJson.getJSONArray(KEY_STICKERS);
-            List<Sticker> stickers = new ArrayList<>();
-
-            for (int i = 0; i < stickersJson.length(); i++) {
-                JSONObject stickerJson = stickersJson.getJSONObject(i);
-
-                String imageFile = stickerJson.getString(KEY_STICKER_FILE);
-
-                // Parse emojis
-                List<String> emojis = new ArrayList<>();
-                JSONArray emojisJson = stickerJson.getJSONArray(KEY_EMOJIS);
-                for (int j = 0; j < emojisJson.length(); j++) {
-                    emojis.add(emojisJson.getString(j));
-                }
-
-                // Parse accessibility text
-                String accessibilityText = stickerJson.optString(KEY_ACCESSIBILITY_TEXT, "");
-
-                stickers.add(new Sticker(imageFile, emojis, accessibilityText));
-            }
-
-            pack.setStickers(stickers);
-            return pack;
-
-        } catch (IOException | JSONException e) {
-            Log.e(TAG, "Error parsing pack info file: " + packInfoFile.getPath(), e);
-            return null;
-        }
-    }
-
     /**
      * Parse a sticker pack from a JSON object.
      *
@@ -0,0 +1,95 @@
+package com.example.samplestickertestingapp.utils;
+
+import com.example.samplestickertestingapp.models.Sticker;
+import com.example.samplestickertestingapp.models.StickerPack;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable view of the sticker packs at one index version.
+ * A snapshot is never modified after it is built; the index publishes a new one when
+ * packs change, so readers on any thread can use it without locking.
+ */
+public final class StickerPackSnapshot {
+
+    // Snapshot used before the first refresh completes
+    public static final StickerPackSnapshot EMPTY = new StickerPackSnapshot(0, Collections.emptyList());
+
+    private final long version;
+
+    // Packs in provider order
+    private final List<StickerPack> stickerPacks;
+
+    // Packs keyed by identifier
+    private final Map<String, StickerPack> packsById;
+
+    // Files that may be served for each pack (tray icon and stickers)
+    private final Map<String, Set<String>> packFiles;
+
+    StickerPackSnapshot(long version, List<StickerPack> packs) {
+        this.version = version;
+
+        Map<String, StickerPack> byId = new HashMap<>();
+        Map<String, Set<String>> files = new HashMap<>();
+        for (StickerPack pack : packs) {
+            byId.put(pack.identifier, pack);
+
+            Set<String> names = new HashSet<>();
+            names.add(pack.trayImageFile);
+            for (Sticker sticker : pack.getStickers()) {
+                names.add(sticker.imageFileName);
+            }
+            files.put(pack.identifier, Collections.unmodifiableSet(names));
+        }
+
+        this.stickerPacks = Collections.unmodifiableList(new ArrayList<>(packs));
+        this.packsById = Collections.unmodifiableMap(byId);
+        this.packFiles = Collections.unmodifiableMap(files);
+    }
+
+    /**
+     * Get the index version this snapshot was built from.
+     *
+     * @return Snapshot version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get all packs in this snapshot.
+     *
+     * @return Unmodifiable list of sticker packs
+     */
+    public List<StickerPack> getStickerPacks() {
+        return stickerPacks;
+    }
+
+    /**
+     * Look up a pack by identifier.
+     *
+     * @param identifier Pack identifier
+     * @return The pack, or null if it is not part of this snapshot
+     */
+    public StickerPack getStickerPack(String identifier) {
+        return packsById.get(identifier);
+    }
+
+    /**
+     * Check whether a file is the tray icon or a sticker of the given pack.
+     *
+     * @param identifier Pack identifier
+     * @param fileName File name inside the pack
+     * @return true if the file belongs to the pack
+     */
+    public boolean containsFile(String identifier, String fileName) {
+        Set<String> names = packFiles.get(identifier);
+        return names != null && names.contains(fileName);
+    }
+}
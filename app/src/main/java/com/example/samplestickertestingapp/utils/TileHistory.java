@@ -0,0 +1,519 @@
+package com.example.samplestickertestingapp.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Undo/redo history that stores each step as the tiles it changed rather than whole images.
+ * While a step is in progress, the caller reports the areas it is about to change; the first
+ * time a tile is touched its pixels are saved, and when the step is committed the new pixels
+ * of the same tiles are saved beside them. Tiles are run-length encoded, which shrinks the
+ * transparent and flat areas typical of erased images to a few ints.
+ *
+ * History is limited by a byte budget instead of a number of steps. Steps over the budget
+ * are moved to a spill file when one is given, and dropped from the oldest end otherwise or
+ * once the file is full.
+ *
+ * Images that are only an alpha mask can be stored with {@link #FORMAT_ALPHA}, which keeps a
+ * quarter of the bytes for the pixels that do not compress into runs.
+ *
+ * The class does not depend on Android, so it can be tested on the JVM. An instance is not
+ * thread safe.
+ */
+public final class TileHistory {
+    // Width and height of a tile in pixels
+    public static final int TILE_SIZE = 64;
+
+    // Surface pixel formats: full ARGB, or only the alpha channel stored, a byte per pixel
+    public static final int FORMAT_ARGB = 0;
+    public static final int FORMAT_ALPHA = 1;
+
+    // Bytes the spill file may grow to, as a multiple of the memory budget
+    private static final int SPILL_BUDGET_FACTOR = 4;
+
+    // Smallest run of equal pixels encoded as a run rather than as literals
+    private static final int MIN_RUN = 3;
+
+    /**
+     * Pixels the history reads tiles from and restores them to.
+     */
+    public interface Surface {
+        void readPixels(int[] pixels, int x, int y, int width, int height);
+
+        void writePixels(int[] pixels, int x, int y, int width, int height);
+    }
+
+    /**
+     * The tiles changed by one step, before and after, encoded.
+     * When spilled, the arrays are null and the step lives at an offset of the spill file.
+     */
+    private static final class Step {
+        int[] tiles;
+        int[][] before;
+        int[][] after;
+        long bytes;
+        long spillOffset = -1;
+        int spillLength;
+    }
+
+    private final int width;
+    private final int height;
+    private final int columns;
+    private final Surface surface;
+    private final boolean alphaOnly;
+    private final long budget;
+    private final File spillFile;
+
+    private final List<Step> undoSteps = new ArrayList<>();
+    private final List<Step> redoSteps = new ArrayList<>();
+    private long memoryBytes;
+
+    // Step in progress: touched tiles in order and their saved pixels
+    private final boolean[] touched;
+    private final List<Integer> pendingTiles = new ArrayList<>();
+    private final List<int[]> pendingBefore = new ArrayList<>();
+
+    private final int[] tilePixels = new int[TILE_SIZE * TILE_SIZE];
+    private RandomAccessFile spill;
+    private boolean spillFailed;
+
+    /**
+     * Create a history for an ARGB image.
+     *
+     * @param width Image width
+     * @param height Image height
+     * @param surface Pixels of the image
+     * @param budget Bytes of encoded tiles kept in memory
+     * @param spillFile File to move older steps to, or null to drop them
+     */
+    public TileHistory(int width, int height, Surface surface, long budget, File spillFile) {
+        this(width, height, surface, FORMAT_ARGB, budget, spillFile);
+    }
+
+    /**
+     * Create a history for an image.
+     *
+     * @param width Image width
+     * @param height Image height
+     * @param surface Pixels of the image
+     * @param format {@link #FORMAT_ARGB}, or {@link #FORMAT_ALPHA} if only the alpha of the
+     *               surface pixels matters, in which case restored pixels are black
+     * @param budget Bytes of encoded tiles kept in memory
+     * @param spillFile File to move older steps to, or null to drop them
+     */
+    public TileHistory(int width, int height, Surface surface, int format, long budget, File spillFile) {
+        this.width = width;
+        this.height = height;
+        this.columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        this.surface = surface;
+        this.alphaOnly = format == FORMAT_ALPHA;
+        this.budget = budget;
+        this.spillFile = spillFile;
+        int rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+        touched = new boolean[columns * rows];
+    }
+
+    /**
+     * Report that an area is about to change in the step in progress.
+     * Must be called before the pixels are changed; coordinates outside the image are clipped.
+     */
+    public void touch(float left, float top, float right, float bottom) {
+        int fromColumn = Math.max(0, (int) Math.floor(left) / TILE_SIZE);
+        int fromRow = Math.max(0, (int) Math.floor(top) / TILE_SIZE);
+        int toColumn = Math.min(columns - 1, (int) Math.ceil(right) / TILE_SIZE);
+        int toRow = Math.min(touched.length / columns - 1, (int) Math.ceil(bottom) / TILE_SIZE);
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                int tile = row * columns + column;
+                if (!touched[tile]) {
+                    touched[tile] = true;
+                    pendingTiles.add(tile);
+                    pendingBefore.add(encode(readTile(tile), alphaOnly));
+                }
+            }
+        }
+    }
+
+    /**
+     * Report that the whole image is about to change in the step in progress.
+     */
+    public void touchAll() {
+        touch(0, 0, width, height);
+    }
+
+    /**
+     * Finish the step in progress, saving the new pixels of every touched tile.
+     *
+     * @return true if a step was added, false if nothing was touched
+     */
+    public boolean commit() {
+        int count = pendingTiles.size();
+        if (count == 0) {
+            return false;
+        }
+
+        Step step = new Step();
+        step.tiles = new int[count];
+        step.before = new int[count][];
+        step.after = new int[count][];
+        for (int i = 0; i < count; i++) {
+            int tile = pendingTiles.get(i);
+            touched[tile] = false;
+            step.tiles[i] = tile;
+            step.before[i] = pendingBefore.get(i);
+            step.after[i] = encode(readTile(tile), alphaOnly);
+            step.bytes += 4L * (step.before[i].length + step.after[i].length + 1);
+        }
+        pendingTiles.clear();
+        pendingBefore.clear();
+
+        clearSteps(redoSteps);
+        undoSteps.add(step);
+        memoryBytes += step.bytes;
+        enforceBudget();
+        return true;
+    }
+
+    /**
+     * Restore the image to before the last step.
+     *
+     * @return true if a step was undone
+     */
+    public boolean undo() {
+        if (undoSteps.isEmpty() || !load(undoSteps.get(undoSteps.size() - 1))) {
+            return false;
+        }
+        Step step = undoSteps.remove(undoSteps.size() - 1);
+        write(step, step.before);
+        redoSteps.add(step);
+        enforceBudget();
+        return true;
+    }
+
+    /**
+     * Apply the last undone step again.
+     *
+     * @return true if a step was redone
+     */
+    public boolean redo() {
+        if (redoSteps.isEmpty()) {
+            return false;
+        }
+        Step step = redoSteps.remove(redoSteps.size() - 1);
+        write(step, step.after);
+        undoSteps.add(step);
+        enforceBudget();
+        return true;
+    }
+
+    public boolean canUndo() {
+        return !undoSteps.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !redoSteps.isEmpty();
+    }
+
+    /**
+     * Bytes of encoded tiles held in memory.
+     */
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * Drop all steps, including the one in progress, and delete the spill file.
+     */
+    public void clear() {
+        clearSteps(undoSteps);
+        clearSteps(redoSteps);
+        for (int tile : pendingTiles) {
+            touched[tile] = false;
+        }
+        pendingTiles.clear();
+        pendingBefore.clear();
+        closeSpill();
+    }
+
+    public String getStats() {
+        return "TileHistory: " + undoSteps.size() + " undo, " + redoSteps.size() + " redo, " +
+                memoryBytes / 1024 + " KB in memory, " + (spill != null ? spillLength() / 1024 : 0) + " KB spilled";
+    }
+
+    private void clearSteps(List<Step> steps) {
+        for (Step step : steps) {
+            if (step.spillOffset < 0) {
+                memoryBytes -= step.bytes;
+            }
+        }
+        steps.clear();
+    }
+
+    /**
+     * Move the oldest steps out of memory until the rest fits in the budget. The newest undo
+     * and redo steps stay in memory so the next undo or redo is immediate.
+     */
+    private void enforceBudget() {
+        int index = 0;
+        while (memoryBytes > budget && index < undoSteps.size() - 1) {
+            Step step = undoSteps.get(index);
+            if (step.spillOffset >= 0) {
+                index++;
+            } else if (spillStep(step)) {
+                memoryBytes -= step.bytes;
+                index++;
+            } else {
+                // No room on disk either, forget the oldest step
+                undoSteps.remove(index);
+                memoryBytes -= step.bytes;
+            }
+        }
+
+        // Redo steps are not spilled, the ones furthest from the current image go first
+        while (memoryBytes > budget && redoSteps.size() > 1) {
+            memoryBytes -= redoSteps.remove(0).bytes;
+        }
+
+        // Spilled steps are always the oldest ones; once none is left the file starts over
+        if (spill != null && (undoSteps.isEmpty() || undoSteps.get(0).spillOffset < 0)) {
+            closeSpill();
+        }
+    }
+
+    private boolean spillStep(Step step) {
+        if (spillFile == null || spillFailed) {
+            return false;
+        }
+        try {
+            if (spill == null) {
+                spill = new RandomAccessFile(spillFile, "rw");
+                spill.setLength(0);
+            }
+            if (spill.length() + step.bytes > budget * SPILL_BUDGET_FACTOR) {
+                return false;
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) step.bytes + 64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(step.tiles.length);
+            for (int i = 0; i < step.tiles.length; i++) {
+                out.writeInt(step.tiles[i]);
+                writeArray(out, step.before[i]);
+                writeArray(out, step.after[i]);
+            }
+            out.flush();
+
+            long offset = spill.length();
+            spill.seek(offset);
+            spill.write(bytes.toByteArray());
+            step.spillOffset = offset;
+            step.spillLength = bytes.size();
+            step.tiles = null;
+            step.before = null;
+            step.after = null;
+            return true;
+        } catch (IOException e) {
+            // Keep working from memory only
+            spillFailed = true;
+            closeSpill();
+            return false;
+        }
+    }
+
+    /**
+     * Bring a spilled step back into memory.
+     *
+     * @return false if the step could not be read, in which case the spilled history is dropped
+     */
+    private boolean load(Step step) {
+        if (step.spillOffset < 0) {
+            return true;
+        }
+        try {
+            byte[] data = new byte[step.spillLength];
+            spill.seek(step.spillOffset);
+            spill.readFully(data);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            int count = in.readInt();
+            step.tiles = new int[count];
+            step.before = new int[count][];
+            step.after = new int[count][];
+            for (int i = 0; i < count; i++) {
+                step.tiles[i] = in.readInt();
+                step.before[i] = readArray(in);
+                step.after[i] = readArray(in);
+            }
+            step.spillOffset = -1;
+            memoryBytes += step.bytes;
+            return true;
+        } catch (IOException e) {
+            spillFailed = true;
+            while (!undoSteps.isEmpty() && undoSteps.get(0).spillOffset >= 0) {
+                undoSteps.remove(0);
+            }
+            closeSpill();
+            return false;
+        }
+    }
+
+    private long spillLength() {
+        try {
+            return spill.length();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void closeSpill() {
+        if (spill != null) {
+            try {
+                spill.close();
+            } catch (IOException e) {
+                // Nothing left to read from it
+            }
+            spill = null;
+        }
+        if (spillFile != null) {
+            spillFile.delete();
+        }
+    }
+
+    private static void writeArray(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readArray(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private int[] readTile(int tile) {
+        int x = tile % columns * TILE_SIZE;
+        int y = tile / columns * TILE_SIZE;
+        int tileWidth = Math.min(TILE_SIZE, width - x);
+        int tileHeight = Math.min(TILE_SIZE, height - y);
+        surface.readPixels(tilePixels, x, y, tileWidth, tileHeight);
+        int[] values = Arrays.copyOf(tilePixels, tileWidth * tileHeight);
+        if (alphaOnly) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] >>>= 24;
+            }
+        }
+        return values;
+    }
+
+    private void write(Step step, int[][] encoded) {
+        for (int i = 0; i < step.tiles.length; i++) {
+            int tile = step.tiles[i];
+            int x = tile % columns * TILE_SIZE;
+            int y = tile / columns * TILE_SIZE;
+            int tileWidth = Math.min(TILE_SIZE, width - x);
+            int tileHeight = Math.min(TILE_SIZE, height - y);
+            int count = decode(encoded[i], tilePixels, alphaOnly);
+            if (alphaOnly) {
+                for (int p = 0; p < count; p++) {
+                    tilePixels[p] <<= 24;
+                }
+            }
+            surface.writePixels(tilePixels, x, y, tileWidth, tileHeight);
+        }
+    }
+
+    /**
+     * Run-length encode pixels. A negative header -n is followed by one pixel repeated n
+     * times, a positive header n by n literal pixels, packed four to an int when they are
+     * bytes.
+     *
+     * @param pixels Pixels to encode
+     * @param bytes Whether every pixel is a value from 0 to 255
+     */
+    static int[] encode(int[] pixels, boolean bytes) {
+        int[] out = new int[pixels.length + pixels.length / 64 + 2];
+        int size = 0;
+        int i = 0;
+        while (i < pixels.length) {
+            int run = 1;
+            while (i + run < pixels.length && pixels[i + run] == pixels[i]) {
+                run++;
+            }
+            if (run >= MIN_RUN) {
+                out = ensureCapacity(out, size + 2);
+                out[size++] = -run;
+                out[size++] = pixels[i];
+                i += run;
+                continue;
+            }
+
+            // Gather literals up to the next run worth encoding
+            int start = i;
+            while (i < pixels.length) {
+                if (i + MIN_RUN <= pixels.length && pixels[i] == pixels[i + 1] && pixels[i] == pixels[i + 2]) {
+                    break;
+                }
+                i++;
+            }
+            int count = i - start;
+            out = ensureCapacity(out, size + 1 + count);
+            out[size++] = count;
+            if (bytes) {
+                for (int k = 0; k < count; k++) {
+                    out[size + k / 4] |= pixels[start + k] << (k % 4 * 8);
+                }
+                size += (count + 3) / 4;
+            } else {
+                System.arraycopy(pixels, start, out, size, count);
+                size += count;
+            }
+        }
+        return Arrays.copyOf(out, size);
+    }
+
+    /**
+     * Decode pixels written by {@link #encode(int[], boolean)}.
+     *
+     * @return Number of pixels decoded
+     */
+    static int decode(int[] encoded, int[] pixels, boolean bytes) {
+        int size = 0;
+        int i = 0;
+        while (i < encoded.length) {
+            int header = encoded[i++];
+            if (header < 0) {
+                Arrays.fill(pixels, size, size - header, encoded[i++]);
+                size -= header;
+            } else if (bytes) {
+                for (int k = 0; k < header; k++) {
+                    pixels[size + k] = (encoded[i + k / 4] >>> (k % 4 * 8)) & 0xFF;
+                }
+                i += (header + 3) / 4;
+                size += header;
+            } else {
+                System.arraycopy(encoded, i, pixels, size, header);
+                i += header;
+                size += header;
+            }
+        }
+        return size;
+    }
+
+    private static int[] ensureCapacity(int[] array, int capacity) {
+        if (capacity <= array.length) {
+            return array;
+        }
+        return Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.samplestickertestingapp.utils;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Encodes stickers as WebP within WhatsApp's file size limits.
+ * Each bitmap is encoded into a reusable in-memory buffer first. From Q, flat-colour art is
+ * tried lossless; otherwise the highest lossy quality that fits the byte budget is found by binary
+ * search. Only the chosen encoding is written to disk, and it replaces the target file rather
+ * than rewriting it, as {@link StickerBlobStore} requires.
+ */
+public final class WebPEncoder {
+    private static final String TAG = "WebPEncoder";
+
+    // WhatsApp limits for static stickers and tray icons
+    public static final int STICKER_MAX_BYTES = 100 * 1024;
+    public static final int TRAY_MAX_BYTES = 50 * 1024;
+
+    // Largest buffer kept between encodes
+    private static final int MAX_RETAINED_BUFFER = STICKER_MAX_BYTES * 4;
+
+    // Quality range searched for lossy encodings
+    private static final int MIN_QUALITY = 10;
+    private static final int MAX_QUALITY = ImageUtils.STICKER_QUALITY;
+
+    // Art with at most this many distinct colours is tried lossless first
+    private static final int FLAT_ART_MAX_COLORS = 256;
+
+    // Pixels sampled per side when counting colours
+    private static final int COLOR_SAMPLE_GRID = 128;
+
+    /**
+     * Outcome of an encode, for logging and tracking encode cost.
+     */
+    public static final class Result {
+        public final int quality;
+        public final boolean lossless;
+        public final int size;
+        public final boolean withinBudget;
+        public final int attempts;
+        public final long encodeTimeMs;
+
+        Result(int quality, boolean lossless, int size, boolean withinBudget, int attempts, long encodeTimeMs) {
+            this.quality = quality;
+            this.lossless = lossless;
+            this.size = size;
+            this.withinBudget = withinBudget;
+            this.attempts = attempts;
+            this.encodeTimeMs = encodeTimeMs;
+        }
+
+        @Override
+        public String toString() {
+            return (lossless ? "lossless" : "quality " + quality) + ", " + size + " bytes" +
+                    (withinBudget ? "" : " (over budget)") + ", " + attempts + " attempts in " + encodeTimeMs + " ms";
+        }
+    }
+
+    /**
+     * Byte buffer whose storage is kept between encodes.
+     */
+    private static final class EncodeBuffer extends ByteArrayOutputStream {
+        EncodeBuffer() {
+            super(STICKER_MAX_BYTES * 2);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+
+        /**
+         * Write the buffer through a sibling temporary file that replaces file, so the old
+         * inode, which may be a blob hard-linked into other packs, is never rewritten.
+         */
+        void writeTo(File file) throws IOException {
+            File tempFile = new File(file.getPath() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(tempFile)) {
+                out.write(buf, 0, count);
+                out.getFD().sync();
+            } catch (IOException e) {
+                tempFile.delete();
+                throw e;
+            }
+            if (!tempFile.renameTo(file)) {
+                tempFile.delete();
+                throw new IOException("Failed to rename " + tempFile.getName());
+            }
+        }
+    }
+
+    // Encodes may run on several background threads at once
+    private static final ThreadLocal<EncodeBuffer> buffers = new ThreadLocal<EncodeBuffer>() {
+        @Override
+        protected EncodeBuffer initialValue() {
+            return new EncodeBuffer();
+        }
+    };
+
+    private WebPEncoder() {
+    }
+
+    /**
+     * Encode a bitmap and write it to a file, as close to full quality as the budget allows.
+     * If even the lowest quality does not fit, that encoding is written and the result says so.
+     *
+     * @param bitmap Bitmap to encode
+     * @param outputFile File to write
+     * @param maxBytes Byte budget, e.g. {@link #STICKER_MAX_BYTES} or {@link #TRAY_MAX_BYTES}
+     * @return How the bitmap was encoded, or null if it could not be written
+     */
+    public static Result encodeToFile(Bitmap bitmap, File outputFile, int maxBytes) {
+        long start = SystemClock.elapsedRealtime();
+        EncodeBuffer buffer = buffers.get();
+        int attempts = 0;
+
+        try {
+            // Flat-colour art usually compresses best without loss, where WebP can be lossless
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && isFlatArt(bitmap)) {
+                attempts++;
+                if (encodeLossless(bitmap, buffer) && buffer.size() <= maxBytes) {
+                    return write(buffer, outputFile, 100, true, true, attempts, start);
+                }
+            }
+
+            // Full quality first, it fits for most stickers
+            attempts++;
+            if (!encodeLossy(bitmap, MAX_QUALITY, buffer)) {
+                return null;
+            }
+            if (buffer.size() <= maxBytes) {
+                return write(buffer, outputFile, MAX_QUALITY, false, true, attempts, start);
+            }
+
+            // Highest quality that fits, by binary search
+            int low = MIN_QUALITY;
+            int high = MAX_QUALITY - 1;
+            int best = -1;
+            int lastEncoded = MAX_QUALITY;
+            while (low <= high) {
+                int quality = (low + high) >>> 1;
+                attempts++;
+                if (!encodeLossy(bitmap, quality, buffer)) {
+                    return null;
+                }
+                lastEncoded = quality;
+                if (buffer.size() <= maxBytes) {
+                    best = quality;
+                    low = quality + 1;
+                } else {
+                    high = quality - 1;
+                }
+            }
+
+            int quality = best >= 0 ? best : MIN_QUALITY;
+            if (lastEncoded != quality) {
+                attempts++;
+                if (!encodeLossy(bitmap, quality, buffer)) {
+                    return null;
+                }
+            }
+            return write(buffer, outputFile, quality, false, best >= 0, attempts, start);
+        } catch (IOException e) {
+            Log.e(TAG, "Error saving WebP file: " + outputFile.getName(), e);
+            return null;
+        } finally {
+            // Keep the storage for the next encode, unless a large lossless attempt grew it
+            buffer.reset();
+            if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+                buffers.remove();
+            }
+        }
+    }
+
+    private static Result write(EncodeBuffer buffer, File outputFile, int quality, boolean lossless,
+                                boolean withinBudget, int attempts, long start) throws IOException {
+        buffer.writeTo(outputFile);
+        Result result = new Result(quality, lossless, buffer.size(), withinBudget, attempts,
+                SystemClock.elapsedRealtime() - start);
+        if (withinBudget) {
+            Log.d(TAG, "Encoded " + outputFile.getName() + ": " + result);
+        } else {
+            Log.w(TAG, "Encoded " + outputFile.getName() + " over budget: " + result);
+        }
+        return result;
+    }
+
+    /**
+     * Encode without loss. Needs Q or later: before Q, WEBP at quality 100 is still lossy.
+     */
+    @SuppressWarnings("deprecation")
+    private static boolean encodeLossless(Bitmap bitmap, EncodeBuffer buffer) {
+        buffer.reset();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return bitmap.compress(Bitmap.CompressFormat.WEBP_LOSSLESS, 100, buffer);
+        }
+        // On Q, WEBP at quality 100 is lossless
+        return bitmap.compress(Bitmap.CompressFormat.WEBP, 100, buffer);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static boolean encodeLossy(Bitmap bitmap, int quality, EncodeBuffer buffer) {
+        buffer.reset();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return bitmap.compress(Bitmap.CompressFormat.WEBP_LOSSY, quality, buffer);
+        }
+        return bitmap.compress(Bitmap.CompressFormat.WEBP, quality, buffer);
+    }
+
+    /**
+     * Whether a bitmap has few distinct colours, judged from a grid of sampled pixels.
+     */
+    private static boolean isFlatArt(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int stepX = Math.max(1, width / COLOR_SAMPLE_GRID);
+        int stepY = Math.max(1, height / COLOR_SAMPLE_GRID);
+
+        int[] row = new int[width];
+        Set<Integer> colors = new HashSet<>();
+        for (int y = 0; y < height; y += stepY) {
+            bitmap.getPixels(row, 0, width, 0, y, width, 1);
+            for (int x = 0; x < width; x += stepX) {
+                colors.add(row[x]);
+                if (colors.size() > FLAT_ART_MAX_COLORS) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -2,6 +2,7 @@ package com.example.samplestickertestingapp.views;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Matrix;
@@ -9,20 +10,34 @@ import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Shader;
+import android.os.AsyncTask;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.MotionEvent;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.widget.AppCompatImageView;
 
-import java.util.ArrayList;
-import java.util.List;
+import com.example.samplestickertestingapp.utils.FloodFill;
+import com.example.samplestickertestingapp.utils.TileHistory;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
 
 /**
  * Custom ImageView for background removal using brush strokes.
- * Supports erasing and redrawing with opacity control and undo/redo functionality.
+ * Supports erasing and redrawing with opacity control, a magic wand that erases the area of
+ * similar colour around a tap, and undo/redo functionality.
+ *
+ * The source image is never changed. Every tool edits an 8-bit alpha mask instead, which is
+ * drawn with the source as its shader for display and applied to the source only when the
+ * result is requested, so restoring with the brush simply raises the mask again.
  */
 public class BrushImageView extends AppCompatImageView {
     private static final String TAG = "BrushImageView";
@@ -30,26 +45,65 @@ public class BrushImageView extends AppCompatImageView {
     // Constants
     private static final int DEFAULT_BRUSH_SIZE = 30;
     private static final int DEFAULT_OPACITY = 255; // Full opacity
-    private static final int MAX_STEPS = 20; // Maximum undo/redo steps
+    private static final String HISTORY_FILE = "brush_history.bin";
+    private static final int CHECKER_SIZE = 20;
+    private static final float TOUCH_TOLERANCE = 4; // Smallest movement added to a stroke
 
     // Drawing tools
     private Paint brushPaint;
     private Path brushPath;
-    private Canvas canvasBuffer;
-    private Bitmap bufferBitmap;
     private Bitmap originalBitmap;
-    private Bitmap resultBitmap;
+
+    // Alpha mask the tools edit, opaque where the source is kept
+    private Bitmap maskBitmap;
+    private Canvas maskCanvas;
+
+    // Draws the mask coloured by the source, which is the edited image
+    private Paint imagePaint;
+
+    // Multiplies the mask by another one
+    private Paint keepPaint;
+
+    // Transparency backdrop, one repeating tile of the checkerboard drawn beneath the image
+    private Paint checkerPaint;
+
+    // Reused for the bounds of each stroke segment
+    private final RectF segmentBounds = new RectF();
+    private final Rect dirtyRect = new Rect();
+
+    // Reused to map touches to bitmap coordinates
+    private final Matrix inverseMatrix = new Matrix();
+    private final float[] touchPoint = new float[2];
+
+    // Touch samples waiting for the next frame, as x, y pairs in bitmap coordinates
+    private float[] pendingPoints = new float[64];
+    private int pendingCount;
+    private boolean frameScheduled;
+    private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> {
+        frameScheduled = false;
+        flushPendingPoints();
+    };
 
     // State tracking
     private float lastTouchX;
     private float lastTouchY;
+    private float pathEndX;
+    private float pathEndY;
+    private boolean strokeChanged;
     private boolean isErasing = true; // Default to eraser mode
     private int brushSize = DEFAULT_BRUSH_SIZE;
     private int opacity = DEFAULT_OPACITY;
+    private boolean magicWand;
+
+    // Magic wand fill and its buffers, kept between taps; a running fill owns the buffers
+    private final FloodFill floodFill = new FloodFill();
+    private int[] wandPixels;
+    private int[] wandAlpha;
+    private byte[] wandMask;
+    private WandTask wandTask;
 
-    // Undo/redo history
-    private List<Bitmap> undoSteps;
-    private List<Bitmap> redoSteps;
+    // Undo/redo history of the tiles each step changed
+    private TileHistory history;
 
     public BrushImageView(@NonNull Context context) {
         super(context);
@@ -78,9 +132,17 @@ public class BrushImageView extends AppCompatImageView {
         // Initialize path
         brushPath = new Path();
 
-        // Initialize undo/redo lists
-        undoSteps = new ArrayList<>();
-        redoSteps = new ArrayList<>();
+        imagePaint = new Paint();
+        imagePaint.setFilterBitmap(true);
+
+        keepPaint = new Paint();
+        keepPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.DST_IN));
+
+        checkerPaint = new Paint();
+        checkerPaint.setShader(new BitmapShader(createCheckerTile(), Shader.TileMode.REPEAT, Shader.TileMode.REPEAT));
+
+        // The wand only spreads through pixels like the tapped one, not through erased areas
+        floodFill.setTransparentMatches(false);
     }
 
     /**
@@ -94,44 +156,99 @@ public class BrushImageView extends AppCompatImageView {
             return;
         }
 
-        // Store original bitmap
-        originalBitmap = bitmap.copy(Bitmap.Config.ARGB_8888, true);
+        // A fill still running on the previous image is of no use any more
+        cancelWand();
+
+        // Store original bitmap, which is never modified
+        Bitmap previousOriginal = originalBitmap;
+        Bitmap previousMask = maskBitmap;
+        originalBitmap = bitmap.copy(Bitmap.Config.ARGB_8888, false);
+        imagePaint.setShader(new BitmapShader(originalBitmap, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP));
+
+        // Start with everything kept
+        maskBitmap = Bitmap.createBitmap(bitmap.getWidth(), bitmap.getHeight(), Bitmap.Config.ALPHA_8);
+        maskBitmap.eraseColor(Color.BLACK);
+        maskCanvas = new Canvas(maskBitmap);
 
-        // Create buffer bitmap to draw on
-        bufferBitmap = Bitmap.createBitmap(bitmap.getWidth(), bitmap.getHeight(), Bitmap.Config.ARGB_8888);
-        canvasBuffer = new Canvas(bufferBitmap);
-        canvasBuffer.drawBitmap(originalBitmap, 0, 0, null);
+        // The drawable is not drawn, it gives the image matrix that fits the image in the view
+        setImageBitmap(originalBitmap);
+        if (previousOriginal != null) {
+            previousOriginal.recycle();
+        }
+        if (previousMask != null) {
+            previousMask.recycle();
+        }
 
-        // Clear history
+        // Start a new history for this image
         clearHistory();
-        // Save initial state
-        saveState();
+        history = new TileHistory(maskBitmap.getWidth(), maskBitmap.getHeight(), historySurface,
+                TileHistory.FORMAT_ALPHA, getHistoryBudget(), new File(getContext().getCacheDir(), HISTORY_FILE));
 
         // Set image
         updateImageView();
     }
 
     /**
-     * Update the displayed image from the buffer.
+     * Create one tile of the checkerboard that shows transparency, two squares on each side.
+     */
+    private static Bitmap createCheckerTile() {
+        Bitmap tile = Bitmap.createBitmap(CHECKER_SIZE * 2, CHECKER_SIZE * 2, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(tile);
+        Paint paint = new Paint();
+        paint.setColor(Color.LTGRAY);
+        canvas.drawRect(0, 0, CHECKER_SIZE, CHECKER_SIZE, paint);
+        canvas.drawRect(CHECKER_SIZE, CHECKER_SIZE, CHECKER_SIZE * 2, CHECKER_SIZE * 2, paint);
+        return tile;
+    }
+
+    /**
+     * Update the whole displayed image after the mask changed.
      */
     private void updateImageView() {
-        resultBitmap = Bitmap.createBitmap(bufferBitmap.getWidth(), bufferBitmap.getHeight(), Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(resultBitmap);
-
-        // Draw checkerboard pattern to show transparency
-        Paint checkerPaint = new Paint();
-        checkerPaint.setColor(Color.LTGRAY);
-        for (int x = 0; x < resultBitmap.getWidth(); x += 20) {
-            for (int y = 0; y < resultBitmap.getHeight(); y += 20) {
-                if ((x / 20 + y / 20) % 2 == 0) {
-                    canvas.drawRect(x, y, x + 20, y + 20, checkerPaint);
-                }
-            }
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (maskBitmap == null) {
+            super.onDraw(canvas);
+            return;
         }
 
-        // Draw the actual image on top
-        canvas.drawBitmap(bufferBitmap, 0, 0, null);
-        setImageBitmap(resultBitmap);
+        // Checkerboard under the image, in image coordinates so it scales with it
+        int saveCount = canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        canvas.concat(getImageMatrix());
+        canvas.drawRect(0, 0, maskBitmap.getWidth(), maskBitmap.getHeight(), checkerPaint);
+
+        // An alpha bitmap is drawn with the paint's shader, the source masked in one draw
+        canvas.drawBitmap(maskBitmap, 0, 0, imagePaint);
+        canvas.restoreToCount(saveCount);
+    }
+
+    /**
+     * Draw the current stroke segment into the mask. Only the mask pixels and history tiles
+     * the segment covers are touched, and nothing at all for a segment outside the image.
+     */
+    private void drawSegment() {
+        // Bounds grown by half the stroke and a pixel of anti-aliasing, within the mask
+        brushPath.computeBounds(segmentBounds, true);
+        float inset = brushSize / 2f + 1;
+        segmentBounds.inset(-inset, -inset);
+        segmentBounds.roundOut(dirtyRect);
+        if (!dirtyRect.intersect(0, 0, maskBitmap.getWidth(), maskBitmap.getHeight())) {
+            return;
+        }
+
+        // Save the tiles the segment covers before it changes them
+        history.touch(dirtyRect.left, dirtyRect.top, dirtyRect.right, dirtyRect.bottom);
+        int saveCount = maskCanvas.save();
+        maskCanvas.clipRect(dirtyRect);
+        maskCanvas.drawPath(brushPath, brushPaint);
+        maskCanvas.restoreToCount(saveCount);
+
+        // Partial invalidation is ignored with hardware acceleration and deprecated
+        invalidate();
     }
 
     /**
@@ -161,67 +278,94 @@ public class BrushImageView extends AppCompatImageView {
      */
     public void setErasing(boolean erasing) {
         isErasing = erasing;
+        magicWand = false;
         updateBrushMode();
     }
 
+    /**
+     * Set magic wand mode, in which a tap erases the connected area of similar colour.
+     * Setting the brush mode with {@link #setErasing(boolean)} leaves it.
+     *
+     * @param enabled true for magic wand mode
+     */
+    public void setMagicWand(boolean enabled) {
+        magicWand = enabled;
+    }
+
+    /**
+     * Set how different in colour a pixel may be from the tapped one and still be erased.
+     *
+     * @param tolerance Largest RGB distance, see {@link FloodFill#setTolerance(int)}
+     */
+    public void setMagicWandTolerance(int tolerance) {
+        floodFill.setTolerance(tolerance);
+    }
+
+    /**
+     * Set whether the magic wand also spreads to diagonal neighbours.
+     *
+     * @param eightConnected true for 8-connectivity, false for 4-connectivity
+     */
+    public void setMagicWandEightConnected(boolean eightConnected) {
+        floodFill.setEightConnected(eightConnected);
+    }
+
     /**
      * Update brush paint based on current mode and opacity.
      */
     private void updateBrushMode() {
+        // Only the alpha of the paint reaches the mask
+        brushPaint.setColor(Color.BLACK);
         brushPaint.setAlpha(opacity);
 
         if (isErasing) {
-            // Eraser mode - use CLEAR mode for transparency
-            brushPaint.setColor(Color.TRANSPARENT);
-            brushPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+            // Eraser mode - lower the mask by the opacity
+            brushPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.DST_OUT));
         } else {
-            // Brush mode - restore original pixels
-            // This isn't ideal for actual pixel restoration, but serves as a visual indicator
+            // Brush mode - raise the mask, bringing the original pixels back
             brushPaint.setXfermode(null);
-            brushPaint.setColor(Color.RED); // Visual indicator for redraw mode
         }
     }
 
     /**
-     * Save current state for undo history.
+     * Reads and restores history tiles in the mask.
      */
-    private void saveState() {
-        // Add current state to undo history
-        Bitmap copy = bufferBitmap.copy(Bitmap.Config.ARGB_8888, true);
-        undoSteps.add(copy);
+    private final TileHistory.Surface historySurface = new TileHistory.Surface() {
+        @Override
+        public void readPixels(int[] pixels, int x, int y, int width, int height) {
+            maskBitmap.getPixels(pixels, 0, width, x, y, width, height);
+        }
 
-        // Limit history size
-        if (undoSteps.size() > MAX_STEPS) {
-            Bitmap removed = undoSteps.remove(0);
-            removed.recycle();
+        @Override
+        public void writePixels(int[] pixels, int x, int y, int width, int height) {
+            maskBitmap.setPixels(pixels, 0, width, x, y, width, height);
         }
+    };
 
-        // Clear redo history
-        clearRedoHistory();
+    /**
+     * Memory the history may keep, older steps go to a cache file beyond it.
+     */
+    private static long getHistoryBudget() {
+        return Runtime.getRuntime().maxMemory() / 8;
     }
 
     /**
-     * Clear undo/redo history.
+     * Save the step in progress for undo.
      */
-    private void clearHistory() {
-        // Recycle bitmaps to free memory
-        for (Bitmap bitmap : undoSteps) {
-            bitmap.recycle();
+    private void saveState() {
+        if (history != null) {
+            history.commit();
         }
-        undoSteps.clear();
-
-        clearRedoHistory();
     }
 
     /**
-     * Clear redo history.
+     * Clear undo/redo history.
      */
-    private void clearRedoHistory() {
-        // Recycle bitmaps to free memory
-        for (Bitmap bitmap : redoSteps) {
-            bitmap.recycle();
+    private void clearHistory() {
+        if (history != null) {
+            history.clear();
+            history = null;
         }
-        redoSteps.clear();
     }
 
     /**
@@ -230,20 +374,10 @@ public class BrushImageView extends AppCompatImageView {
      * @return true if undo was successful, false otherwise
      */
     public boolean undo() {
-        if (undoSteps.size() <= 1) {
-            // Cannot undo if there's only initial state or less
+        if (history == null || !history.undo()) {
             return false;
         }
 
-        // Move current state to redo history
-        Bitmap current = undoSteps.remove(undoSteps.size() - 1);
-        redoSteps.add(current);
-
-        // Restore previous state
-        Bitmap previous = undoSteps.get(undoSteps.size() - 1);
-        bufferBitmap = previous.copy(Bitmap.Config.ARGB_8888, true);
-        canvasBuffer = new Canvas(bufferBitmap);
-
         // Update display
         updateImageView();
         return true;
@@ -255,102 +389,209 @@ public class BrushImageView extends AppCompatImageView {
      * @return true if redo was successful, false otherwise
      */
     public boolean redo() {
-        if (redoSteps.isEmpty()) {
-            // Nothing to redo
+        if (history == null || !history.redo()) {
             return false;
         }
 
-        // Get last redo state
-        Bitmap redoState = redoSteps.remove(redoSteps.size() - 1);
+        // Update display
+        updateImageView();
+        return true;
+    }
 
-        // Save current state to undo history
-        undoSteps.add(redoState);
+    /**
+     * Remove part of the image, for example the background found by automatic removal, as
+     * one undo step. The mask is multiplied by the given one, so every edit made so far is
+     * kept, including strokes made while the given mask was being computed, and the result
+     * can be refined with the brush afterwards.
+     *
+     * @param keepMask ALPHA_8 bitmap of the same size as the source bitmap, opaque where the
+     *                 image is kept
+     */
+    public void applyKeepMask(Bitmap keepMask) {
+        if (maskBitmap == null || keepMask.getWidth() != maskBitmap.getWidth()
+                || keepMask.getHeight() != maskBitmap.getHeight()) {
+            Log.e(TAG, "Mask does not match the image being edited");
+            return;
+        }
 
-        // Restore redo state
-        bufferBitmap = redoState.copy(Bitmap.Config.ARGB_8888, true);
-        canvasBuffer = new Canvas(bufferBitmap);
+        history.touchAll();
+        maskCanvas.drawBitmap(keepMask, 0, 0, keepPaint);
+
+        // Save state for undo
+        saveState();
 
         // Update display
         updateImageView();
-        return true;
     }
 
     /**
-     * Get the resulting bitmap after editing.
+     * Get a copy of the source bitmap, without any edits.
+     *
+     * @return A new bitmap owned by the caller, or null if there is no image
+     */
+    public Bitmap getSourceBitmap() {
+        if (originalBitmap == null) {
+            return null;
+        }
+        return originalBitmap.copy(Bitmap.Config.ARGB_8888, false);
+    }
+
+    /**
+     * Get the resulting bitmap after editing, the source with the mask applied.
      *
-     * @return The edited bitmap with transparent background
+     * @return A new bitmap with transparent background, owned by the caller, or null if there
+     *         is no image
      */
     public Bitmap getResultBitmap() {
-        return bufferBitmap;
+        if (maskBitmap == null) {
+            return null;
+        }
+        Bitmap result = Bitmap.createBitmap(maskBitmap.getWidth(), maskBitmap.getHeight(), Bitmap.Config.ARGB_8888);
+        new Canvas(result).drawBitmap(maskBitmap, 0, 0, imagePaint);
+        return result;
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        float x = event.getX();
-        float y = event.getY();
+        if (maskBitmap == null) {
+            return false;
+        }
+
+        // Touches are converted to bitmap coordinates with the inverse of the image matrix
+        getImageMatrix().invert(inverseMatrix);
+        int action = event.getActionMasked();
 
-        // Convert touch coordinates to bitmap coordinates
-        Matrix inverse = new Matrix();
-        getImageMatrix().invert(inverse);
-        float[] touchPoint = {x, y};
-        inverse.mapPoints(touchPoint);
-        x = touchPoint[0];
-        y = touchPoint[1];
+        if (magicWand) {
+            if (action == MotionEvent.ACTION_DOWN) {
+                mapTouch(event.getX(), event.getY());
+                eraseSimilar(touchPoint[0], touchPoint[1]);
+            }
+            return true;
+        }
 
         // Handle touch events
-        switch (event.getAction()) {
+        switch (action) {
             case MotionEvent.ACTION_DOWN:
-                handleTouchStart(x, y);
+                mapTouch(event.getX(), event.getY());
+                handleTouchStart(touchPoint[0], touchPoint[1]);
                 break;
             case MotionEvent.ACTION_MOVE:
-                handleTouchMove(x, y);
+                queueTouches(event);
+                scheduleFrame();
                 break;
             case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                queueTouches(event);
                 handleTouchEnd();
                 break;
             default:
                 return false;
         }
 
-        // Force redraw
-        invalidate();
+        // Strokes are drawn into the mask once per frame, touching only what they cover
         return true;
     }
 
+    /**
+     * Map a touch in view coordinates into {@link #touchPoint} in bitmap coordinates.
+     */
+    private void mapTouch(float x, float y) {
+        touchPoint[0] = x - getPaddingLeft();
+        touchPoint[1] = y - getPaddingTop();
+        inverseMatrix.mapPoints(touchPoint);
+    }
+
+    /**
+     * Add the samples of an event to the points drawn on the next frame, including the ones
+     * the system batched into it, so fast strokes stay smooth up to where they end.
+     */
+    private void queueTouches(MotionEvent event) {
+        for (int i = 0; i < event.getHistorySize(); i++) {
+            queueTouch(event.getHistoricalX(i), event.getHistoricalY(i));
+        }
+        queueTouch(event.getX(), event.getY());
+    }
+
+    /**
+     * Add a touch sample to the points drawn on the next frame.
+     */
+    private void queueTouch(float x, float y) {
+        mapTouch(x, y);
+        if (pendingCount + 2 > pendingPoints.length) {
+            pendingPoints = Arrays.copyOf(pendingPoints, pendingPoints.length * 2);
+        }
+        pendingPoints[pendingCount++] = touchPoint[0];
+        pendingPoints[pendingCount++] = touchPoint[1];
+    }
+
+    private void scheduleFrame() {
+        if (!frameScheduled) {
+            frameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(frameCallback);
+        }
+    }
+
+    private void cancelFrame() {
+        if (frameScheduled) {
+            frameScheduled = false;
+            Choreographer.getInstance().removeFrameCallback(frameCallback);
+        }
+    }
+
+    /**
+     * Add the queued samples to the stroke and draw them as one segment, however many
+     * samples arrived since the last frame.
+     */
+    private void flushPendingPoints() {
+        for (int i = 0; i < pendingCount; i += 2) {
+            handleTouchMove(pendingPoints[i], pendingPoints[i + 1]);
+        }
+        pendingCount = 0;
+
+        if (strokeChanged) {
+            // Draw path to the mask and update the display where it changed
+            drawSegment();
+
+            // Continue the next segment from where this one ended
+            brushPath.reset();
+            brushPath.moveTo(pathEndX, pathEndY);
+            strokeChanged = false;
+        }
+    }
+
     /**
      * Handle touch start event.
      */
     private void handleTouchStart(float x, float y) {
+        // Drop samples left over from an unfinished stroke
+        cancelFrame();
+        pendingCount = 0;
+
         // Start new path
         brushPath.reset();
         brushPath.moveTo(x, y);
         lastTouchX = x;
         lastTouchY = y;
+        pathEndX = x;
+        pathEndY = y;
+        strokeChanged = false;
     }
 
     /**
-     * Handle touch move event.
+     * Add a touch sample to the stroke.
      */
     private void handleTouchMove(float x, float y) {
-        // Add point to path
         float dx = Math.abs(x - lastTouchX);
         float dy = Math.abs(y - lastTouchY);
 
-        if (dx >= 4 || dy >= 4) {
-            // Only add significant movements to the path
-            brushPath.quadTo(lastTouchX, lastTouchY, (x + lastTouchX) / 2, (y + lastTouchY) / 2);
+        if (dx >= TOUCH_TOLERANCE || dy >= TOUCH_TOLERANCE) {
+            // Only add significant movements to the path, smoothed through the midpoints
+            pathEndX = (x + lastTouchX) / 2;
+            pathEndY = (y + lastTouchY) / 2;
+            brushPath.quadTo(lastTouchX, lastTouchY, pathEndX, pathEndY);
             lastTouchX = x;
             lastTouchY = y;
-
-            // Draw path to buffer
-            canvasBuffer.drawPath(brushPath, brushPaint);
-
-            // Reset path for next segment
-            brushPath.reset();
-            brushPath.moveTo(lastTouchX, lastTouchY);
-
-            // Update display
-            updateImageView();
+            strokeChanged = true;
         }
     }
 
@@ -358,39 +599,206 @@ public class BrushImageView extends AppCompatImageView {
      * Handle touch end event.
      */
     private void handleTouchEnd() {
-        // Complete the path
-        canvasBuffer.drawPath(brushPath, brushPaint);
+        // Draw what is still queued now rather than on the next frame
+        cancelFrame();
+        flushPendingPoints();
+
+        // Complete the path to the last point, which also draws a dot for a tap without movement
+        brushPath.lineTo(lastTouchX, lastTouchY);
+        drawSegment();
         brushPath.reset();
 
         // Save state for undo
         saveState();
+    }
+
+    /**
+     * Erase the connected area of similar colour around a point, as one undo step.
+     * The area is found in the background; taps while a fill is running are ignored.
+     * The brush opacity applies as it does to the eraser.
+     */
+    private void eraseSimilar(float x, float y) {
+        if (maskBitmap == null || wandTask != null) {
+            return;
+        }
+        int seedX = (int) x;
+        int seedY = (int) y;
+        if (x < 0 || y < 0 || seedX >= maskBitmap.getWidth() || seedY >= maskBitmap.getHeight()) {
+            return;
+        }
+
+        wandTask = new WandTask(this, seedX, seedY, 255 - opacity);
+        wandPixels = null;
+        wandAlpha = null;
+        wandMask = null;
+        wandTask.execute();
+    }
+
+    /**
+     * Lower the mask where the wand filled, as one undo step. The mask is read again here
+     * rather than taken from the fill, so strokes made while the fill ran are kept.
+     *
+     * @param filled Fill mask of the whole image
+     * @param buffer Buffer of at least the size of the bounds
+     * @param bounds Bounds of the filled pixels
+     * @param keep Fraction of the mask to keep, out of 255
+     */
+    private void applyWand(byte[] filled, int[] buffer, Rect bounds, int keep) {
+        int width = maskBitmap.getWidth();
+        int boundsWidth = bounds.width();
+        int boundsHeight = bounds.height();
+
+        // Only the tiles around the filled area go into the history
+        history.touch(bounds.left, bounds.top, bounds.right, bounds.bottom);
+        maskBitmap.getPixels(buffer, 0, boundsWidth, bounds.left, bounds.top, boundsWidth, boundsHeight);
+        for (int row = 0; row < boundsHeight; row++) {
+            int fillRow = (bounds.top + row) * width + bounds.left;
+            for (int column = 0; column < boundsWidth; column++) {
+                if (filled[fillRow + column] == FloodFill.FILLED) {
+                    int i = row * boundsWidth + column;
+                    buffer[i] = ((buffer[i] >>> 24) * keep / 255) << 24;
+                }
+            }
+        }
+        maskBitmap.setPixels(buffer, 0, boundsWidth, bounds.left, bounds.top, boundsWidth, boundsHeight);
+
+        // Save state for undo
+        saveState();
 
         // Update display
         updateImageView();
     }
 
+    private void cancelWand() {
+        if (wandTask != null) {
+            wandTask.cancel(false);
+            wandTask = null;
+        }
+    }
+
+    /**
+     * Finds the area the magic wand erases in the background, on the image as it is shown,
+     * the source with the mask applied. The result is applied to the mask on the main thread.
+     */
+    private static class WandTask extends AsyncTask<Void, Void, Rect> {
+        private final WeakReference<BrushImageView> viewRef;
+        private final Bitmap source;
+        private final Bitmap mask;
+        private final FloodFill floodFill;
+        private final int seedX;
+        private final int seedY;
+        private final int keep;
+        private int[] pixels;
+        private int[] alpha;
+        private byte[] filled;
+
+        WandTask(BrushImageView view, int seedX, int seedY, int keep) {
+            this.viewRef = new WeakReference<>(view);
+            this.source = view.originalBitmap;
+            this.mask = view.maskBitmap;
+            this.floodFill = view.floodFill;
+            this.seedX = seedX;
+            this.seedY = seedY;
+            this.keep = keep;
+            this.pixels = view.wandPixels;
+            this.alpha = view.wandAlpha;
+            this.filled = view.wandMask;
+        }
+
+        @Override
+        protected Rect doInBackground(Void... voids) {
+            int width = mask.getWidth();
+            int height = mask.getHeight();
+            try {
+                // Reuse the buffers while the image size stays the same
+                int pixelCount = width * height;
+                if (pixels == null || pixels.length != pixelCount) {
+                    pixels = new int[pixelCount];
+                    alpha = new int[pixelCount];
+                    filled = new byte[pixelCount];
+                } else {
+                    Arrays.fill(filled, (byte) 0);
+                }
+
+                source.getPixels(pixels, 0, width, 0, 0, width, height);
+                mask.getPixels(alpha, 0, width, 0, 0, width, height);
+            } catch (OutOfMemoryError e) {
+                Log.e(TAG, "Not enough memory for the magic wand", e);
+                return null;
+            } catch (IllegalStateException e) {
+                // The view recycled the image while the fill was starting
+                return null;
+            }
+
+            for (int i = 0; i < pixels.length; i++) {
+                int pixel = pixels[i];
+                int shown = (pixel >>> 24) * (alpha[i] >>> 24) / 255;
+                pixels[i] = shown == 0 ? 0 : (shown << 24) | (pixel & 0xFFFFFF);
+            }
+            if (isCancelled() || floodFill.fillSimilar(pixels, width, height, seedX, seedY, filled) == 0) {
+                return null;
+            }
+
+            int left = width;
+            int top = height;
+            int right = -1;
+            int bottom = -1;
+            for (int row = 0; row < height; row++) {
+                for (int column = 0; column < width; column++) {
+                    if (filled[row * width + column] == FloodFill.FILLED) {
+                        left = Math.min(left, column);
+                        right = Math.max(right, column);
+                        top = Math.min(top, row);
+                        bottom = Math.max(bottom, row);
+                    }
+                }
+            }
+            return new Rect(left, top, right + 1, bottom + 1);
+        }
+
+        @Override
+        protected void onPostExecute(Rect bounds) {
+            BrushImageView view = viewRef.get();
+            if (view == null || view.wandTask != this) {
+                return;
+            }
+            view.wandTask = null;
+            view.wandPixels = pixels;
+            view.wandAlpha = alpha;
+            view.wandMask = filled;
+            if (bounds != null) {
+                view.applyWand(filled, alpha, bounds, keep);
+            }
+        }
+    }
+
     /**
      * Clean up resources when the view is detached.
      */
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
+        cancelFrame();
+        pendingCount = 0;
+        cancelWand();
 
         // Recycle bitmaps to prevent memory leaks
         if (originalBitmap != null) {
+            setImageBitmap(null);
+            imagePaint.setShader(null);
             originalBitmap.recycle();
             originalBitmap = null;
         }
 
-        if (bufferBitmap != null) {
-            bufferBitmap.recycle();
-            bufferBitmap = null;
+        if (maskBitmap != null) {
+            maskBitmap.recycle();
+            maskBitmap = null;
+            maskCanvas = null;
         }
 
-        if (resultBitmap != null) {
-            resultBitmap.recycle();
-            resultBitmap = null;
-        }
+        wandPixels = null;
+        wandAlpha = null;
+        wandMask = null;
 
         clearHistory();
     }
@@ -0,0 +1,122 @@
+package com.example.samplestickertestingapp;
+
+import com.example.samplestickertestingapp.utils.BackgroundRemover;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks automatic background removal on small pixel grids.
+ */
+public class BackgroundRemoverTest {
+    private static final int TOLERANCE = BackgroundRemover.DEFAULT_TOLERANCE;
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final int SKY = 0xFF9FD0F0;
+    private static final int RED = 0xFFD02020;
+    private static final int NAVY = 0xFF102060;
+    private static final int LIGHT_GREY = 0xFFC8C8C8;
+
+    @Test
+    public void removesBackgroundAroundSubject() {
+        int size = 20;
+        int[] pixels = filled(size, size, WHITE);
+        fillRect(pixels, size, 5, 5, 15, 15, NAVY);
+
+        int removed = BackgroundRemover.removeBackground(pixels, size, size, TOLERANCE);
+
+        assertEquals(size * size - 100, removed);
+        assertEquals(0, pixels[0]);
+        assertEquals(0, pixels[4 * size + 10]);
+        assertEquals(NAVY, pixels[10 * size + 10]);
+    }
+
+    @Test
+    public void everyCommonBorderColorSeedsTheFill() {
+        // Top half white, bottom half sky, each a large share of the border
+        int size = 20;
+        int[] pixels = filled(size, size, WHITE);
+        fillRect(pixels, size, 0, 10, size, size, SKY);
+        fillRect(pixels, size, 6, 6, 14, 14, NAVY);
+
+        BackgroundRemover.removeBackground(pixels, size, size, TOLERANCE);
+
+        assertEquals(0, pixels[2 * size + 2] >>> 24);
+        assertEquals(0, pixels[17 * size + 2] >>> 24);
+        assertEquals(NAVY, pixels[10 * size + 10]);
+    }
+
+    @Test
+    public void rareBorderColorIsNotBackground() {
+        // A red subject touches the border in one pixel, far below the share of a background
+        int size = 40;
+        int[] pixels = filled(size, size, WHITE);
+        fillRect(pixels, size, 15, 0, 16, 20, RED);
+
+        BackgroundRemover.removeBackground(pixels, size, size, TOLERANCE);
+
+        assertEquals(RED, pixels[15]);
+        assertEquals(RED, pixels[10 * size + 15]);
+        assertEquals(0, pixels[size * size - 1] >>> 24);
+    }
+
+    @Test
+    public void backgroundColorInsideSubjectIsKept() {
+        // A white hole inside the subject is not connected to the border
+        int size = 20;
+        int[] pixels = filled(size, size, WHITE);
+        fillRect(pixels, size, 4, 4, 16, 16, NAVY);
+        fillRect(pixels, size, 8, 8, 12, 12, WHITE);
+
+        BackgroundRemover.removeBackground(pixels, size, size, TOLERANCE);
+
+        assertEquals(WHITE, pixels[10 * size + 10]);
+        assertEquals(0, pixels[0]);
+    }
+
+    @Test
+    public void edgesCloseToBackgroundAreFeathered() {
+        // A subject column with a light grey rim on its left, next to the background
+        int size = 20;
+        int[] pixels = filled(size, size, WHITE);
+        fillRect(pixels, size, 8, 4, 9, 16, LIGHT_GREY);
+        fillRect(pixels, size, 9, 4, 16, 16, NAVY);
+
+        BackgroundRemover.removeBackground(pixels, size, size, TOLERANCE);
+
+        // The rim is between one and two tolerances from white, so it is faded but not removed
+        int rim = pixels[10 * size + 8];
+        int alpha = rim >>> 24;
+        assertTrue("rim alpha " + alpha, alpha > 0 && alpha < 255);
+        assertEquals(LIGHT_GREY & 0xFFFFFF, rim & 0xFFFFFF);
+        // Pixels far from the background colour keep their alpha
+        assertEquals(NAVY, pixels[10 * size + 9]);
+    }
+
+    @Test
+    public void transparentBorderRemovesNothing() {
+        int size = 10;
+        int[] pixels = filled(size, size, 0);
+        fillRect(pixels, size, 2, 2, 8, 8, WHITE);
+        int[] before = pixels.clone();
+
+        assertEquals(0, BackgroundRemover.removeBackground(pixels, size, size, TOLERANCE));
+        assertArrayEquals(before, pixels);
+    }
+
+    private static int[] filled(int width, int height, int color) {
+        int[] pixels = new int[width * height];
+        Arrays.fill(pixels, color);
+        return pixels;
+    }
+
+    private static void fillRect(int[] pixels, int width, int left, int top, int right, int bottom, int color) {
+        for (int y = top; y < bottom; y++) {
+            Arrays.fill(pixels, y * width + left, y * width + right, color);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.samplestickertestingapp;
+
+import com.example.samplestickertestingapp.utils.FloodFill;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the scanline flood fill on small pixel grids.
+ */
+public class FloodFillTest {
+    private static final int W = 0xFFFFFFFF;
+    private static final int K = 0xFF000000;
+    private static final int T = 0x00000000;
+
+    @Test
+    public void fillsConnectedRegionOnly() {
+        int[] pixels = {
+                W, W, K, W,
+                W, K, K, W,
+                K, K, W, W,
+                W, W, W, W
+        };
+        byte[] mask = new byte[pixels.length];
+
+        int filled = new FloodFill().fillSimilar(pixels, 4, 4, 0, 0, mask);
+
+        assertEquals(3, filled);
+        assertMask(mask,
+                "11..",
+                "1...",
+                "....",
+                "....");
+    }
+
+    @Test
+    public void eightConnectivityCrossesDiagonals() {
+        int[] pixels = {
+                W, K, K,
+                K, W, K,
+                K, K, W
+        };
+        FloodFill floodFill = new FloodFill();
+
+        byte[] fourConnected = new byte[pixels.length];
+        assertEquals(1, floodFill.fillSimilar(pixels, 3, 3, 0, 0, fourConnected));
+
+        floodFill.setEightConnected(true);
+        byte[] eightConnected = new byte[pixels.length];
+        assertEquals(3, floodFill.fillSimilar(pixels, 3, 3, 0, 0, eightConnected));
+        assertMask(eightConnected,
+                "1..",
+                ".1.",
+                "..1");
+    }
+
+    @Test
+    public void toleranceDecidesWhatIsSimilar() {
+        int[] pixels = {0xFF808080, 0xFF8A8A8A, 0xFFA0A0A0, 0xFF808080};
+        FloodFill floodFill = new FloodFill();
+
+        floodFill.setTolerance(0);
+        assertEquals(1, floodFill.fillSimilar(pixels, 4, 1, 0, 0, new byte[4]));
+
+        // (10, 10, 10) away is within 20, (32, 32, 32) is not
+        floodFill.setTolerance(20);
+        assertEquals(2, floodFill.fillSimilar(pixels, 4, 1, 0, 0, new byte[4]));
+
+        floodFill.setTolerance(60);
+        assertEquals(4, floodFill.fillSimilar(pixels, 4, 1, 0, 0, new byte[4]));
+    }
+
+    @Test
+    public void transparentPixelsConnectOnlyWhenEnabled() {
+        int[] pixels = {W, T, W};
+        FloodFill floodFill = new FloodFill();
+        floodFill.setTolerance(0);
+
+        floodFill.setTransparentMatches(true);
+        assertEquals(3, floodFill.fill(pixels, 3, 1, 0, 0, new int[]{W}, 1, new byte[3]));
+
+        floodFill.setTransparentMatches(false);
+        assertEquals(1, floodFill.fill(pixels, 3, 1, 0, 0, new int[]{W}, 1, new byte[3]));
+    }
+
+    @Test
+    public void erasedGapDoesNotPassForBlack() {
+        // Two dark regions separated by an erased column, as left by the eraser
+        int[] pixels = {
+                K, K, T, K, K,
+                K, K, T, K, K
+        };
+        FloodFill floodFill = new FloodFill();
+        floodFill.setTransparentMatches(false);
+        byte[] mask = new byte[pixels.length];
+
+        assertEquals(4, floodFill.fillSimilar(pixels, 5, 2, 0, 0, mask));
+        assertMask(mask,
+                "11...",
+                "11...");
+    }
+
+    @Test
+    public void alphaMustMatchWhenTransparentPixelsDoNot() {
+        // Same colour, but the middle pixel was half erased
+        int[] pixels = {K, 0x80000000, K};
+        FloodFill floodFill = new FloodFill();
+        floodFill.setTransparentMatches(false);
+
+        assertEquals(1, floodFill.fillSimilar(pixels, 3, 1, 0, 0, new byte[3]));
+
+        floodFill.setTransparentMatches(true);
+        assertEquals(3, floodFill.fillSimilar(pixels, 3, 1, 0, 0, new byte[3]));
+    }
+
+    @Test
+    public void alreadyFilledPixelsAreSkipped() {
+        int[] pixels = new int[16];
+        Arrays.fill(pixels, W);
+        byte[] mask = new byte[16];
+        FloodFill floodFill = new FloodFill();
+
+        assertEquals(16, floodFill.fillSimilar(pixels, 4, 4, 1, 1, mask));
+        assertEquals(0, floodFill.fillSimilar(pixels, 4, 4, 2, 2, mask));
+    }
+
+    @Test
+    public void fillsLargeMazeBeyondInitialStack() {
+        // Vertical walls with alternating gaps make a long serpentine path
+        int width = 401;
+        int height = 300;
+        int[] pixels = new int[width * height];
+        Arrays.fill(pixels, W);
+        int open = 0;
+        for (int x = 1; x < width; x += 2) {
+            int gap = (x / 2) % 2 == 0 ? height - 1 : 0;
+            for (int y = 0; y < height; y++) {
+                if (y != gap) {
+                    pixels[y * width + x] = K;
+                }
+            }
+        }
+        for (int pixel : pixels) {
+            if (pixel == W) {
+                open++;
+            }
+        }
+
+        int filled = new FloodFill().fillSimilar(pixels, width, height, 0, 0, new byte[pixels.length]);
+
+        assertEquals(open, filled);
+    }
+
+    @Test
+    public void seedOutsideImageFillsNothing() {
+        assertEquals(0, new FloodFill().fillSimilar(new int[4], 2, 2, 2, 0, new byte[4]));
+    }
+
+    private static void assertMask(byte[] mask, String... rows) {
+        StringBuilder actual = new StringBuilder();
+        int width = rows[0].length();
+        for (int i = 0; i < mask.length; i++) {
+            actual.append(mask[i] == FloodFill.FILLED ? '1' : '.');
+            if (i % width == width - 1) {
+                actual.append('\n');
+            }
+        }
+        assertEquals(String.join("\n", rows) + "\n", actual.toString());
+    }
+}
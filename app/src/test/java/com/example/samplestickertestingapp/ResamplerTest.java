@@ -0,0 +1,148 @@
+package com.example.samplestickertestingapp;
+
+import com.example.samplestickertestingapp.utils.Resampler;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the resampler on plain pixel arrays.
+ */
+public class ResamplerTest {
+    private static final int RED = 0xFFFF0000;
+    private static final int TRANSPARENT_GREEN = 0x0000FF00;
+
+    @Test
+    public void solidColorStaysSolid() {
+        int color = 0xFF3366CC;
+        int[] pixels = filled(300 * 200, color);
+
+        for (int filter : new int[]{Resampler.FILTER_BOX, Resampler.FILTER_LANCZOS3}) {
+            int[] smaller = Resampler.resample(pixels, 300, 200, 96, 64, filter);
+            assertArrayEquals(filled(96 * 64, color), smaller);
+
+            int[] larger = Resampler.resample(pixels, 300, 200, 512, 341, filter);
+            assertArrayEquals(filled(512 * 341, color), larger);
+        }
+    }
+
+    @Test
+    public void boxFilterAveragesBlocks() {
+        // 4x2 image made of two 2x2 blocks
+        int[] pixels = {
+                0xFF000000, 0xFF0000FF, 0xFF646464, 0xFF646464,
+                0xFF0000FF, 0xFF000000, 0xFF646464, 0xFF646464
+        };
+
+        int[] result = Resampler.resample(pixels, 4, 2, 2, 1, Resampler.FILTER_BOX);
+
+        assertEquals(0xFF000080, result[0]);
+        assertEquals(0xFF646464, result[1]);
+    }
+
+    @Test
+    public void transparentPixelsDoNotTintEdges() {
+        // Left half opaque red, right half fully transparent but with green colour values
+        int width = 64;
+        int height = 16;
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = x < width / 2 ? RED : TRANSPARENT_GREEN;
+            }
+        }
+
+        for (int filter : new int[]{Resampler.FILTER_BOX, Resampler.FILTER_LANCZOS3}) {
+            int[] result = Resampler.resample(pixels, width, height, 20, 5, filter);
+            for (int pixel : result) {
+                if ((pixel >>> 24) != 0) {
+                    assertEquals("green leaked into " + Integer.toHexString(pixel), 0, (pixel >> 8) & 0xFF);
+                    assertEquals("blue leaked into " + Integer.toHexString(pixel), 0, pixel & 0xFF);
+                }
+            }
+            // Fully covered edge pixels are unchanged
+            assertEquals(RED, result[0]);
+            assertEquals(0, result[19] >>> 24);
+        }
+    }
+
+    @Test
+    public void largeImagesAreSplitWithoutSeams() {
+        // Large enough to be split across the pool; every row is the same, so must the result's be
+        int width = 1200;
+        int height = 900;
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = 0xFF000000 | (x * 7919) & 0xFFFFFF;
+            }
+        }
+
+        int[] result = Resampler.resample(pixels, width, height, 512, 384, Resampler.FILTER_LANCZOS3);
+
+        assertEquals(512 * 384, result.length);
+        int[] firstRow = Arrays.copyOfRange(result, 0, 512);
+        for (int y = 1; y < 384; y++) {
+            assertArrayEquals("row " + y, firstRow, Arrays.copyOfRange(result, y * 512, (y + 1) * 512));
+        }
+    }
+
+    @Test
+    public void boxReduceMatchesBoxFilterReadingBands() {
+        int width = 300;
+        int height = 200;
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (i % 3 == 0 ? 0x80000000 : 0xFF000000) | (i * 7919) & 0xFFFFFF;
+        }
+        int[] bandsRead = new int[1];
+
+        int[] reduced = Resampler.boxReduce((band, top, rows) -> {
+            assertTrue(rows <= 4);
+            System.arraycopy(pixels, top * width, band, 0, rows * width);
+            bandsRead[0]++;
+        }, width, height, 4);
+
+        assertEquals(50, bandsRead[0]);
+        // The box filter rounds its premultiplied intermediate, so allow one level per channel
+        int[] expected = Resampler.resample(pixels, width, height, 75, 50, Resampler.FILTER_BOX);
+        assertEquals(expected.length, reduced.length);
+        for (int i = 0; i < expected.length; i++) {
+            for (int shift = 0; shift < 32; shift += 8) {
+                int difference = ((expected[i] >>> shift) & 0xFF) - ((reduced[i] >>> shift) & 0xFF);
+                assertTrue("pixel " + i, Math.abs(difference) <= 1);
+            }
+        }
+    }
+
+    @Test
+    public void boxReduceAveragesPartialEdgeBlocks() {
+        // 3x3 by 2: the last column and row are blocks of their own
+        int[] pixels = {
+                RED, RED, 0xFF0000FF,
+                RED, TRANSPARENT_GREEN, 0xFF0000FF,
+                0xFF000000, 0xFF000000, 0
+        };
+
+        int[] reduced = Resampler.boxReduce((band, top, rows) ->
+                System.arraycopy(pixels, top * 3, band, 0, rows * 3), 3, 3, 2);
+
+        assertArrayEquals(new int[]{0xBFFF0000, 0xFF0000FF, 0xFF000000, 0}, reduced);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptySize() {
+        Resampler.resample(new int[4], 2, 2, 0, 2, Resampler.FILTER_BOX);
+    }
+
+    private static int[] filled(int length, int color) {
+        int[] pixels = new int[length];
+        Arrays.fill(pixels, color);
+        return pixels;
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.samplestickertestingapp;
+
+import com.example.samplestickertestingapp.utils.TileHistory;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the tile history restores images exactly, within its budget and through the
+ * spill file.
+ */
+public class TileHistoryTest {
+    private static final int WIDTH = 150;
+    private static final int HEIGHT = 100;
+
+    /**
+     * Image held in an int array, standing in for a bitmap.
+     */
+    private static class ArraySurface implements TileHistory.Surface {
+        final int[] pixels = new int[WIDTH * HEIGHT];
+
+        @Override
+        public void readPixels(int[] out, int x, int y, int width, int height) {
+            for (int row = 0; row < height; row++) {
+                System.arraycopy(pixels, (y + row) * WIDTH + x, out, row * width, width);
+            }
+        }
+
+        @Override
+        public void writePixels(int[] in, int x, int y, int width, int height) {
+            for (int row = 0; row < height; row++) {
+                System.arraycopy(in, row * width, pixels, (y + row) * WIDTH + x, width);
+            }
+        }
+
+        void erase(int left, int top, int right, int bottom) {
+            for (int y = top; y < bottom; y++) {
+                Arrays.fill(pixels, y * WIDTH + left, y * WIDTH + right, 0);
+            }
+        }
+    }
+
+    private static ArraySurface photo() {
+        ArraySurface surface = new ArraySurface();
+        for (int i = 0; i < surface.pixels.length; i++) {
+            surface.pixels[i] = 0xFF000000 | (i * 7919) & 0xFFFFFF;
+        }
+        return surface;
+    }
+
+    @Test
+    public void undoAndRedoRestoreEveryStep() {
+        ArraySurface surface = photo();
+        TileHistory history = new TileHistory(WIDTH, HEIGHT, surface, Long.MAX_VALUE, null);
+        int[] original = surface.pixels.clone();
+
+        history.touch(10, 10, 40, 40);
+        surface.erase(10, 10, 40, 40);
+        assertTrue(history.commit());
+        int[] first = surface.pixels.clone();
+
+        history.touch(60, 50, 150, 100);
+        surface.erase(60, 50, 150, 100);
+        assertTrue(history.commit());
+        int[] second = surface.pixels.clone();
+
+        assertTrue(history.undo());
+        assertArrayEquals(first, surface.pixels);
+        assertTrue(history.undo());
+        assertArrayEquals(original, surface.pixels);
+        assertFalse(history.undo());
+
+        assertTrue(history.redo());
+        assertArrayEquals(first, surface.pixels);
+        assertTrue(history.redo());
+        assertArrayEquals(second, surface.pixels);
+        assertFalse(history.redo());
+    }
+
+    @Test
+    public void newStepClearsRedo() {
+        ArraySurface surface = photo();
+        TileHistory history = new TileHistory(WIDTH, HEIGHT, surface, Long.MAX_VALUE, null);
+
+        history.touch(0, 0, 10, 10);
+        surface.erase(0, 0, 10, 10);
+        history.commit();
+        history.undo();
+
+        history.touch(20, 20, 30, 30);
+        surface.erase(20, 20, 30, 30);
+        history.commit();
+
+        assertFalse(history.canRedo());
+        assertFalse(history.commit());
+    }
+
+    @Test
+    public void erasedTilesEncodeSmall() {
+        ArraySurface surface = photo();
+        TileHistory history = new TileHistory(WIDTH, HEIGHT, surface, Long.MAX_VALUE, null);
+
+        history.touchAll();
+        surface.erase(0, 0, WIDTH, HEIGHT);
+        history.commit();
+
+        // Before is the full photo, after is one run per tile
+        long full = 4L * WIDTH * HEIGHT;
+        assertTrue(history.getMemoryBytes() < full + full / 10);
+    }
+
+    @Test
+    public void alphaFormatRestoresMaskInAQuarter() {
+        ArraySurface mask = new ArraySurface();
+        for (int i = 0; i < mask.pixels.length; i++) {
+            mask.pixels[i] = (i * 31 & 0xFF) << 24;
+        }
+        int[] original = mask.pixels.clone();
+        TileHistory alpha = new TileHistory(WIDTH, HEIGHT, mask, TileHistory.FORMAT_ALPHA, Long.MAX_VALUE, null);
+
+        alpha.touchAll();
+        mask.erase(0, 0, WIDTH, HEIGHT);
+        alpha.commit();
+
+        assertTrue(alpha.undo());
+        assertArrayEquals(original, mask.pixels);
+        assertTrue(alpha.getMemoryBytes() < 4L * WIDTH * HEIGHT / 3);
+    }
+
+    @Test
+    public void budgetDropsOldestSteps() {
+        ArraySurface surface = photo();
+        TileHistory history = new TileHistory(WIDTH, HEIGHT, surface, 4 * 64 * 64 * 3, null);
+
+        for (int i = 0; i < 5; i++) {
+            history.touch(i * 30, 0, i * 30 + 20, 20);
+            surface.erase(i * 30, 0, i * 30 + 20, 20);
+            history.commit();
+        }
+
+        int undone = 0;
+        while (history.undo()) {
+            undone++;
+        }
+        assertTrue(undone < 5);
+        assertTrue(undone >= 1);
+    }
+
+    @Test
+    public void spilledStepsUndoExactly() throws IOException {
+        File spill = File.createTempFile("history", ".bin");
+        ArraySurface surface = photo();
+        TileHistory history = new TileHistory(WIDTH, HEIGHT, surface, 4 * 64 * 64 * 3, spill);
+        int[] original = surface.pixels.clone();
+
+        for (int i = 0; i < 5; i++) {
+            history.touch(i * 30, 30, i * 30 + 20, 50);
+            surface.erase(i * 30, 30, i * 30 + 20, 50);
+            history.commit();
+        }
+
+        int undone = 0;
+        while (history.undo()) {
+            undone++;
+        }
+        assertEquals(5, undone);
+        assertArrayEquals(original, surface.pixels);
+
+        history.clear();
+        assertFalse(spill.exists());
+    }
+}